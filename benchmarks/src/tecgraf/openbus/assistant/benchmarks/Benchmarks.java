@@ -0,0 +1,110 @@
+package tecgraf.openbus.assistant.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.POAHelper;
+
+import scs.core.ComponentContext;
+import scs.core.ComponentId;
+import scs.core.IComponent;
+import tecgraf.openbus.assistant.Assistant;
+import tecgraf.openbus.assistant.AssistantParams;
+import tecgraf.openbus.assistant.fake.FakeBus;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * Utilitrios compartilhados pelos benchmarks do assistente.
+ * 
+ * @author Tecgraf
+ */
+final class Benchmarks {
+
+  /** Entidade utilizada no login dos assistentes */
+  static final String ENTITY = "benchmark";
+  /** Tempo mximo de espera pelo registro das ofertas em segundos */
+  static final long TIMEOUT = 60;
+
+  /**
+   * Construtor privado.
+   */
+  private Benchmarks() {
+  }
+
+  /**
+   * Cria um assistente conectado a um barramento falso.
+   * 
+   * @param params os parmetros do assistente, obtidos de
+   *        {@link FakeBus#params()}.
+   * @return o assistente.
+   */
+  static Assistant createAssistant(AssistantParams params) {
+    return Assistant.createWithPassword(params, ENTITY, ENTITY.getBytes(),
+      ENTITY);
+  }
+
+  /**
+   * Cria um componente SCS no ORB do barramento falso.
+   * 
+   * @param bus o barramento falso.
+   * @param name o nome do componente.
+   * @return o componente.
+   * @throws Exception
+   */
+  static IComponent createComponent(FakeBus bus, String name)
+    throws Exception {
+    POA poa =
+      POAHelper.narrow(bus.orb().resolve_initial_references("RootPOA"));
+    ComponentId id =
+      new ComponentId(name, (byte) 1, (byte) 0, (byte) 0, "java");
+    return new ComponentContext(bus.orb(), poa, id).getIComponent();
+  }
+
+  /**
+   * Cria as propriedades de uma oferta.
+   * 
+   * @param domain o domnio das ofertas.
+   * @param index o ndice da oferta.
+   * @return as propriedades.
+   */
+  static ServiceProperty[] properties(String domain, int index) {
+    return new ServiceProperty[] {
+        new ServiceProperty("offer.domain", domain),
+        new ServiceProperty("loop.index", Integer.toString(index)) };
+  }
+
+  /**
+   * Registra ofertas atravs do assistente e aguarda o seu registro no
+   * barramento falso.
+   * 
+   * @param bus o barramento falso.
+   * @param assist o assistente.
+   * @param domain o domnio das ofertas.
+   * @param count o nmero de ofertas.
+   * @throws Exception
+   */
+  static void registerOffers(FakeBus bus, Assistant assist, String domain,
+    int count) throws Exception {
+    IComponent component = createComponent(bus, domain);
+    int target = bus.offerCount() + count;
+    for (int i = 0; i < count; i++) {
+      assist.registerService(component, properties(domain, i));
+    }
+    awaitOffers(bus, target);
+  }
+
+  /**
+   * Aguarda at que um nmero mnimo de ofertas esteja registrado no
+   * barramento falso.
+   * 
+   * @param bus o barramento falso.
+   * @param count o nmero mnimo de ofertas.
+   * @throws InterruptedException
+   */
+  static void awaitOffers(FakeBus bus, int count) throws InterruptedException {
+    if (!bus.awaitOffers(count, TIMEOUT, TimeUnit.SECONDS)) {
+      throw new IllegalStateException(String.format(
+        "Apenas %d de %d ofertas registradas.", bus.offerCount(), count));
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package tecgraf.openbus.assistant.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tecgraf.openbus.assistant.Assistant;
+import tecgraf.openbus.assistant.AssistantParams;
+import tecgraf.openbus.assistant.OfferIndex;
+import tecgraf.openbus.assistant.fake.FakeBus;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * Vazo das buscas de ofertas feitas atravs do assistente.
+ * 
+ * @author Tecgraf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindBenchmark {
+
+  /** Nmero de ofertas registradas no barramento */
+  @Param({ "10", "1000" })
+  public int offers;
+  /** Indica se o cache de buscas do assistente est habilitado */
+  @Param({ "false", "true" })
+  public boolean cache;
+
+  /** O barramento falso */
+  private FakeBus bus;
+  /** O assistente */
+  private Assistant assist;
+  /** Propriedades de uma busca que encontra uma nica oferta */
+  private ServiceProperty[] search;
+  /** ndice local das ofertas registradas */
+  private OfferIndex index;
+
+  /**
+   * Registra as ofertas utilizadas nas buscas.
+   * 
+   * @throws Exception
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    bus = new FakeBus();
+    AssistantParams params = bus.params();
+    if (cache) {
+      params.cacheTTL = 60.0f;
+    }
+    assist = Benchmarks.createAssistant(params);
+    Benchmarks.registerOffers(bus, assist, "FindBenchmark", offers);
+    search = Benchmarks.properties("FindBenchmark", offers / 2);
+    index = new OfferIndex(assist.getAllServices(-1));
+  }
+
+  /**
+   * Finaliza o assistente e o barramento falso.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    assist.shutdown();
+    bus.shutdown();
+  }
+
+  /**
+   * Busca uma oferta pelas suas propriedades.
+   * 
+   * @return as ofertas encontradas.
+   * @throws Exception
+   */
+  @Benchmark
+  public ServiceOfferDesc[] findServices() throws Exception {
+    return assist.findServices(search, 0);
+  }
+
+  /**
+   * Busca uma oferta pelas suas propriedades no ndice local construdo a
+   * partir de uma nica recuperao de todas as ofertas.
+   * 
+   * @return as ofertas encontradas.
+   */
+  @Benchmark
+  public ServiceOfferDesc[] findIndexed() {
+    return index.find(search);
+  }
+
+  /**
+   * Recupera todas as ofertas registradas.
+   * 
+   * @return as ofertas registradas.
+   * @throws Exception
+   */
+  @Benchmark
+  public ServiceOfferDesc[] getAllServices() throws Exception {
+    return assist.getAllServices(0);
+  }
+}
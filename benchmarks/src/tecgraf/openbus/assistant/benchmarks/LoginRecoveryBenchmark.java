@@ -0,0 +1,77 @@
+package tecgraf.openbus.assistant.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tecgraf.openbus.assistant.Assistant;
+import tecgraf.openbus.assistant.fake.FakeBus;
+
+/**
+ * Latncia da recuperao do login: tempo desde a perda do login at que o
+ * assistente tenha refeito o login e registrado novamente todas as suas
+ * ofertas.
+ * 
+ * @author Tecgraf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginRecoveryBenchmark {
+
+  /** Nmero de ofertas mantidas pelo assistente */
+  @Param({ "10", "100" })
+  public int offers;
+
+  /** O barramento falso */
+  private FakeBus bus;
+  /** O assistente */
+  private Assistant assist;
+
+  /**
+   * Registra as ofertas mantidas pelo assistente.
+   * 
+   * @throws Exception
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    bus = new FakeBus();
+    assist = Benchmarks.createAssistant(bus.params());
+    Benchmarks.registerOffers(bus, assist, "LoginRecoveryBenchmark", offers);
+  }
+
+  /**
+   * Finaliza o assistente e o barramento falso.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    assist.shutdown();
+    bus.shutdown();
+  }
+
+  /**
+   * Invalida o login do assistente e aguarda o novo registro das ofertas.
+   * 
+   * @throws Exception
+   */
+  @Benchmark
+  public void recoverLogin() throws Exception {
+    bus.invalidateLogins();
+    Benchmarks.awaitOffers(bus, offers);
+  }
+}
@@ -0,0 +1,119 @@
+package tecgraf.openbus.assistant.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import scs.core.IComponent;
+import tecgraf.openbus.assistant.Assistant;
+import tecgraf.openbus.assistant.AssistantParams;
+import tecgraf.openbus.assistant.BatchRegistration;
+import tecgraf.openbus.assistant.OfferSpec;
+import tecgraf.openbus.assistant.fake.FakeBus;
+
+/**
+ * Tempo para registrar um lote de ofertas atravs do assistente, desde a
+ * chamada a 'registerService' ou 'registerServices' at o registro de todas
+ * as ofertas no barramento.
+ * 
+ * @author Tecgraf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisterBenchmark {
+
+  /** Nmero de ofertas de cada lote */
+  @Param({ "100" })
+  public int batch;
+  /** Nmero de registros simultneos do assistente */
+  @Param({ "1", "2", "8" })
+  public int concurrency;
+
+  /** O barramento falso */
+  private FakeBus bus;
+  /** O assistente */
+  private Assistant assist;
+  /** Componente ofertado */
+  private IComponent component;
+  /** Nmero de ofertas j registradas */
+  private int registered;
+
+  /**
+   * Cria o assistente.
+   * 
+   * @throws Exception
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    bus = new FakeBus();
+    AssistantParams params = bus.params();
+    params.registerConcurrency = concurrency;
+    assist = Benchmarks.createAssistant(params);
+    component = Benchmarks.createComponent(bus, "RegisterBenchmark");
+    registered = 0;
+  }
+
+  /**
+   * Finaliza o assistente e o barramento falso.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    assist.shutdown();
+    bus.shutdown();
+  }
+
+  /**
+   * Registra um lote de ofertas e aguarda o seu registro no barramento.
+   * 
+   * @throws Exception
+   */
+  @Benchmark
+  public void registerService() throws Exception {
+    for (int i = 0; i < batch; i++) {
+      assist.registerService(component, Benchmarks.properties(
+        "RegisterBenchmark", registered + i));
+    }
+    registered += batch;
+    Benchmarks.awaitOffers(bus, registered);
+  }
+
+  /**
+   * Registra um lote de ofertas em uma nica chamada e aguarda o seu registro
+   * no barramento.
+   * 
+   * @throws Exception
+   */
+  @Benchmark
+  public void registerServices() throws Exception {
+    List<OfferSpec> specs = new ArrayList<OfferSpec>(batch);
+    for (int i = 0; i < batch; i++) {
+      specs.add(new OfferSpec(component, Benchmarks.properties(
+        "RegisterBenchmark", registered + i)));
+    }
+    registered += batch;
+    BatchRegistration registration = assist.registerServices(specs);
+    if (!registration.await(Benchmarks.TIMEOUT, TimeUnit.SECONDS)) {
+      throw new IllegalStateException(String.format(
+        "Apenas %d de %d ofertas registradas.", registration.registered(),
+        batch));
+    }
+  }
+}
@@ -1,24 +1,58 @@
 package tecgraf.openbus.assistant;
 
+import java.lang.management.ManagementFactory;
 import java.security.interfaces.RSAPrivateKey;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.omg.CORBA.Any;
 import org.omg.CORBA.COMM_FAILURE;
+import org.omg.CORBA.CompletionStatus;
 import org.omg.CORBA.NO_PERMISSION;
+import org.omg.CORBA.OBJECT_NOT_EXIST;
 import org.omg.CORBA.ORB;
+import org.omg.CORBA.Policy;
+import org.omg.CORBA.PolicyCurrent;
+import org.omg.CORBA.PolicyCurrentHelper;
+import org.omg.CORBA.PolicyError;
+import org.omg.CORBA.SetOverrideType;
+import org.omg.CORBA.TIMEOUT;
 import org.omg.CORBA.TRANSIENT;
 import org.omg.CORBA.ORBPackage.InvalidName;
+import org.omg.Messaging.RELATIVE_RT_TIMEOUT_POLICY_TYPE;
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.POAHelper;
 
 import scs.core.IComponent;
 import tecgraf.openbus.Connection;
@@ -27,6 +61,7 @@ import tecgraf.openbus.OpenBusContext;
 import tecgraf.openbus.SharedAuthSecret;
 import tecgraf.openbus.core.ORBInitializer;
 import tecgraf.openbus.core.v2_1.services.ServiceFailure;
+import tecgraf.openbus.core.v2_1.services.UnauthorizedOperation;
 import tecgraf.openbus.core.v2_1.services.access_control.AccessDenied;
 import tecgraf.openbus.core.v2_1.services.access_control.InvalidLoginCode;
 import tecgraf.openbus.core.v2_1.services.access_control.LoginInfo;
@@ -34,7 +69,15 @@ import tecgraf.openbus.core.v2_1.services.access_control.MissingCertificate;
 import tecgraf.openbus.core.v2_1.services.access_control.NoLoginCode;
 import tecgraf.openbus.core.v2_1.services.offer_registry.InvalidProperties;
 import tecgraf.openbus.core.v2_1.services.offer_registry.InvalidService;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserver;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserverHelper;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserverPOA;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserverSubscription;
 import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistry;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserver;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserverHelper;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserverPOA;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserverSubscription;
 import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOffer;
 import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
 import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
@@ -70,33 +113,99 @@ public abstract class Assistant {
 
   /** Intervalo de espera entre tentativas em milissegundos */
   private int mInterval = 5000;
+  /** Poltica de espera entre tentativas */
+  private RetryPolicy retryPolicy;
   /** ORB utilizado pelo assistente */
   private ORB orb;
   /** Contexto do ORB utilizado */
   private OpenBusContext context;
   /** Conexo criada e utilizada pelo assistente */
-  private Connection conn;
+  private volatile Connection conn;
+  /** Propriedades das conexes criadas pelo assistente */
+  private Properties connprops;
+  /** Rplicas do barramento utilizadas pelo assistente */
+  private EndpointList endpoints;
+  /** Indica se a ltima tentativa de login falhou por falta de comunicao */
+  private volatile boolean loginUnreachable = false;
+  /** Indica se a troca de rplica do barramento est em andamento */
+  private final AtomicBoolean failingOver = new AtomicBoolean(false);
+  /** Indica se o login  tentado simultaneamente em todas as rplicas */
+  private boolean raceLogin = false;
+  /** Fbrica das threads das tentativas simultneas de login */
+  private ThreadFactory loginThreads;
+  /** Indica se o ORB  compartilhado com outros assistentes */
+  private boolean sharedORB = false;
+  /** Seleo da conexo das chamadas recebidas, caso o ORB seja compartilhado */
+  private SharedDispatch dispatch;
+  /** Indica se o assistente mantm uma conexo reserva com login */
+  private boolean standbyEnabled = false;
+  /** Conexo reserva com login estabelecido, caso exista */
+  private volatile Connection standby;
+  /** Indica se a criao da conexo reserva est em andamento */
+  private final AtomicBoolean buildingStandby = new AtomicBoolean(false);
   /** Callback para informar os erros ocorridos no uso do assistente */
   private OnFailureCallback callback;
   /** Lista de ofertas a serem mantidas pelo assistente */
   private List<Offer> offers = Collections
     .synchronizedList(new ArrayList<Offer>());
+  /** Lista de assinaturas de ofertas a serem mantidas pelo assistente */
+  private List<Subscription> subscriptions = Collections
+    .synchronizedList(new ArrayList<Subscription>());
   /** Identifica se o assistente deve finalizar */
   private volatile boolean shutdown = false;
+  /** Cache de buscas de ofertas, ou <code>null</code> caso desabilitado */
+  private OfferCache cache;
+  /** Cache das facetas de ofertas j convertidas para suas interfaces */
+  private FacetCache facets;
+  /** Polticas do ORB definidas por thread, obtidas sob demanda */
+  private volatile PolicyCurrent policyCurrent;
+  /** Identificador do ltimo login perdido cuja recuperao foi iniciada */
+  private final AtomicReference<String> lostLogin =
+    new AtomicReference<String>();
+  /** Indica se a tarefa de recuperao do login est em execuo */
+  private final AtomicBoolean recovering = new AtomicBoolean(false);
+  /** Indica se h uma solicitao de login ainda no atendida */
+  private volatile boolean loginRequested = false;
+  /** Tarefa compartilhada que realiza o login */
+  private final Runnable recovery = new RecoverLogin();
+  /** Objeto utilizado para notificar o estabelecimento do login */
+  private final Object loginLock = new Object();
+  /** Buscas em andamento no barramento, agrupadas pelas propriedades */
+  private final SingleFlight<OfferCache.Key, FoundOffers> finds =
+    new SingleFlight<OfferCache.Key, FoundOffers>();
+  /** Mtricas de funcionamento do assistente */
+  private MetricsRecorder metrics = new MetricsRecorder(this);
+  /** Nome JMX das mtricas, ou <code>null</code> caso no sejam exportadas */
+  private ObjectName metricsName;
+
+  /** Nmero padro de registros simultneos de ofertas e observadores */
+  private static final int REGISTRATION_THREADS = 2;
+  /** Nmero padro de falhas consecutivas que leva  troca de rplica */
+  private static final int FAILOVER_THRESHOLD = 3;
+  /** Tempo em segundos durante o qual uma rplica que falhou  evitada */
+  private static final long ENDPOINT_QUARANTINE = 30;
+
+  /** Tempo em segundos que uma thread ociosa do pool  mantida */
+  private static final long THREAD_KEEP_ALIVE = 60;
 
   /** Controlador do pool de threads utilizadas pelo assistente */
-  private ExecutorService threadPool = Executors
-    .newCachedThreadPool(new ThreadFactory() {
-      /**
-       * Cria threads Daemon para serem utilizadas pelo {@link ExecutorService}.
-       */
-      @Override
-      public Thread newThread(Runnable task) {
-        Thread thread = new Thread(task);
-        thread.setDaemon(true);
-        return thread;
-      }
-    });
+  private ExecutorService threadPool;
+  /** Indica se o pool de threads foi criado pelo assistente */
+  private boolean ownThreadPool;
+  /**
+   * Tratamento das chamadas assncronas recusadas pelo pool de threads, caso
+   * definido pela aplicao
+   */
+  private RejectedExecutionHandler rejectionPolicy;
+  /** Escalonador das tarefas de registro de ofertas e observadores */
+  private ScheduledExecutorService scheduler;
+  /** Indica se o escalonador foi criado pelo assistente */
+  private boolean ownScheduler;
+  /** Tarefas peridicas agendadas no escalonador */
+  private final List<ScheduledFuture<?>> periodic =
+    new ArrayList<ScheduledFuture<?>>();
+  /** Mecanismo de registro de ofertas e observadores */
+  private RegistrationEngine engine;
 
   /**
    * Cria um assistente que efetua login no barramento utilizando autenticao
@@ -126,14 +235,34 @@ public abstract class Assistant {
       throw new IllegalArgumentException(
         "ORB utilizado no foi inicializado corretamente.", e);
     }
+    BusEndpoint[] replicas = params.endpoints;
+    if (replicas == null) {
+      replicas =
+        new BusEndpoint[] { params.reference != null ? new BusEndpoint(
+          params.reference) : new BusEndpoint(params.host, params.port) };
+    }
+    int threshold = FAILOVER_THRESHOLD;
+    if (params.failoverThreshold != null) {
+      if (params.failoverThreshold < 1) {
+        throw new IllegalArgumentException(
+          "O nmero de falhas para troca de rplica deve ser maior que zero.");
+      }
+      threshold = params.failoverThreshold;
+    }
+    endpoints =
+      new EndpointList(replicas, threshold, TimeUnit.SECONDS
+        .toNanos(ENDPOINT_QUARANTINE));
+    connprops = params.connprops;
+    standbyEnabled = Boolean.TRUE.equals(params.standbyLogin);
     try {
-      this.conn = createConnection(params);
+      this.conn = createConnection(endpoints.current());
     }
     catch (InvalidPropertyValue e) {
       throw new IllegalArgumentException(
         "Propriedades definidas para a conexo so invlidas", e);
     }
-    if (context.getDefaultConnection() != null) {
+    sharedORB = Boolean.TRUE.equals(params.sharedORB);
+    if (!sharedORB && context.getDefaultConnection() != null) {
       throw new IllegalArgumentException("ORB j est em uso.");
     }
     if (params.interval != null) {
@@ -144,16 +273,227 @@ public abstract class Assistant {
       }
       mInterval = (int) Math.ceil(params.interval * 1000.0f);
     }
+    if (params.retryPolicy != null) {
+      retryPolicy = params.retryPolicy;
+    }
+    else {
+      retryPolicy = RetryPolicy.fixed(mInterval);
+    }
+    if (params.cacheTTL != null) {
+      if (params.cacheTTL.isNaN() || params.cacheTTL.isInfinite()
+        || params.cacheTTL <= 0.0f) {
+        throw new IllegalArgumentException(
+          "O tempo de vida do cache de buscas deve ser maior que zero.");
+      }
+      int maxSize = 128;
+      if (params.cacheMaxSize != null) {
+        if (params.cacheMaxSize < 1) {
+          throw new IllegalArgumentException(
+            "O tamanho mximo do cache de buscas deve ser maior que zero.");
+        }
+        maxSize = params.cacheMaxSize;
+      }
+      cache =
+        new OfferCache((long) Math.ceil(params.cacheTTL * 1000.0f), maxSize);
+    }
+    int facetsSize = 256;
+    if (params.facetCacheMaxSize != null) {
+      if (params.facetCacheMaxSize < 1) {
+        throw new IllegalArgumentException(
+          "O tamanho mximo do cache de facetas deve ser maior que zero.");
+      }
+      facetsSize = params.facetCacheMaxSize;
+    }
+    facets = new FacetCache(facetsSize);
     if (params.callback != null) {
       this.callback = params.callback;
     }
     else {
       this.callback = new DefaultFailureCallback();
     }
-    context.setDefaultConnection(conn);
+    int concurrency = REGISTRATION_THREADS;
+    if (params.registerConcurrency != null) {
+      if (params.registerConcurrency < 1) {
+        throw new IllegalArgumentException(
+          "O nmero de registros simultneos deve ser maior que zero.");
+      }
+      concurrency = params.registerConcurrency;
+    }
+    float rate = 0.0f;
+    if (params.registerRate != null) {
+      if (params.registerRate.isNaN() || params.registerRate.isInfinite()
+        || params.registerRate <= 0.0f) {
+        throw new IllegalArgumentException(
+          "O nmero de registros por segundo deve ser maior que zero.");
+      }
+      rate = params.registerRate;
+    }
+    long checkInterval = 0;
+    if (params.offerCheckInterval != null) {
+      if (params.offerCheckInterval.isNaN()
+        || params.offerCheckInterval.isInfinite()
+        || params.offerCheckInterval <= 0.0f) {
+        throw new IllegalArgumentException(
+          "O intervalo de verificao das ofertas deve ser maior que zero.");
+      }
+      checkInterval = (long) Math.ceil(params.offerCheckInterval * 1000.0f);
+    }
+    long loginInterval = 0;
+    if (params.loginCheckInterval != null) {
+      if (params.loginCheckInterval.isNaN()
+        || params.loginCheckInterval.isInfinite()
+        || params.loginCheckInterval <= 0.0f) {
+        throw new IllegalArgumentException(
+          "O intervalo de verificao do login deve ser maior que zero.");
+      }
+      loginInterval = (long) Math.ceil(params.loginCheckInterval * 1000.0f);
+    }
+    createExecutors(params, concurrency);
+    engine =
+      new RegistrationEngine(scheduler, concurrency, retryPolicy
+        .persistent(mInterval), rate);
+    if (checkInterval > 0) {
+      periodic.add(scheduler.scheduleWithFixedDelay(new CheckOffers(),
+        checkInterval, checkInterval, TimeUnit.MILLISECONDS));
+    }
+    if (loginInterval > 0) {
+      periodic.add(scheduler.scheduleWithFixedDelay(new CheckLogin(),
+        loginInterval, loginInterval, TimeUnit.MILLISECONDS));
+    }
+    if (sharedORB) {
+      dispatch = SharedDispatch.install(context);
+    }
+    else {
+      context.setDefaultConnection(conn);
+    }
     conn.onInvalidLoginCallback(new OnInvalidLogin());
+    // as mtricas so exportadas aps todas as validaes dos parmetros, de
+    // forma que um assistente recusado no deixa o seu nome registrado
+    if (params.metricsName != null) {
+      try {
+        ObjectName name = new ObjectName(params.metricsName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(
+          new StandardMBean(metrics, AssistantMetrics.class, true), name);
+        this.metricsName = name;
+      }
+      catch (JMException e) {
+        // libera os recursos j alocados pelo assistente
+        shutdown();
+        throw new IllegalArgumentException(
+          "No foi possvel exportar as mtricas do assistente via JMX.", e);
+      }
+    }
     // realiza o login
-    threadPool.execute(new DoLogin(this));
+    requestLogin();
+  }
+
+  /**
+   * Mtodo interno responsvel por obter o pool de threads e o escalonador
+   * utilizados pelo assistente. Executores fornecidos pela aplicao so
+   * utilizados diretamente e no so finalizados pelo assistente. Os demais
+   * so criados com threads obtidas da fbrica fornecida pela aplicao ou,
+   * caso no tenha sido fornecida, criadas como threads virtuais ou threads
+   * Daemon nomeadas.
+   * 
+   * @param params parmetros de configurao do assistente.
+   * @param concurrency nmero de registros simultneos.
+   */
+  private void createExecutors(AssistantParams params, int concurrency) {
+    int maxThreads = Integer.MAX_VALUE;
+    if (params.asyncThreads != null) {
+      if (params.asyncThreads < 1) {
+        throw new IllegalArgumentException(
+          "O nmero de threads do assistente deve ser maior que zero.");
+      }
+      maxThreads = params.asyncThreads;
+    }
+    if (params.asyncQueueSize != null) {
+      if (params.asyncQueueSize < 0) {
+        throw new IllegalArgumentException(
+          "O tamanho da fila de tarefas no pode ser negativo.");
+      }
+      if (params.asyncThreads == null) {
+        throw new IllegalArgumentException(
+          "O tamanho da fila de tarefas exige um nmero mximo de threads.");
+      }
+    }
+    int id = AssistantThreadFactory.nextAssistant();
+    boolean virtual = Boolean.TRUE.equals(params.virtualThreads);
+    if (virtual) {
+      if (params.threadFactory != null) {
+        throw new IllegalArgumentException(
+          "Threads virtuais no podem ser usadas com uma fbrica de threads.");
+      }
+      if (AssistantThreadFactory.virtual(id, "async") == null) {
+        throw new IllegalArgumentException(
+          "Threads virtuais exigem Java 21 ou superior.");
+      }
+    }
+    if (params.executor != null) {
+      threadPool = params.executor;
+      ownThreadPool = false;
+    }
+    else {
+      ThreadFactory factory = params.threadFactory;
+      if (virtual) {
+        factory = AssistantThreadFactory.virtual(id, "async");
+      }
+      else if (factory == null) {
+        factory = new AssistantThreadFactory(id, "async");
+      }
+      // a poltica da aplicao s  aplicada s chamadas assncronas, de
+      // forma que as tarefas internas recusadas so sempre tentadas novamente
+      rejectionPolicy = params.rejectionPolicy;
+      RejectedExecutionHandler rejection = new ThreadPoolExecutor.AbortPolicy();
+      ThreadPoolExecutor pool;
+      if (params.asyncThreads == null) {
+        // equivalente a 'Executors.newCachedThreadPool()'
+        pool =
+          new ThreadPoolExecutor(0, maxThreads, THREAD_KEEP_ALIVE,
+            TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), factory,
+            rejection);
+      }
+      else {
+        int queueSize = Integer.MAX_VALUE;
+        if (params.asyncQueueSize != null) {
+          queueSize = params.asyncQueueSize;
+        }
+        pool =
+          new ThreadPoolExecutor(maxThreads, maxThreads, THREAD_KEEP_ALIVE,
+            TimeUnit.SECONDS, queueSize == 0 ? new SynchronousQueue<Runnable>()
+              : new LinkedBlockingQueue<Runnable>(queueSize), factory,
+            rejection);
+        pool.allowCoreThreadTimeOut(true);
+      }
+      threadPool = pool;
+      ownThreadPool = true;
+    }
+    if (params.scheduler != null) {
+      scheduler = params.scheduler;
+      ownScheduler = false;
+    }
+    else {
+      ThreadFactory factory = params.threadFactory;
+      if (virtual) {
+        factory = AssistantThreadFactory.virtual(id, "register");
+      }
+      else if (factory == null) {
+        factory = new AssistantThreadFactory(id, "register");
+      }
+      scheduler = Executors.newScheduledThreadPool(concurrency, factory);
+      ownScheduler = true;
+    }
+    raceLogin =
+      Boolean.TRUE.equals(params.raceLogin) && endpoints.size() > 1;
+    if (raceLogin) {
+      loginThreads = params.threadFactory;
+      if (virtual) {
+        loginThreads = AssistantThreadFactory.virtual(id, "login");
+      }
+      else if (loginThreads == null) {
+        loginThreads = new AssistantThreadFactory(id, "login");
+      }
+    }
   }
 
   /**
@@ -162,18 +502,17 @@ public abstract class Assistant {
    * Utilizando o {@link OpenBusContext} instancia uma conexo a ser utilizada
    * por esta instncia de assistente.
    * 
-   * @param params
+   * @param endpoint a rplica do barramento.
    * @return a conexo criada.
    * @throws InvalidPropertyValue
    */
-  private Connection createConnection(AssistantParams params)
+  private Connection createConnection(BusEndpoint endpoint)
     throws InvalidPropertyValue {
-    if (params.reference != null) {
-      return context.connectByReference(params.reference, params.connprops);
+    if (endpoint.reference != null) {
+      return context.connectByReference(endpoint.reference, connprops);
     }
     else {
-      return context.connectByAddress(params.host, params.port,
-        params.connprops);
+      return context.connectByAddress(endpoint.host, endpoint.port, connprops);
     }
   }
 
@@ -245,6 +584,59 @@ public abstract class Assistant {
     return this.orb;
   }
 
+  /**
+   * Consulta a conexo utilizada pelo assistente no momento. A conexo 
+   * substituda quando o assistente troca de rplica do barramento ou promove
+   * a conexo reserva.
+   * <p>
+   * Quando o ORB  compartilhado com outros assistentes (veja
+   * {@link AssistantParams#sharedORB}), a aplicao deve definir essa conexo
+   * como a conexo corrente da thread (veja
+   * {@link OpenBusContext#setCurrentConnection(Connection)}) antes de chamar
+   * os servios encontrados em nome da entidade do assistente.
+   * 
+   * @return a conexo utilizada pelo assistente.
+   */
+  public Connection connection() {
+    return this.conn;
+  }
+
+  /**
+   * Recupera as mtricas de funcionamento do assistente.
+   * 
+   * @return as mtricas do assistente.
+   */
+  public AssistantMetrics metrics() {
+    return this.metrics;
+  }
+
+  /**
+   * Consulta o nmero de buscas atendidas por uma busca idntica em andamento.
+   * 
+   * @return o nmero de buscas agrupadas.
+   */
+  long coalescedFinds() {
+    return finds.shared();
+  }
+
+  /**
+   * Consulta o estado de registro das ofertas mantidas pelo assistente.
+   * 
+   * @return o estado das ofertas.
+   */
+  OfferStatus[] offerStatus() {
+    Offer[] current;
+    synchronized (this.offers) {
+      current = this.offers.toArray(new Offer[this.offers.size()]);
+    }
+    LoginInfo login = conn.login();
+    OfferStatus[] status = new OfferStatus[current.length];
+    for (int i = 0; i < current.length; i++) {
+      status[i] = current[i].status(login);
+    }
+    return status;
+  }
+
   /**
    * Solicita que o assitente registre um servio no barramento.
    * <p>
@@ -262,12 +654,347 @@ public abstract class Assistant {
    * 
    * @param component Referncia do servio sendo ofertado.
    * @param properties Propriedades do servio sendo ofertado.
+   * @return o acompanhamento do registro da oferta.
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado.
+   */
+  public OfferRegistration registerService(IComponent component,
+    ServiceProperty[] properties) {
+    return registerService(component, properties, 0);
+  }
+
+  /**
+   * Solicita que o assitente registre um servio no barramento com uma
+   * prioridade definida.
+   * <p>
+   * Funciona como o mtodo
+   * {@link #registerService(IComponent, ServiceProperty[])}, porm sempre que
+   * houver vrias ofertas aguardando registro, como aps o restabelecimento do
+   * login, as ofertas de maior prioridade so registradas primeiro. Ofertas
+   * registradas sem prioridade definida tm prioridade 0.
+   * 
+   * @param component Referncia do servio sendo ofertado.
+   * @param properties Propriedades do servio sendo ofertado.
+   * @param priority Prioridade de registro da oferta.
+   * @return o acompanhamento do registro da oferta.
+   * @throws IllegalArgumentException caso o componente ou as propriedades
+   *         sejam nulos, ou caso alguma propriedade seja definida pelo
+   *         barramento (prefixo 'openbus.').
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado.
    */
-  public void registerService(IComponent component, ServiceProperty[] properties) {
+  public OfferRegistration registerService(IComponent component,
+    ServiceProperty[] properties, int priority) {
+    OfferSpec.validate(component, properties);
     Offer offer = new Offer(this, component, properties);
-    this.offers.add(offer);
+    offer.priority = priority;
+    mapOffer(offer);
     // dispara o registro da oferta de servio
-    threadPool.execute(new DoRegister(this, offer));
+    engine.schedule(offer);
+    this.offers.add(offer);
+    return offer.registration;
+  }
+
+  /**
+   * Solicita que o assistente registre um lote de servios no barramento.
+   * <p>
+   * Funciona como chamar o mtodo
+   * {@link #registerService(IComponent, ServiceProperty[], int)} para cada
+   * oferta, porm as ofertas so validadas na criao das especificaes e
+   * colocadas de uma s vez na fila de registro, sendo registradas pelas
+   * threads de registro do assistente (veja o parmetro 'registerConcurrency'
+   * de {@link AssistantParams}). Assim, o tempo de registro de muitas ofertas 
+   * limitado apenas pela vazo do registro de ofertas do barramento.
+   * <p>
+   * Caso ocorram erros, a callback de tratamento de erro apropriada ser
+   * chamada para cada oferta.
+   * 
+   * @param specs Especificaes das ofertas a serem registradas.
+   * @return o acompanhamento do registro do lote.
+   * @throws IllegalArgumentException caso a coleo contenha especificaes
+   *         nulas. Nesse caso nenhuma oferta  registrada.
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado.
+   */
+  public BatchRegistration registerServices(Collection<OfferSpec> specs) {
+    List<Offer> batchOffers = new ArrayList<Offer>(specs.size());
+    List<OfferRegistration> registrations =
+      new ArrayList<OfferRegistration>(specs.size());
+    for (OfferSpec spec : specs) {
+      if (spec == null) {
+        throw new IllegalArgumentException(
+          "Especificaes de ofertas no podem ser nulas.");
+      }
+      Offer offer = new Offer(this, spec.component, spec.properties);
+      offer.priority = spec.priority;
+      batchOffers.add(offer);
+    }
+    for (Offer offer : batchOffers) {
+      mapOffer(offer);
+      registrations.add(offer.registration);
+    }
+    BatchRegistration batch = new BatchRegistration(registrations);
+    for (Offer offer : batchOffers) {
+      offer.batch = batch;
+    }
+    // dispara o registro de todas as ofertas de servio
+    engine.scheduleAll(batchOffers);
+    this.offers.addAll(batchOffers);
+    return batch;
+  }
+
+  /**
+   * Aguarda at que todas as ofertas mantidas pelo assistente estejam
+   * registradas no barramento com o login atual.
+   * <p>
+   * Permite, por exemplo, que a aplicao s se declare pronta para atender
+   * requisies aps suas ofertas estarem visveis no barramento.
+   * 
+   * @param timeout tempo mximo de espera.
+   * @param unit unidade do tempo mximo.
+   * @return <code>true</code> caso todas as ofertas estejam registradas, e
+   *         <code>false</code> caso o tempo tenha se esgotado.
+   * @throws InterruptedException caso a thread seja interrompida durante a
+   *         espera.
+   */
+  public boolean awaitAllRegistered(long timeout, TimeUnit unit)
+    throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Offer[] current;
+    synchronized (this.offers) {
+      current = this.offers.toArray(new Offer[this.offers.size()]);
+    }
+    for (Offer offer : current) {
+      long remaining = deadline - System.nanoTime();
+      if (!offer.registration.await(remaining, TimeUnit.NANOSECONDS)
+        && !offer.removed) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Aguarda at que o assistente possua um login vlido.
+   * <p>
+   * O login  feito pelo assistente em segundo plano, tanto na sua criao
+   * quanto aps a perda do login, sem bloquear as threads que detectaram a
+   * perda. Esse mtodo permite que a aplicao aguarde o restabelecimento do
+   * login, por exemplo, antes de realizar chamadas com a identidade do
+   * assistente.
+   * 
+   * @param timeout tempo mximo de espera.
+   * @param unit unidade do tempo mximo.
+   * @return <code>true</code> caso haja um login vlido, e <code>false</code>
+   *         caso o tempo tenha se esgotado.
+   * @throws InterruptedException caso a thread seja interrompida durante a
+   *         espera.
+   */
+  public boolean awaitLogin(long timeout, TimeUnit unit)
+    throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (loginLock) {
+      while (conn.login() == null) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(loginLock, remaining);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Solicita que o assistente remova uma oferta de servio do barramento.
+   * <p>
+   * A oferta deixa de ser mantida pelo assistente imediatamente e  removida
+   * do barramento atravs da referncia obtida no seu registro, sem afetar o
+   * login ou as demais ofertas. Caso o barramento esteja inacessvel, a
+   * remoo  tentada novamente at ser bem sucedida ou at que o login com o
+   * qual a oferta foi registrada seja perdido, o que tambm remove a oferta do
+   * barramento.
+   * 
+   * @param registration o acompanhamento do registro da oferta, obtido no
+   *        registro do servio.
+   * @throws IllegalArgumentException caso a oferta no seja mantida pelo
+   *         assistente.
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado.
+   */
+  public void unregisterService(OfferRegistration registration) {
+    Offer found = findOffer(registration);
+    synchronized (this.offers) {
+      if (!this.offers.remove(found)) {
+        throw new IllegalArgumentException(
+          "A oferta no  mantida pelo assistente.");
+      }
+    }
+    found.removed = true;
+    registration.removed();
+    unmapOffer(found);
+    // dispara a remoo da oferta de servio
+    engine.schedule(found);
+  }
+
+  /**
+   * Solicita que o assistente altere as propriedades de uma oferta de servio.
+   * <p>
+   * Caso a oferta esteja registrada, as propriedades so alteradas no
+   * barramento atravs da referncia obtida no seu registro, mantendo o mesmo
+   * identificador de oferta e sem um novo registro. Caso contrrio, as novas
+   * propriedades so utilizadas no prximo registro da oferta. As novas
+   * propriedades substituem todas as propriedades fornecidas anteriormente.
+   * <p>
+   * Caso ocorram erros, a alterao  tentada novamente at ser bem sucedida.
+   * 
+   * @param registration o acompanhamento do registro da oferta, obtido no
+   *        registro do servio.
+   * @param properties as novas propriedades do servio ofertado.
+   * @throws IllegalArgumentException caso a oferta no seja mantida pelo
+   *         assistente, ou caso as propriedades sejam nulas ou alguma
+   *         propriedade seja definida pelo barramento (prefixo 'openbus.').
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado.
+   */
+  public void updateServiceProperties(OfferRegistration registration,
+    ServiceProperty[] properties) {
+    Offer found = findOffer(registration);
+    OfferSpec.validate(found.component, properties);
+    found.update(Arrays.copyOf(properties, properties.length));
+    // dispara a alterao da oferta de servio
+    engine.schedule(found);
+  }
+
+  /**
+   * Busca a oferta mantida pelo assistente associada a um acompanhamento de
+   * registro.
+   * 
+   * @param registration o acompanhamento do registro da oferta.
+   * @return a oferta.
+   * @throws IllegalArgumentException caso a oferta no seja mantida pelo
+   *         assistente.
+   */
+  private Offer findOffer(OfferRegistration registration) {
+    synchronized (this.offers) {
+      for (Offer offer : this.offers) {
+        if (offer.registration == registration) {
+          return offer;
+        }
+      }
+    }
+    throw new IllegalArgumentException(
+      "A oferta no  mantida pelo assistente.");
+  }
+
+  /**
+   * Associa o componente de uma oferta e as suas facetas ao assistente, caso
+   * o ORB seja compartilhado, de forma que as chamadas recebidas por eles
+   * sejam atendidas pela conexo do assistente. A associao  feita antes do
+   * registro, j que o barramento consulta o componente ao registrar a
+   * oferta.
+   * 
+   * @param offer a oferta.
+   */
+  private void mapOffer(Offer offer) {
+    if (!sharedORB) {
+      return;
+    }
+    try {
+      POA poa = POAHelper.narrow(orb.resolve_initial_references("RootPOA"));
+      offer.objectIds = SharedDispatch.objectIds(poa, offer.component);
+    }
+    catch (InvalidName e) {
+      logger.log(Level.WARNING, "Erro ao obter o POA do componente.", e);
+    }
+    for (byte[] objectId : offer.objectIds) {
+      dispatch.register(objectId, this);
+    }
+  }
+
+  /**
+   * Desfaz a associao do componente de uma oferta removida e das suas
+   * facetas, preservando os objetos que tambm pertenam a outras ofertas
+   * mantidas pelo assistente. Os objetos das ofertas restantes so
+   * desassociados na finalizao do assistente.
+   * 
+   * @param offer a oferta removida.
+   */
+  private void unmapOffer(Offer offer) {
+    if (!sharedORB) {
+      return;
+    }
+    List<byte[]> unused = new ArrayList<byte[]>(offer.objectIds);
+    synchronized (this.offers) {
+      for (Offer other : this.offers) {
+        for (byte[] used : other.objectIds) {
+          Iterator<byte[]> it = unused.iterator();
+          while (it.hasNext()) {
+            if (Arrays.equals(it.next(), used)) {
+              it.remove();
+            }
+          }
+        }
+      }
+    }
+    for (byte[] objectId : unused) {
+      dispatch.unregister(objectId);
+    }
+  }
+
+  /**
+   * Solicita que o assistente mantenha uma viso local das ofertas que
+   * apresentem um conjunto de propriedades definido.
+   * <p>
+   * O assistente registra no barramento um observador de registro de ofertas
+   * para as propriedades fornecidas e observadores para cada oferta encontrada,
+   * atualizando a viso sempre que ofertas so registradas, alteradas ou
+   * removidas. Assim a aplicao pode consultar as ofertas da viso sem
+   * realizar buscas repetidas no barramento. Sempre que o assistente
+   * restabelecer o login, os observadores sero novamente registrados e a viso
+   * ser sincronizada com o barramento.
+   * <p>
+   * Para que a viso seja atualizada  necessrio que o ORB utilizado pelo
+   * assistente esteja processando chamadas, por exemplo, fazendo com que a
+   * aplicao chame o mtodo 'ORB::run()'.
+   * <p>
+   * Caso ocorram erros, a callback de tratamento de erro de busca ser
+   * chamada.
+   * 
+   * @param properties Propriedades que as ofertas de servios da viso devem
+   *        apresentar.
+   * @return a viso das ofertas de servio.
+   */
+  public ServiceOfferView subscribeServices(ServiceProperty[] properties) {
+    ServiceOfferView view = new ServiceOfferView(this, properties);
+    Subscription subscription = new Subscription(this, view);
+    // dispara a sincronizao da viso
+    engine.schedule(subscription);
+    this.subscriptions.add(subscription);
+    return view;
+  }
+
+  /**
+   * Remove a assinatura associada a uma viso de ofertas.
+   * 
+   * @param view a viso cancelada.
+   */
+  void unsubscribe(ServiceOfferView view) {
+    Subscription found = null;
+    synchronized (this.subscriptions) {
+      for (Subscription subscription : this.subscriptions) {
+        if (subscription.view == view) {
+          found = subscription;
+          break;
+        }
+      }
+      if (found != null) {
+        this.subscriptions.remove(found);
+      }
+    }
+    if (found != null) {
+      found.cancel(true);
+    }
   }
 
   /**
@@ -282,6 +1009,10 @@ public abstract class Assistant {
    * chamada. Se o nmero de tentativas se esgotar e no houver sucesso, a
    * ltima exceo recebida ser lanada. Caso no haja login durante todas as
    * tentativas, uma sequncia vazia ser retornada.
+   * <p>
+   * Caso o cache de buscas esteja habilitado (veja o parmetro 'cacheTTL' de
+   * {@link AssistantParams}), o resultado de uma busca anterior com as mesmas
+   * propriedades ainda vlida  retornado sem acessar o barramento.
    * 
    * @param properties Propriedades que as ofertas de servios encontradas devem
    *        apresentar.
@@ -291,21 +1022,54 @@ public abstract class Assistant {
    *        'retries' com o valor 0 implica que a operao retorna imediatamente
    *        aps uma nica tentativa. Para tentar indefinidamente o valor de
    *        'retries' deve ser -1. Entre cada tentativa  feita uma pausa dada
-   *        pelo parmetro 'interval' fornecido na criao do assistente (veja a
-   *        interface 'AssistantFactory').
+   *        pelo parmetro 'retryPolicy' ou 'interval' fornecido na criao do
+   *        assistente (veja a classe {@link AssistantParams}).
    * 
    * @return Sequncia de descries de ofertas de servio encontradas.
    * @throws Exception
    */
   public ServiceOfferDesc[] findServices(ServiceProperty[] properties,
     int retries) throws Exception {
+    return findServices(properties, retries, true);
+  }
+
+  /**
+   * Busca por ofertas que apresentem um conjunto de propriedades definido,
+   * permitindo ignorar o cache de buscas.
+   * <p>
+   * Funciona como o mtodo {@link #findServices(ServiceProperty[], int)},
+   * porm quando 'useCache'  <code>false</code> a busca  sempre realizada no
+   * barramento. O resultado obtido atualiza o cache de buscas, caso esteja
+   * habilitado.
+   * 
+   * @param properties Propriedades que as ofertas de servios encontradas devem
+   *        apresentar.
+   * @param retries Nmero de novas tentativas de busca de ofertas em caso de
+   *        falhas (veja {@link #findServices(ServiceProperty[], int)}).
+   * @param useCache <code>true</code> se o resultado pode ser obtido do cache
+   *        de buscas, e <code>false</code> caso contrrio.
+   * 
+   * @return Sequncia de descries de ofertas de servio encontradas.
+   * @throws Exception
+   */
+  public ServiceOfferDesc[] findServices(ServiceProperty[] properties,
+    int retries, boolean useCache) throws Exception {
+    OfferCache cache = this.cache;
+    if (cache != null && useCache) {
+      ServiceOfferDesc[] offerDescs = cache.get(properties);
+      metrics.cacheLookup(offerDescs != null);
+      if (offerDescs != null) {
+        return offerDescs;
+      }
+    }
     int attempt = retries;
+    RetryPolicy.Backoff backoff = retryPolicy.start();
     Exception last;
     do {
       last = null;
       if (conn.login() != null) {
         try {
-          ServiceOfferDesc[] offerDescs = find(properties);
+          ServiceOfferDesc[] offerDescs = findShared(properties, -1, cache);
           if (offerDescs != null) {
             return offerDescs;
           }
@@ -314,7 +1078,7 @@ public abstract class Assistant {
           last = e;
         }
       }
-    } while (shouldRetry(retries, --attempt));
+    } while (shouldRetry(retries, --attempt, backoff));
     if (last != null) {
       throw last;
     }
@@ -334,14 +1098,15 @@ public abstract class Assistant {
    *        'retries' com o valor 0 implica que a operao retorna imediatamente
    *        aps uma nica tentativa. Para tentar indefinidamente o valor de
    *        'retries' deve ser -1. Entre cada tentativa  feita uma pausa dada
-   *        pelo parmetro 'interval' fornecido na criao do assistente (veja a
-   *        interface 'AssistantFactory').
+   *        pelo parmetro 'retryPolicy' ou 'interval' fornecido na criao do
+   *        assistente (veja a classe {@link AssistantParams}).
    * 
    * @return Sequncia de descries de ofertas de servio registradas.
    * @throws Exception
    */
   public ServiceOfferDesc[] getAllServices(int retries) throws Exception {
     int attempt = retries;
+    RetryPolicy.Backoff backoff = retryPolicy.start();
     Exception last;
     do {
       last = null;
@@ -356,13 +1121,109 @@ public abstract class Assistant {
           last = e;
         }
       }
-    } while (shouldRetry(retries, --attempt));
+    } while (shouldRetry(retries, --attempt, backoff));
     if (last != null) {
       throw last;
     }
     return new ServiceOfferDesc[0];
   }
 
+  /**
+   * Obtm a faceta de uma oferta de servio que implementa uma determinada
+   * interface, j convertida para essa interface.
+   * <p>
+   * Equivale a obter a faceta atravs de
+   * <code>offer.service_ref.getFacet(XHelper.id())</code> e convert-la
+   * atravs de <code>XHelper.narrow</code>, porm a referncia convertida 
+   * mantida em um cache local indexado pela oferta e pela interface. Assim,
+   * usos seguintes da mesma faceta no fazem nenhuma chamada remota. As
+   * facetas de uma oferta so descartadas do cache quando a remoo da oferta
+   *  observada por uma viso do assistente (veja
+   * {@link #subscribeServices(ServiceProperty[])}), ou quando uma busca feita
+   * no barramento deixa de encontrar a oferta encontrada pela busca anterior
+   * com as mesmas propriedades (veja
+   * {@link #findServices(ServiceProperty[], int)} e
+   * {@link #getAllServices(int)}).
+   * <p>
+   * Fora desses casos, o assistente no sabe que a oferta deixou de existir, e
+   * a faceta obtida do cache pode no estar mais acessvel. Caso uma chamada 
+   * faceta falhe indicando que o servio no est mais disponvel, a aplicao
+   * deve descart-la atravs de {@link #invalidateFacets(ServiceOfferDesc)}
+   * antes de uma nova tentativa.
+   * 
+   * @param <T> tipo da interface da faceta.
+   * @param offer a descrio da oferta de servio.
+   * @param facet a interface da faceta, gerada pelo compilador IDL
+   *        juntamente com a sua classe Helper.
+   * @return a faceta convertida, ou <code>null</code> caso o servio no
+   *         oferea uma faceta com a interface.
+   * @throws IllegalArgumentException caso a interface no possua uma classe
+   *         Helper.
+   * @throws Exception as excees da chamada remota ao componente.
+   */
+  public <T extends org.omg.CORBA.Object> T getFacet(ServiceOfferDesc offer,
+    Class<T> facet) throws Exception {
+    FacetCache.Helper helper = facets.helper(facet);
+    String offerId = ServiceOfferView.offerId(offer);
+    long generation = 0;
+    if (offerId != null) {
+      // a gerao  obtida antes da consulta, de forma que um descarte feito
+      // durante a obteno remota impede o armazenamento da faceta
+      generation = facets.generation(offerId);
+      org.omg.CORBA.Object cached = facets.get(offerId, helper.id);
+      metrics.facetLookup(cached != null);
+      if (cached != null) {
+        return facet.cast(cached);
+      }
+    }
+    org.omg.CORBA.Object obj;
+    Connection previous = enter();
+    try {
+      obj = offer.service_ref.getFacet(helper.id);
+    }
+    finally {
+      leave(previous);
+    }
+    if (obj == null) {
+      return null;
+    }
+    org.omg.CORBA.Object narrowed;
+    previous = enter();
+    try {
+      narrowed = helper.narrow(obj);
+    }
+    finally {
+      leave(previous);
+    }
+    if (offerId != null) {
+      facets.put(offerId, helper.id, narrowed, generation);
+    }
+    return facet.cast(narrowed);
+  }
+
+  /**
+   * Descarta do cache local as facetas de uma oferta de servio obtidas
+   * atravs de {@link #getFacet(ServiceOfferDesc, Class)}, por exemplo, aps
+   * uma chamada  faceta indicar que a oferta no existe mais.
+   * 
+   * @param offer a descrio da oferta de servio.
+   */
+  public void invalidateFacets(ServiceOfferDesc offer) {
+    String offerId = ServiceOfferView.offerId(offer);
+    if (offerId != null) {
+      facets.invalidate(offerId);
+    }
+  }
+
+  /**
+   * Notifica o assistente de que uma oferta deixou de existir no barramento.
+   * 
+   * @param offerId identificador da oferta.
+   */
+  void offerRemoved(String offerId) {
+    facets.invalidate(offerId);
+  }
+
   /**
    * Inicia o processo de login por autenticao compartilhada.
    * <p>
@@ -385,14 +1246,15 @@ public abstract class Assistant {
    *        'retries' com o valor 0 implica que a operao retorna imediatamente
    *        aps uma nica tentativa. Para tentar indefinidamente o valor de
    *        'retries' deve ser -1. Entre cada tentativa  feita uma pausa dada
-   *        pelo parmetro 'interval' fornecido na criao do assistente (veja a
-   *        interface 'AssistantFactory').
+   *        pelo parmetro 'retryPolicy' ou 'interval' fornecido na criao do
+   *        assistente (veja a classe {@link AssistantParams}).
    * 
    * @return Objeto que representa o processo de login iniciado.
    * @throws Exception
    */
   public SharedAuthSecret startSharedAuth(int retries) throws Exception {
     int attempt = retries;
+    RetryPolicy.Backoff backoff = retryPolicy.start();
     Exception last;
     do {
       last = null;
@@ -407,7 +1269,7 @@ public abstract class Assistant {
           last = e;
         }
       }
-    } while (shouldRetry(retries, --attempt));
+    } while (shouldRetry(retries, --attempt, backoff));
     if (last != null) {
       throw last;
     }
@@ -415,28 +1277,454 @@ public abstract class Assistant {
   }
 
   /**
-   * Verifica se deve retentar a operao.
+   * Busca por ofertas que apresentem um conjunto de propriedades definido,
+   * limitando o tempo total da operao.
+   * <p>
+   * Funciona como o mtodo {@link #findServices(ServiceProperty[], int)},
+   * porm em vez de um nmero de tentativas  fornecido um tempo mximo. As
+   * tentativas so repetidas enquanto houver tempo disponvel e cada chamada
+   * ao barramento tem como tempo mximo de resposta o tempo restante (poltica
+   * CORBA 'RelativeRoundtripTimeout'). Chamadas que excedem esse tempo falham
+   * com a exceo {@link TIMEOUT}. Dessa forma o tempo total da operao 
+   * limitado pelo tempo fornecido, acrescido apenas do processamento local.
+   * <p>
+   * Se o tempo se esgotar sem sucesso, a ltima exceo recebida ser lanada.
+   * Caso no haja login durante todo o tempo, uma sequncia vazia ser
+   * retornada.
    * 
-   * @param retries nmero de tentativas configuradas pelo usurio
+   * @param properties Propriedades que as ofertas de servios encontradas devem
+   *        apresentar.
+   * @param timeout Tempo mximo da operao. Pelo menos uma tentativa  feita,
+   *        mesmo que o tempo seja nulo.
+   * @param unit Unidade do tempo mximo.
+   * 
+   * @return Sequncia de descries de ofertas de servio encontradas.
+   * @throws Exception
+   */
+  public ServiceOfferDesc[] findServices(ServiceProperty[] properties,
+    long timeout, TimeUnit unit) throws Exception {
+    OfferCache cache = this.cache;
+    if (cache != null) {
+      ServiceOfferDesc[] offerDescs = cache.get(properties);
+      metrics.cacheLookup(offerDescs != null);
+      if (offerDescs != null) {
+        return offerDescs;
+      }
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    RetryPolicy.Backoff backoff = retryPolicy.start();
+    Exception last;
+    do {
+      last = null;
+      if (conn.login() != null) {
+        Policy[] previous = setCallTimeout(deadline);
+        try {
+          long remaining = Math.max(0, deadline - System.nanoTime());
+          ServiceOfferDesc[] offerDescs =
+            findShared(properties, remaining, cache);
+          if (offerDescs != null) {
+            return offerDescs;
+          }
+        }
+        catch (Exception e) {
+          last = e;
+        }
+        finally {
+          restoreCallTimeout(previous);
+        }
+      }
+    } while (shouldRetry(deadline, backoff));
+    if (last != null) {
+      throw last;
+    }
+    return new ServiceOfferDesc[0];
+  }
+
+  /**
+   * Devolve uma lista de todas as ofertas de servio registradas, limitando o
+   * tempo total da operao.
+   * <p>
+   * Funciona como o mtodo {@link #getAllServices(int)}, porm em vez de um
+   * nmero de tentativas  fornecido um tempo mximo (veja
+   * {@link #findServices(ServiceProperty[], long, TimeUnit)}).
+   * 
+   * @param timeout Tempo mximo da operao. Pelo menos uma tentativa  feita,
+   *        mesmo que o tempo seja nulo.
+   * @param unit Unidade do tempo mximo.
+   * 
+   * @return Sequncia de descries de ofertas de servio registradas.
+   * @throws Exception
+   */
+  public ServiceOfferDesc[] getAllServices(long timeout, TimeUnit unit)
+    throws Exception {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    RetryPolicy.Backoff backoff = retryPolicy.start();
+    Exception last;
+    do {
+      last = null;
+      if (conn.login() != null) {
+        Policy[] previous = setCallTimeout(deadline);
+        try {
+          ServiceOfferDesc[] offerDescs = getAll();
+          if (offerDescs != null) {
+            return offerDescs;
+          }
+        }
+        catch (Exception e) {
+          last = e;
+        }
+        finally {
+          restoreCallTimeout(previous);
+        }
+      }
+    } while (shouldRetry(deadline, backoff));
+    if (last != null) {
+      throw last;
+    }
+    return new ServiceOfferDesc[0];
+  }
+
+  /**
+   * Inicia o processo de login por autenticao compartilhada, limitando o
+   * tempo total da operao.
+   * <p>
+   * Funciona como o mtodo {@link #startSharedAuth(int)}, porm em vez de um
+   * nmero de tentativas  fornecido um tempo mximo (veja
+   * {@link #findServices(ServiceProperty[], long, TimeUnit)}).
+   * 
+   * @param timeout Tempo mximo da operao. Pelo menos uma tentativa  feita,
+   *        mesmo que o tempo seja nulo.
+   * @param unit Unidade do tempo mximo.
+   * 
+   * @return Objeto que representa o processo de login iniciado.
+   * @throws Exception
+   */
+  public SharedAuthSecret startSharedAuth(long timeout, TimeUnit unit)
+    throws Exception {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    RetryPolicy.Backoff backoff = retryPolicy.start();
+    Exception last;
+    do {
+      last = null;
+      if (conn.login() != null) {
+        Policy[] previous = setCallTimeout(deadline);
+        try {
+          SharedAuthSecret secret = startSharedAuthentication();
+          if (secret != null) {
+            return secret;
+          }
+        }
+        catch (Exception e) {
+          last = e;
+        }
+        finally {
+          restoreCallTimeout(previous);
+        }
+      }
+    } while (shouldRetry(deadline, backoff));
+    if (last != null) {
+      throw last;
+    }
+    return null;
+  }
+
+  /**
+   * Busca de forma assncrona por ofertas que apresentem um conjunto de
+   * propriedades definido.
+   * <p>
+   * Funciona como o mtodo {@link #findServices(ServiceProperty[], int)},
+   * porm a busca  realizada por uma thread do assistente e a chamada retorna
+   * imediatamente. O resultado  obtido atravs do {@link Future} devolvido,
+   * que permite aguardar o trmino da busca com um tempo mximo de espera (veja
+   * {@link Future#get(long, TimeUnit)}) e cancelar a busca (veja
+   * {@link Future#cancel(boolean)}), interrompendo as tentativas restantes.
+   * Caso todas as tentativas falhem, a ltima exceo recebida  lanada por
+   * {@link Future#get()} encapsulada em uma
+   * {@link java.util.concurrent.ExecutionException}.
+   * <p>
+   * Caso o resultado esteja disponvel no cache de buscas, o {@link Future}
+   * devolvido j est concludo.
+   * 
+   * @param properties Propriedades que as ofertas de servios encontradas devem
+   *        apresentar.
+   * @param retries Nmero de novas tentativas de busca de ofertas em caso de
+   *        falhas (veja {@link #findServices(ServiceProperty[], int)}).
+   * 
+   * @return O resultado futuro da busca.
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado ou o pool de threads recuse a tarefa (veja
+   *         {@link AssistantParams#rejectionPolicy}).
+   */
+  public Future<ServiceOfferDesc[]> findServicesAsync(
+    final ServiceProperty[] properties, final int retries) {
+    OfferCache cache = this.cache;
+    if (cache != null) {
+      final ServiceOfferDesc[] offerDescs = cache.get(properties);
+      metrics.cacheLookup(offerDescs != null);
+      if (offerDescs != null) {
+        // evita a troca de thread quando o resultado j  conhecido
+        FutureTask<ServiceOfferDesc[]> done =
+          new FutureTask<ServiceOfferDesc[]>(
+            new Callable<ServiceOfferDesc[]>() {
+              @Override
+              public ServiceOfferDesc[] call() {
+                return offerDescs;
+              }
+            });
+        done.run();
+        return done;
+      }
+    }
+    return submitAsync(new Callable<ServiceOfferDesc[]>() {
+      @Override
+      public ServiceOfferDesc[] call() throws Exception {
+        return findServices(properties, retries, false);
+      }
+    });
+  }
+
+  /**
+   * Devolve de forma assncrona uma lista de todas as ofertas de servio
+   * registradas.
+   * <p>
+   * Funciona como o mtodo {@link #getAllServices(int)}, porm a busca 
+   * realizada por uma thread do assistente e a chamada retorna imediatamente
+   * (veja {@link #findServicesAsync(ServiceProperty[], int)}).
+   * 
+   * @param retries Nmero de novas tentativas de busca de ofertas em caso de
+   *        falhas (veja {@link #getAllServices(int)}).
+   * 
+   * @return O resultado futuro da busca.
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado ou o pool de threads recuse a tarefa (veja
+   *         {@link AssistantParams#rejectionPolicy}).
+   */
+  public Future<ServiceOfferDesc[]> getAllServicesAsync(final int retries) {
+    return submitAsync(new Callable<ServiceOfferDesc[]>() {
+      @Override
+      public ServiceOfferDesc[] call() throws Exception {
+        return getAllServices(retries);
+      }
+    });
+  }
+
+  /**
+   * Inicia de forma assncrona o processo de login por autenticao
+   * compartilhada.
+   * <p>
+   * Funciona como o mtodo {@link #startSharedAuth(int)}, porm a operao 
+   * realizada por uma thread do assistente e a chamada retorna imediatamente
+   * (veja {@link #findServicesAsync(ServiceProperty[], int)}).
+   * 
+   * @param retries Nmero de novas tentativas em caso de falhas (veja
+   *        {@link #startSharedAuth(int)}).
+   * 
+   * @return O resultado futuro da operao.
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado ou o pool de threads recuse a tarefa (veja
+   *         {@link AssistantParams#rejectionPolicy}).
+   */
+  public Future<SharedAuthSecret> startSharedAuthAsync(final int retries) {
+    return submitAsync(new Callable<SharedAuthSecret>() {
+      @Override
+      public SharedAuthSecret call() throws Exception {
+        return startSharedAuth(retries);
+      }
+    });
+  }
+
+  /**
+   * Submete uma chamada assncrona ao pool de threads. Caso o pool recuse a
+   * chamada, ela  tratada pela poltica definida pela aplicao (veja
+   * {@link AssistantParams#rejectionPolicy}). As tarefas internas do
+   * assistente, como o login, nunca so tratadas por essa poltica.
+   * 
+   * @param <T> tipo do resultado da chamada.
+   * @param call a chamada.
+   * @return o resultado futuro da chamada.
+   * @throws RejectedExecutionException caso o assistente tenha sido
+   *         finalizado ou a chamada seja recusada.
+   */
+  private <T> Future<T> submitAsync(Callable<T> call) {
+    AsyncCall<T> task = new AsyncCall<T>(call);
+    try {
+      threadPool.execute(task);
+    }
+    catch (RejectedExecutionException e) {
+      RejectedExecutionHandler handler = rejectionPolicy;
+      if (handler == null || shutdown || threadPool.isShutdown()) {
+        throw e;
+      }
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) threadPool;
+      if (handler instanceof ThreadPoolExecutor.DiscardOldestPolicy) {
+        // descarta apenas a chamada assncrona mais antiga da fila,
+        // preservando as tarefas internas
+        for (Runnable queued : pool.getQueue()) {
+          if (queued instanceof AsyncCall && pool.remove(queued)) {
+            try {
+              pool.execute(task);
+            }
+            catch (RejectedExecutionException ex) {
+              logger.fine("Chamada assncrona descartada.");
+            }
+            break;
+          }
+        }
+      }
+      else {
+        handler.rejectedExecution(task, pool);
+      }
+    }
+    return task;
+  }
+
+  /**
+   * Verifica se deve retentar a operao, aguardando o tempo de espera
+   * definido pela poltica de tentativas.
+   * 
+   * @param retries nmero de tentativas configuradas pelo usurio
    * @param attempt nmero de tentativa restantes
+   * @param backoff sequncia de tentativas da operao
    * @return <code>true</code> caso deva realizar uma nova busca, e
-   *         <code>false</code> caso contrrio.
+   *         <code>false</code> caso contrrio, inclusive quando a thread que
+   *         realiza a operao for interrompida.
    */
-  private boolean shouldRetry(int retries, int attempt) {
+  private boolean shouldRetry(int retries, int attempt,
+    RetryPolicy.Backoff backoff) {
     if ((retries < 0 || attempt >= 0) && !this.shutdown) {
+      long delay = backoff.next();
+      if (delay < 0) {
+        // tempo mximo de tentativas esgotado
+        return false;
+      }
       try {
-        Thread.sleep(mInterval);
+        Thread.sleep(delay);
       }
       catch (InterruptedException e) {
-        logger.log(Level.SEVERE, "'Find' foi interrompido.", e);
+        // operao cancelada, por exemplo, atravs de 'Future.cancel'
+        logger.log(Level.FINE, "'Find' foi interrompido.", e);
+        Thread.currentThread().interrupt();
+        return false;
       }
     }
     else {
       return false;
     }
+    metrics.retried();
     return true;
   }
 
+  /**
+   * Verifica se deve retentar uma operao com tempo mximo, aguardando o tempo
+   * de espera definido pela poltica de tentativas, limitado ao tempo
+   * restante.
+   * 
+   * @param deadline instante limite da operao em nanosegundos (veja
+   *        {@link System#nanoTime()}).
+   * @param backoff sequncia de tentativas da operao
+   * @return <code>true</code> caso deva realizar uma nova tentativa, e
+   *         <code>false</code> caso o tempo tenha se esgotado ou a thread que
+   *         realiza a operao tenha sido interrompida.
+   */
+  private boolean shouldRetry(long deadline, RetryPolicy.Backoff backoff) {
+    long remaining = deadline - System.nanoTime();
+    if (remaining <= 0 || this.shutdown) {
+      return false;
+    }
+    long delay = backoff.next();
+    if (delay < 0) {
+      // tempo mximo de tentativas esgotado
+      return false;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.MILLISECONDS
+        .toNanos(delay), remaining));
+    }
+    catch (InterruptedException e) {
+      logger.log(Level.FINE, "'Find' foi interrompido.", e);
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    if (deadline - System.nanoTime() > 0) {
+      metrics.retried();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Limita o tempo de resposta das chamadas remotas feitas pela thread
+   * corrente ao tempo restante at um instante limite.
+   * 
+   * @param deadline instante limite em nanosegundos (veja
+   *        {@link System#nanoTime()}).
+   * @return as polticas definidas anteriormente na thread, que devem ser
+   *         restauradas atravs do mtodo
+   *         {@link #restoreCallTimeout(Policy[])}, ou <code>null</code> caso
+   *         no tenha sido possvel limitar o tempo.
+   */
+  private Policy[] setCallTimeout(long deadline) {
+    try {
+      PolicyCurrent current = policyCurrent();
+      // TimeBase::TimeT  expresso em unidades de 100 nanosegundos
+      long remaining = Math.max(1, (deadline - System.nanoTime()) / 100);
+      Any value = orb.create_any();
+      value.insert_ulonglong(remaining);
+      Policy timeout =
+        orb.create_policy(RELATIVE_RT_TIMEOUT_POLICY_TYPE.value, value);
+      Policy[] previous = current.get_policy_overrides(new int[0]);
+      current.set_policy_overrides(new Policy[] { timeout },
+        SetOverrideType.ADD_OVERRIDE);
+      return previous;
+    }
+    catch (InvalidName e) {
+      logger.log(Level.WARNING, "ORB no suporta polticas por thread", e);
+    }
+    catch (PolicyError e) {
+      logger.log(Level.WARNING, "ORB no suporta tempo mximo de resposta", e);
+    }
+    catch (Exception e) {
+      logger.log(Level.SEVERE, "Erro inesperado!", e);
+    }
+    return null;
+  }
+
+  /**
+   * Restaura as polticas da thread corrente alteradas pelo mtodo
+   * {@link #setCallTimeout(long)}.
+   * 
+   * @param previous as polticas definidas anteriormente na thread.
+   */
+  private void restoreCallTimeout(Policy[] previous) {
+    if (previous == null) {
+      return;
+    }
+    try {
+      policyCurrent().set_policy_overrides(previous,
+        SetOverrideType.SET_OVERRIDE);
+    }
+    catch (Exception e) {
+      logger.log(Level.SEVERE, "Erro inesperado!", e);
+    }
+  }
+
+  /**
+   * Obtm o objeto de definio de polticas por thread do ORB.
+   * 
+   * @return o objeto 'PolicyCurrent' do ORB.
+   * @throws InvalidName caso o ORB no fornea o objeto.
+   */
+  private PolicyCurrent policyCurrent() throws InvalidName {
+    PolicyCurrent current = this.policyCurrent;
+    if (current == null) {
+      current =
+        PolicyCurrentHelper.narrow(orb
+          .resolve_initial_references("PolicyCurrent"));
+      this.policyCurrent = current;
+    }
+    return current;
+  }
+
   /**
    * Encerra o funcionamento do assistente liberando todos os recursos alocados
    * por ele.
@@ -459,15 +1747,38 @@ public abstract class Assistant {
    */
   public void shutdown() {
     this.shutdown = true;
-    threadPool.shutdownNow();
+    engine.shutdown();
+    synchronized (periodic) {
+      for (ScheduledFuture<?> task : periodic) {
+        task.cancel(false);
+      }
+      periodic.clear();
+    }
+    if (ownThreadPool) {
+      threadPool.shutdownNow();
+    }
+    if (ownScheduler) {
+      scheduler.shutdownNow();
+    }
+    synchronized (this.subscriptions) {
+      for (Subscription subscription : this.subscriptions) {
+        // o logout remove os observadores registrados no barramento
+        subscription.cancel(false);
+      }
+      this.subscriptions.clear();
+    }
     // Aguarda o trmino da execuo das threads
     try {
       long timeout = 3 * mInterval;
       TimeUnit timeUnit = TimeUnit.MILLISECONDS;
-      if (!threadPool.awaitTermination(timeout, timeUnit)) {
+      if (ownThreadPool && !threadPool.awaitTermination(timeout, timeUnit)) {
         logger.log(Level.WARNING, String.format(
           "pool de threads no finalizou. Timeout = %s s", timeout / 1000));
       }
+      if (ownScheduler && !scheduler.awaitTermination(timeout, timeUnit)) {
+        logger.log(Level.WARNING, String.format(
+          "escalonador no finalizou. Timeout = %s s", timeout / 1000));
+      }
     }
     catch (InterruptedException e) {
       logger.log(Level.SEVERE, "pool de threads foi interrompido.", e);
@@ -496,7 +1807,31 @@ public abstract class Assistant {
           "erro de NO_PERMISSION no esperado: minor_code = %s", e.minor), e);
       }
     }
-    context.setDefaultConnection(null);
+    Connection reserve = standby;
+    standby = null;
+    if (reserve != null) {
+      try {
+        reserve.logout();
+      }
+      catch (Exception e) {
+        logger.log(Level.FINE, "falha ao descartar a conexo reserva.", e);
+      }
+    }
+    if (sharedORB) {
+      dispatch.unregister(this);
+    }
+    else {
+      context.setDefaultConnection(null);
+    }
+    if (metricsName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+      }
+      catch (JMException e) {
+        logger.log(Level.WARNING, "Erro ao remover as mtricas do JMX.", e);
+      }
+      metricsName = null;
+    }
   }
 
   /**
@@ -518,59 +1853,68 @@ public abstract class Assistant {
    *         <code>false</code> caso seja bem sucedido.
    */
   private boolean login() {
-    boolean failed = true;
-    Exception ex = null;
+    long start = System.nanoTime();
+    Exception ex = authenticate(conn);
+    loginUnreachable = ex instanceof TRANSIENT || ex instanceof COMM_FAILURE;
+    return loginFinished(start, ex);
+  }
+
+  /**
+   * Realiza o login em uma conexo, utilizando os argumentos fornecidos por
+   * {@link #onLoginAuthentication()}.
+   * 
+   * @param target a conexo.
+   * @return <code>null</code> caso o login seja bem sucedido, ou a exceo
+   *         que causou a falha.
+   */
+  private Exception authenticate(Connection target) {
     try {
       AuthArgs args = onLoginAuthentication();
-      if (args != null) {
-        switch (args.mode) {
-          case AuthByPassword:
-            conn.loginByPassword(args.entity, args.password, args.domain);
-          case AuthByCertificate:
-            conn.loginByCertificate(args.entity, args.privkey);
-          case AuthBySharing:
-            conn.loginBySharedAuth(args.secret);
-        }
-        failed = false;
+      if (args == null) {
+        return new NullPointerException(
+          "'onLoginAuthentication' retornou argumentos de login nulos.");
       }
-      else {
-        ex =
-          new NullPointerException(
-            "'onLoginAuthentication' retornou argumentos de login nulos.");
+      switch (args.mode) {
+        case AuthByPassword:
+          target.loginByPassword(args.entity, args.password, args.domain);
+        case AuthByCertificate:
+          target.loginByCertificate(args.entity, args.privkey);
+        case AuthBySharing:
+          target.loginBySharedAuth(args.secret);
       }
+      return null;
     }
     catch (AccessDenied e) {
-      ex = e;
       logger.log(Level.SEVERE, "Erro ao realizar login.", e);
+      return e;
     }
     catch (AlreadyLoggedIn e) {
       // ignorando o erro
-      failed = false;
+      return null;
     }
     catch (MissingCertificate e) {
-      ex = e;
       logger.log(Level.SEVERE, "Erro ao realizar loginByCertificate.", e);
+      return e;
     }
     catch (InvalidLoginProcess e) {
-      ex = e;
       logger.log(Level.SEVERE, "Erro ao realizar loginBySharedAuth.", e);
+      return e;
     }
     // bus core
     catch (ServiceFailure e) {
-      ex = e;
       logger.log(Level.SEVERE, "Erro ao realizar login.", e);
+      return e;
     }
     catch (TRANSIENT e) {
-      ex = e;
       logger.log(Level.WARNING, "o barramento esta inacessvel no momento", e);
+      return e;
     }
     catch (COMM_FAILURE e) {
-      ex = e;
       logger.log(Level.WARNING,
         "falha de comunicao ao acessar servios ncleo do barramento", e);
+      return e;
     }
     catch (NO_PERMISSION e) {
-      ex = e;
       if (e.minor == NoLoginCode.value) {
         logger.log(Level.WARNING, "no h um login vlido no momento", e);
       }
@@ -578,42 +1922,436 @@ public abstract class Assistant {
         logger.log(Level.SEVERE, String.format(
           "erro de NO_PERMISSION no esperado: minor_code = %s", e.minor), e);
       }
+      return e;
     }
     catch (Exception e) {
-      ex = e;
       logger.log(Level.SEVERE, "Erro inesperado!", e);
+      return e;
     }
-    finally {
-      if (failed) {
-        try {
-          callback.onLoginFailure(this, ex);
-        }
-        catch (Exception e) {
-          logger.log(Level.SEVERE, "Erro inesperado ao chamar callback!", e);
-        }
+  }
+
+  /**
+   * Contabiliza uma tentativa de login e notifica a callback em caso de
+   * falha.
+   * 
+   * @param start instante do incio da tentativa, em nanosegundos.
+   * @param ex a exceo que causou a falha, ou <code>null</code> caso o login
+   *        tenha sido bem sucedido.
+   * @return <code>true</code> caso o login tenha falhado, e
+   *         <code>false</code> caso contrrio.
+   */
+  private boolean loginFinished(long start, Exception ex) {
+    boolean failed = ex != null;
+    metrics.loginAttempted(start, failed);
+    if (!failed) {
+      endpoints.succeeded();
+    }
+    else {
+      try {
+        callback.onLoginFailure(this, ex);
+      }
+      catch (Exception e) {
+        logger.log(Level.SEVERE, "Erro inesperado ao chamar callback!", e);
       }
     }
     return failed;
   }
 
   /**
-   * Mtodo responsvel por buscar por servios que atendam as propriedades
-   * especificadas.
-   * 
-   * @param props as propriedades de servio que se deseja buscar
+   * Tenta realizar o login simultaneamente em todas as rplicas do
+   * barramento. O primeiro login bem sucedido  mantido e a conexo
+   * correspondente passa a ser a conexo padro do ORB. Os logins bem
+   * sucedidos nas demais rplicas so descartados.
+   * <p>
+   * Cada tentativa  feita em uma thread prpria, e no no pool de threads do
+   * assistente, j que esta tarefa aguarda as tentativas e o pool pode estar
+   * limitado.
    * 
-   * @return as ofertas de servios encontradas, ou <code>null</code> caso algum
-   *         erro tenha ocorrido.
-   * @throws Exception
+   * @return <code>true</code> caso o login tenha falhado em todas as
+   *         rplicas, e <code>false</code> caso contrrio.
    */
-  private ServiceOfferDesc[] find(ServiceProperty[] props) throws Exception {
-    boolean failed = true;
+  private boolean raceLogin() {
+    long start = System.nanoTime();
+    LoginRace race = new LoginRace(endpoints.size());
+    for (int i = 0; i < endpoints.size(); i++) {
+      LoginAttempt attempt = new LoginAttempt(race, i);
+      try {
+        loginThreads.newThread(attempt).start();
+      }
+      catch (Exception e) {
+        logger.log(Level.SEVERE, "Erro ao iniciar tentativa de login.", e);
+        attempt.run();
+      }
+    }
+    Connection winner;
+    Exception interrupted = null;
+    try {
+      winner = race.await();
+    }
+    catch (InterruptedException e) {
+      logger.fine("Thread 'DoLogin' foi interrompida.");
+      interrupted = e;
+      winner = race.abandon();
+    }
+    if (winner == null) {
+      Exception ex = race.failure();
+      return loginFinished(start, ex != null ? ex : interrupted);
+    }
+    BusEndpoint endpoint = endpoints.get(race.winnerIndex());
+    synchronized (endpoints) {
+      endpoints.use(race.winnerIndex());
+      useConnection(winner);
+    }
+    logger.fine(String.format("login realizado na rplica do barramento %s.",
+      endpoint));
+    if (shutdown) {
+      try {
+        winner.logout();
+      }
+      catch (Exception e) {
+        logger.log(Level.FINE, "falha ao descartar o login.", e);
+      }
+    }
+    return loginFinished(start, null);
+  }
+
+  /**
+   * Descarta o estado associado ao login perdido e dispara a tarefa de
+   * recuperao do login, que refaz o login e registra as ofertas e
+   * observadores novamente. O login no  refeito pela thread que detectou a
+   * perda, de forma que essa thread no fica bloqueada enquanto o barramento
+   * estiver inacessvel. A recuperao de um mesmo login  feita apenas uma
+   * vez, mesmo que a perda seja detectada simultaneamente pela callback de
+   * login invlido e pela verificao peridica do login.
+   * 
+   * @param login o login perdido.
+   */
+  private void recoverLogin(LoginInfo login) {
+    if (login != null && login.id.equals(lostLogin.getAndSet(login.id))) {
+      logger.fine("Recuperao do login perdido j realizada.");
+      return;
+    }
+    metrics.loginInvalidated();
+    if (cache != null) {
+      // descarta buscas feitas com o login perdido
+      cache.clear();
+    }
+    synchronized (offers) {
+      for (Offer aOffer : offers) {
+        aOffer.invalidate();
+      }
+    }
+    if (promoteStandby()) {
+      // o login j est disponvel, apenas os registros so refeitos
+      resetRegistrations();
+      requestStandby();
+      return;
+    }
+    requestLogin();
+  }
+
+  /**
+   * Dispara o registro de todas as ofertas e observadores com o login atual.
+   */
+  private void resetRegistrations() {
+    synchronized (offers) {
+      for (Offer aOffer : offers) {
+        aOffer.reset();
+      }
+    }
+    synchronized (subscriptions) {
+      for (Subscription aSubscription : subscriptions) {
+        aSubscription.reset();
+      }
+    }
+  }
+
+  /**
+   * Passa a utilizar a conexo reserva como a conexo padro do ORB, caso ela
+   * exista e possua um login.
+   * 
+   * @return <code>true</code> caso a conexo reserva tenha sido promovida, e
+   *         <code>false</code> caso contrrio.
+   */
+  private boolean promoteStandby() {
+    Connection next;
+    synchronized (endpoints) {
+      next = standby;
+      standby = null;
+      if (next == null || next.login() == null) {
+        return false;
+      }
+      useConnection(next);
+    }
+    metrics.standbyPromoted();
+    logger.warning("login perdido, utilizando a conexo reserva.");
+    return true;
+  }
+
+  /**
+   * Solicita a criao da conexo reserva em segundo plano, caso o assistente
+   * mantenha uma e ela ainda no exista.
+   */
+  private void requestStandby() {
+    if (!standbyEnabled || shutdown || standby != null) {
+      return;
+    }
+    if (buildingStandby.compareAndSet(false, true)) {
+      try {
+        threadPool.execute(new BuildStandby());
+      }
+      catch (RejectedExecutionException e) {
+        buildingStandby.set(false);
+        logger.fine("Pool de threads recusou a criao da conexo reserva.");
+      }
+    }
+  }
+
+  /**
+   * Descarta a conexo reserva, caso exista.
+   */
+  private void discardStandby() {
+    Connection previous;
+    synchronized (endpoints) {
+      previous = standby;
+      standby = null;
+    }
+    if (previous != null) {
+      discardConnection(previous);
+    }
+  }
+
+  /**
+   * Realiza o logout de uma conexo que deixou de ser utilizada, em segundo
+   * plano.
+   * 
+   * @param previous a conexo.
+   */
+  private void discardConnection(final Connection previous) {
+    try {
+      threadPool.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            previous.logout();
+          }
+          catch (Exception e) {
+            logger.log(Level.FINE, "falha ao descartar o login anterior.", e);
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      logger.fine("Assistente finalizado, login anterior no descartado.");
+    }
+  }
+
+  /**
+   * Solicita que a tarefa de recuperao do login refaa o login. Caso a
+   * tarefa j esteja em execuo, ela atende a solicitao antes de terminar.
+   * Caso o pool de threads recuse a tarefa, por exemplo, por estar com a fila
+   * cheia, uma nova solicitao  agendada aps o intervalo entre tentativas.
+   */
+  private void requestLogin() {
+    loginRequested = true;
+    if (recovering.compareAndSet(false, true)) {
+      try {
+        threadPool.execute(recovery);
+      }
+      catch (RejectedExecutionException e) {
+        recovering.set(false);
+        if (shutdown) {
+          logger.fine("Assistente finalizado, login no ser refeito.");
+          return;
+        }
+        logger.warning("Pool de threads recusou o login, tentativa agendada.");
+        try {
+          scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+              requestLogin();
+            }
+          }, mInterval, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException ex) {
+          logger.fine("Escalonador finalizado, login no ser refeito.");
+        }
+      }
+    }
+  }
+
+  /**
+   * Verifica no barramento a validade do login atual. Caso o login tenha sido
+   * perdido, ele  descartado e a sua recuperao  disparada.
+   */
+  private void checkLogin() {
+    LoginInfo login = conn.login();
+    if (login == null) {
+      // o login est sendo refeito
+      return;
+    }
+    int validity;
+    Connection previous = enter();
+    try {
+      validity = context.getLoginRegistry().getLoginValidity(login.id);
+    }
+    catch (Exception e) {
+      logger.log(Level.FINE, "falha ao verificar a validade do login.", e);
+      if (e instanceof TRANSIENT || e instanceof COMM_FAILURE) {
+        busFailed();
+      }
+      return;
+    }
+    finally {
+      leave(previous);
+    }
+    busResponded();
+    if (validity > 0) {
+      return;
+    }
+    LoginInfo current = conn.login();
+    if (current == null || !current.id.equals(login.id)
+      || login.id.equals(lostLogin.get())) {
+      // a perda do login j foi tratada durante a prpria verificao
+      return;
+    }
+    logger.warning("o login do assistente foi perdido no barramento.");
+    try {
+      conn.logout();
+    }
+    catch (Exception e) {
+      logger.log(Level.FINE, "falha ao descartar o login perdido.", e);
+    }
+    recoverLogin(login);
+  }
+
+  /**
+   * Passa a utilizar uma nova conexo. Caso o ORB no seja compartilhado com
+   * outros assistentes, a conexo se torna a conexo padro do ORB.
+   * 
+   * @param next a nova conexo.
+   */
+  private void useConnection(Connection next) {
+    conn = next;
+    if (!sharedORB) {
+      context.setDefaultConnection(next);
+    }
+  }
+
+  /**
+   * Define a conexo do assistente como conexo corrente da thread antes de
+   * chamadas ao barramento, caso o ORB seja compartilhado com outros
+   * assistentes. Caso contrrio, as chamadas utilizam a conexo padro do
+   * ORB.
+   * 
+   * @return a conexo corrente anterior, a ser restaurada por
+   *         {@link #leave(Connection)}.
+   */
+  private Connection enter() {
+    if (!sharedORB) {
+      return null;
+    }
+    return context.setCurrentConnection(conn);
+  }
+
+  /**
+   * Restaura a conexo corrente da thread aps chamadas ao barramento.
+   * 
+   * @param previous a conexo corrente obtida por {@link #enter()}.
+   */
+  private void leave(Connection previous) {
+    if (sharedORB) {
+      context.setCurrentConnection(previous);
+    }
+  }
+
+  /**
+   * Registra uma comunicao bem sucedida com a rplica atual do barramento.
+   */
+  private void busResponded() {
+    endpoints.succeeded();
+  }
+
+  /**
+   * Registra uma falha de comunicao com a rplica atual do barramento. Caso
+   * o limite de falhas consecutivas seja atingido, a troca de rplica 
+   * disparada em segundo plano, j que a falha pode ser detectada por threads
+   * que estejam registrando ofertas.
+   */
+  private void busFailed() {
+    if (!endpoints.failed() || shutdown) {
+      return;
+    }
+    if (failingOver.compareAndSet(false, true)) {
+      try {
+        threadPool.execute(new Failover());
+      }
+      catch (RejectedExecutionException e) {
+        failingOver.set(false);
+      }
+    }
+  }
+
+  /**
+   * Passa a utilizar a prxima rplica do barramento, criando uma nova conexo
+   * que se torna a conexo padro do ORB. A conexo com a rplica anterior 
+   * descartada em segundo plano.
+   * 
+   * @return <code>true</code> caso a nova conexo tenha sido criada, e
+   *         <code>false</code> caso contrrio.
+   */
+  private boolean switchEndpoint() {
+    final Connection previous;
+    synchronized (endpoints) {
+      BusEndpoint endpoint = endpoints.next();
+      Connection next;
+      try {
+        next = createConnection(endpoint);
+      }
+      catch (Exception e) {
+        logger.log(Level.SEVERE, String.format(
+          "Erro ao conectar  rplica do barramento %s.", endpoint), e);
+        return false;
+      }
+      next.onInvalidLoginCallback(new OnInvalidLogin());
+      previous = conn;
+      useConnection(next);
+      metrics.failedOver();
+      logger.warning(String.format(
+        "utilizando a rplica do barramento %s.", endpoint));
+    }
+    discardConnection(previous);
+    // a conexo reserva utiliza a rplica anterior
+    discardStandby();
+    return true;
+  }
+
+  /**
+   * Mtodo responsvel por buscar por servios que atendam as propriedades
+   * especificadas.
+   * 
+   * @param props as propriedades de servio que se deseja buscar
+   * 
+   * @return as ofertas de servios encontradas, ou <code>null</code> caso algum
+   *         erro tenha ocorrido.
+   * @throws Exception
+   */
+  private ServiceOfferDesc[] find(ServiceProperty[] props) throws Exception {
+    boolean failed = true;
     Exception ex = null;
     ServiceOfferDesc[] offerDescs = null;
+    long start = System.nanoTime();
     try {
-      OfferRegistry offerRegistry = context.getOfferRegistry();
-      offerDescs = offerRegistry.findServices(props);
+      Connection previous = enter();
+      try {
+        offerDescs = context.getOfferRegistry().findServices(props);
+      }
+      finally {
+        leave(previous);
+      }
+      facets.found(props, offerDescs);
       failed = false;
+      busResponded();
     }
     // bus core
     catch (ServiceFailure e) {
@@ -622,13 +2360,20 @@ public abstract class Assistant {
     }
     catch (TRANSIENT e) {
       ex = e;
+      busFailed();
       logger.log(Level.WARNING, "o barramento esta inacessvel no momento", e);
     }
     catch (COMM_FAILURE e) {
       ex = e;
+      busFailed();
       logger.log(Level.WARNING,
         "falha de comunicao ao acessar servios ncleo do barramento", e);
     }
+    catch (TIMEOUT e) {
+      ex = e;
+      logger.log(Level.WARNING,
+        "tempo mximo de resposta do barramento esgotado", e);
+    }
     catch (NO_PERMISSION e) {
       ex = e;
       if (e.minor == NoLoginCode.value) {
@@ -644,6 +2389,7 @@ public abstract class Assistant {
       logger.log(Level.SEVERE, "Erro inesperado!", e);
     }
     finally {
+      metrics.findAttempted(start, failed);
       if (failed) {
         try {
           callback.onFindFailure(this, ex);
@@ -657,6 +2403,54 @@ public abstract class Assistant {
     return offerDescs;
   }
 
+  /**
+   * Busca ofertas no barramento agrupando buscas idnticas simultneas. Caso
+   * outra thread j esteja realizando uma busca com as mesmas propriedades,
+   * independente da ordem, o seu resultado  aguardado em vez de uma nova
+   * chamada ao barramento. Assim, falhas da busca em andamento tambm so
+   * recebidas por todas as threads que a aguardam, mas notificadas  callback
+   * apenas uma vez.
+   * <p>
+   * O resultado  armazenado no cache com a gerao obtida pela thread que
+   * realizou a busca, de forma que threads que aguardaram uma busca iniciada
+   * antes de uma invalidao do cache no armazenam o seu resultado.
+   * 
+   * @param props as propriedades a serem buscadas.
+   * @param timeout tempo mximo em nanosegundos de espera por uma busca em
+   *        andamento, ou um valor negativo para esperar indefinidamente.
+   * @param cache o cache onde o resultado deve ser armazenado, ou
+   *        <code>null</code> caso no deva ser armazenado.
+   * @return as ofertas de servios encontradas.
+   * @throws Exception
+   */
+  private ServiceOfferDesc[] findShared(final ServiceProperty[] props,
+    long timeout, final OfferCache cache) throws Exception {
+    FoundOffers found;
+    try {
+      found =
+        finds.execute(new OfferCache.Key(props), new Callable<FoundOffers>() {
+          @Override
+          public FoundOffers call() throws Exception {
+            long generation = cache != null ? cache.generation() : 0;
+            return new FoundOffers(find(props), generation);
+          }
+        }, timeout);
+    }
+    catch (TimeoutException e) {
+      throw new TIMEOUT("tempo mximo de espera pela busca esgotado", 0,
+        CompletionStatus.COMPLETED_NO);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw e;
+    }
+    if (cache != null) {
+      cache.put(props, found.offers, found.generation);
+    }
+    // o resultado  compartilhado entre as threads que aguardaram a busca
+    return found.offers.clone();
+  }
+
   /**
    * Mtodo responsvel por buscar todas as ofertas de servio publicadas no
    * barramento.
@@ -670,9 +2464,16 @@ public abstract class Assistant {
     Exception ex = null;
     ServiceOfferDesc[] offerDescs = null;
     try {
-      OfferRegistry offerRegistry = context.getOfferRegistry();
-      offerDescs = offerRegistry.getAllServices();
+      Connection previous = enter();
+      try {
+        offerDescs = context.getOfferRegistry().getAllServices();
+      }
+      finally {
+        leave(previous);
+      }
+      facets.found(new ServiceProperty[0], offerDescs);
       failed = false;
+      busResponded();
     }
     // bus core
     catch (ServiceFailure e) {
@@ -681,13 +2482,20 @@ public abstract class Assistant {
     }
     catch (TRANSIENT e) {
       ex = e;
+      busFailed();
       logger.log(Level.WARNING, "o barramento esta inacessvel no momento", e);
     }
     catch (COMM_FAILURE e) {
       ex = e;
+      busFailed();
       logger.log(Level.WARNING,
         "falha de comunicao ao acessar servios ncleo do barramento", e);
     }
+    catch (TIMEOUT e) {
+      ex = e;
+      logger.log(Level.WARNING,
+        "tempo mximo de resposta do barramento esgotado", e);
+    }
     catch (NO_PERMISSION e) {
       ex = e;
       if (e.minor == NoLoginCode.value) {
@@ -747,6 +2555,11 @@ public abstract class Assistant {
       logger.log(Level.WARNING,
         "falha de comunicao ao acessar servios ncleo do barramento", e);
     }
+    catch (TIMEOUT e) {
+      ex = e;
+      logger.log(Level.WARNING,
+        "tempo mximo de resposta do barramento esgotado", e);
+    }
     catch (NO_PERMISSION e) {
       ex = e;
       if (e.minor == NoLoginCode.value) {
@@ -781,21 +2594,49 @@ public abstract class Assistant {
    * 
    * @author Tecgraf
    */
-  private class Offer {
+  private class Offer extends RegistrationEngine.Task {
 
     /** O assistente */
     Assistant assist;
     /** O Componente a ser registrado */
     IComponent component;
     /** Propriedades a serem cadastradas na oferta */
-    ServiceProperty[] properties;
+    volatile ServiceProperty[] properties;
+    /** Indica se as propriedades foram alteradas desde o ltimo registro */
+    volatile boolean changed = false;
+    /** ltimas propriedades aceitas pelo barramento */
+    volatile ServiceProperty[] accepted;
+    /** Objeto utilizado para sincronizar a alterao das propriedades */
+    private final Object propertiesLock = new Object();
+    /** Indica se a oferta foi removida pela aplicao */
+    volatile boolean removed = false;
     /** Referncia para a descrio da oferta */
     AtomicReference<ServiceOfferDesc> offer =
       new AtomicReference<ServiceOfferDesc>();
-    /** Lock da oferta */
-    Object lock = new Object();
-    /** Varivel condicional que informa que um evento de INVALID LOGIN ocorreu */
-    AtomicBoolean event = new AtomicBoolean(true);
+    /** Referncia remota da oferta registrada */
+    volatile ServiceOffer remote;
+    /** Identificador do login com o qual a oferta foi registrada */
+    volatile String owner;
+    /** Indica se a existncia da oferta no barramento deve ser verificada */
+    volatile boolean verify = false;
+    /**
+     * Instante em nanosegundos em que a oferta passou a aguardar registro, ou 0
+     * caso esteja registrada
+     */
+    volatile long pendingSince = System.nanoTime();
+    /** Nmero de vezes que a oferta foi registrada */
+    AtomicLong registrations = new AtomicLong(0);
+    /** Tempo at o ltimo registro em nanosegundos */
+    volatile long timeToRegister = 0;
+    /** Lote do qual a oferta faz parte, caso registrada em lote */
+    BatchRegistration batch;
+    /**
+     * Identificadores do componente e das suas facetas associados ao
+     * assistente, caso o ORB seja compartilhado
+     */
+    List<byte[]> objectIds = Collections.emptyList();
+    /** Acompanhamento do registro fornecido  aplicao */
+    final OfferRegistration registration = new OfferRegistration();
 
     /**
      * Construtor.
@@ -811,6 +2652,45 @@ public abstract class Assistant {
       this.properties = Arrays.copyOf(properties, properties.length);
     }
 
+    /**
+     * Altera as propriedades a serem cadastradas na oferta.
+     * 
+     * @param properties as novas propriedades.
+     */
+    void update(ServiceProperty[] properties) {
+      synchronized (propertiesLock) {
+        this.properties = properties;
+        changed = true;
+      }
+    }
+
+    /**
+     * Obtm as propriedades a serem enviadas ao barramento. A indicao de
+     * alterao  desfeita antes da leitura das propriedades, de forma que uma
+     * alterao concorrente no  perdida.
+     * 
+     * @return as propriedades.
+     */
+    private ServiceProperty[] takeProperties() {
+      changed = false;
+      return this.properties;
+    }
+
+    /**
+     * Descarta propriedades recusadas pelo barramento, voltando a utilizar as
+     * ltimas propriedades aceitas, caso as propriedades no tenham sido
+     * alteradas novamente.
+     * 
+     * @param rejected as propriedades recusadas.
+     */
+    private void reject(ServiceProperty[] rejected) {
+      synchronized (propertiesLock) {
+        if (this.properties == rejected && accepted != null) {
+          this.properties = accepted;
+        }
+      }
+    }
+
     /**
      * Recupera o login da conexo que registrou a oferta.
      * 
@@ -818,15 +2698,44 @@ public abstract class Assistant {
      *         caso no tenha sido registrada nenhuma vez.
      */
     public String loginId() {
-      ServiceOfferDesc desc = offer.get();
-      if (desc != null) {
-        for (ServiceProperty prop : desc.properties) {
-          if (prop.name.equals("openbus.offer.login")) {
-            return prop.value;
+      return owner;
+    }
+
+    /**
+     * Registra a oferta caso ela no tenha sido registrada com o login atual,
+     * altera as suas propriedades caso tenham sido modificadas ou a remove caso
+     * tenha sido removida pela aplicao. O tratamento de uma mesma oferta 
+     * serializado, de forma que uma remoo no concorre com um registro em
+     * andamento. {@inheritDoc}
+     */
+    @Override
+    synchronized boolean process() {
+      logger.fine("Tratando registro de oferta.");
+      Connection previous = assist.enter();
+      try {
+        LoginInfo login = assist.conn.login();
+        if (removed) {
+          return removeOffer(login);
+        }
+        if (login == null) {
+          return true;
+        }
+        if (login.id.equals(loginId())) {
+          if (changed) {
+            return updateOffer();
           }
+          if (verify && !verifyOffer()) {
+            return registryOffer();
+          }
+          // j registrada com o login atual
+          registration.registered(offer.get());
+          return false;
         }
+        return registryOffer();
+      }
+      finally {
+        assist.leave(previous);
       }
-      return null;
     }
 
     /**
@@ -840,12 +2749,29 @@ public abstract class Assistant {
     public boolean registryOffer() {
       boolean failed = true;
       Exception ex = null;
+      long since = pendingSince;
+      if (since == 0) {
+        since = System.nanoTime();
+      }
+      ServiceProperty[] properties = takeProperties();
       try {
         OfferRegistry offerRegistry = assist.context.getOfferRegistry();
         ServiceOffer theOffer =
           offerRegistry.registerService(component, properties);
-        offer.set(theOffer.describe());
+        ServiceOfferDesc desc = theOffer.describe();
+        String login = null;
+        for (ServiceProperty prop : desc.properties) {
+          if (prop.name.equals("openbus.offer.login")) {
+            login = prop.value;
+            break;
+          }
+        }
+        offer.set(desc);
+        remote = theOffer;
+        owner = login;
+        accepted = properties;
         failed = false;
+        assist.busResponded();
       }
       // register
       catch (UnauthorizedFacets e) {
@@ -876,6 +2802,7 @@ public abstract class Assistant {
             prop.value));
         }
         ex = e;
+        reject(properties);
         logger.log(Level.WARNING, String.format(
           "tentativa de registrar servio com propriedades invlidas: %s",
           props.toString()), e);
@@ -887,11 +2814,13 @@ public abstract class Assistant {
       }
       catch (TRANSIENT e) {
         ex = e;
+        assist.busFailed();
         logger
           .log(Level.WARNING, "o barramento esta inacessvel no momento", e);
       }
       catch (COMM_FAILURE e) {
         ex = e;
+        assist.busFailed();
         logger.log(Level.WARNING,
           "falha de comunicao ao acessar servios ncleo do barramento", e);
       }
@@ -910,6 +2839,15 @@ public abstract class Assistant {
         logger.log(Level.SEVERE, "Erro inesperado!", e);
       }
       finally {
+        long elapsed = assist.metrics.registrationAttempted(since, failed);
+        if (!failed) {
+          timeToRegister = elapsed;
+          pendingSince = 0;
+          registration.registered(offer.get());
+          if (registrations.incrementAndGet() == 1 && batch != null) {
+            batch.offerRegistered();
+          }
+        }
         if (failed) {
           try {
             assist.callback
@@ -924,44 +2862,977 @@ public abstract class Assistant {
     }
 
     /**
-     * Marca a oferta como invlida para que o registro seja refeito.
+     * Altera as propriedades da oferta registrada com o login atual.
+     * 
+     * @return <code>true</code> caso a alterao tenha falhado e deva ser
+     *         tentada novamente, e <code>false</code> caso contrrio.
      */
-    public void reset() {
-      synchronized (this.lock) {
-        this.event.set(true);
-        this.lock.notifyAll();
-        logger.fine("Resetando oferta.");
+    private boolean updateOffer() {
+      ServiceProperty[] properties = takeProperties();
+      ServiceOfferDesc desc = offer.get();
+      try {
+        remote.setProperties(properties);
+        accepted = properties;
+        // as propriedades do barramento so mantidas pela alterao
+        List<ServiceProperty> updated = new ArrayList<ServiceProperty>();
+        for (ServiceProperty prop : desc.properties) {
+          if (prop.name.startsWith(OfferSpec.RESERVED_PREFIX)) {
+            updated.add(prop);
+          }
+        }
+        updated.addAll(Arrays.asList(properties));
+        ServiceOfferDesc newDesc =
+          new ServiceOfferDesc(desc.service_ref, updated
+            .toArray(new ServiceProperty[updated.size()]), desc.ref);
+        offer.compareAndSet(desc, newDesc);
+        registration.registered(newDesc);
+        return false;
       }
-    }
-  }
-
-  /**
-   * Callback do assistente a ser chamado quando ocorrer uma exceo
-   * {@link NO_PERMISSION} com minor igual a {@link InvalidLoginCode}
-   * 
-   * @author Tecgraf
-   */
-  private class OnInvalidLogin implements InvalidLoginCallback {
-
-    /**
-     * Refaz o login e dispara threads para registrar as ofertas novamente.
-     * {@inheritDoc}
-     */
-    @Override
-    public void invalidLogin(Connection conn, LoginInfo login) {
-      logger.fine("Iniciando callback 'OnInvalidLogin");
-      DoLogin doLogin = new DoLogin(Assistant.this);
-      doLogin.run();
+      catch (InvalidProperties e) {
+        // a oferta mantm as ltimas propriedades aceitas
+        reject(properties);
+        logger.log(Level.WARNING,
+          "tentativa de alterar oferta com propriedades invlidas.", e);
+        return false;
+      }
+      catch (UnauthorizedOperation e) {
+        logger.log(Level.SEVERE,
+          "o assistente no foi autorizado a alterar a oferta.", e);
+        return false;
+      }
+      catch (OBJECT_NOT_EXIST e) {
+        // a oferta foi removida do barramento: registra com as novas
+        // propriedades
+        logger.log(Level.WARNING, "a oferta no existe mais no barramento.", e);
+        forget();
+        return registryOffer();
+      }
+      catch (ServiceFailure e) {
+        logger.log(Level.SEVERE, "Erro ao alterar oferta.", e);
+      }
+      catch (TRANSIENT e) {
+        logger
+          .log(Level.WARNING, "o barramento esta inacessvel no momento", e);
+      }
+      catch (COMM_FAILURE e) {
+        logger.log(Level.WARNING,
+          "falha de comunicao ao acessar servios ncleo do barramento", e);
+      }
+      catch (NO_PERMISSION e) {
+        logger.log(Level.WARNING, String.format(
+          "falha de permisso ao alterar oferta: minor_code = %s", e.minor), e);
+      }
+      catch (Exception e) {
+        logger.log(Level.SEVERE, "Erro inesperado!", e);
+      }
+      changed = true;
+      return true;
+    }
+
+    /**
+     * Remove a oferta do barramento caso ela esteja registrada com o login
+     * atual. Ofertas registradas com um login que foi perdido j foram
+     * removidas pelo barramento.
+     * 
+     * @param login o login atual do assistente.
+     * @return <code>true</code> caso a remoo tenha falhado e deva ser
+     *         tentada novamente, e <code>false</code> caso contrrio.
+     */
+    private boolean removeOffer(LoginInfo login) {
+      ServiceOffer theOffer = remote;
+      if (theOffer == null || login == null || !login.id.equals(loginId())) {
+        return false;
+      }
+      try {
+        theOffer.remove();
+        forget();
+        return false;
+      }
+      catch (OBJECT_NOT_EXIST e) {
+        // j removida do barramento
+        forget();
+        return false;
+      }
+      catch (UnauthorizedOperation e) {
+        logger.log(Level.SEVERE,
+          "o assistente no foi autorizado a remover a oferta.", e);
+        return false;
+      }
+      catch (ServiceFailure e) {
+        logger.log(Level.SEVERE, "Erro ao remover oferta.", e);
+      }
+      catch (TRANSIENT e) {
+        logger
+          .log(Level.WARNING, "o barramento esta inacessvel no momento", e);
+      }
+      catch (COMM_FAILURE e) {
+        logger.log(Level.WARNING,
+          "falha de comunicao ao acessar servios ncleo do barramento", e);
+      }
+      catch (NO_PERMISSION e) {
+        logger.log(Level.WARNING, String.format(
+          "falha de permisso ao remover oferta: minor_code = %s", e.minor), e);
+      }
+      catch (Exception e) {
+        logger.log(Level.SEVERE, "Erro inesperado!", e);
+      }
+      return true;
+    }
+
+    /**
+     * Verifica se a oferta registrada com o login atual ainda existe no
+     * barramento. Falhas na verificao so ignoradas at a prxima
+     * verificao.
+     * 
+     * @return <code>false</code> caso a oferta tenha deixado de existir, e
+     *         <code>true</code> caso contrrio.
+     */
+    private boolean verifyOffer() {
+      verify = false;
+      boolean exists = true;
+      try {
+        exists = !remote._non_existent();
+      }
+      catch (OBJECT_NOT_EXIST e) {
+        exists = false;
+      }
+      catch (Exception e) {
+        logger.log(Level.FINE, "falha ao verificar a existncia da oferta.", e);
+      }
+      if (!exists) {
+        logger.warning("a oferta no existe mais no barramento.");
+        assist.metrics.offerLost();
+        forget();
+        invalidate();
+      }
+      return exists;
+    }
+
+    /**
+     * Descarta a referncia da oferta registrada, que deixou de existir no
+     * barramento. A descrio do ltimo registro  mantida.
+     */
+    private void forget() {
+      remote = null;
+      owner = null;
+    }
+
+    /**
+     * Solicita a verificao da existncia da oferta no barramento, caso ela
+     * esteja registrada.
+     */
+    public void check() {
+      if (owner == null) {
+        return;
+      }
+      verify = true;
+      try {
+        assist.engine.schedule(this);
+      }
+      catch (RejectedExecutionException e) {
+        logger.fine("Assistente finalizado, oferta no ser verificada.");
+      }
+    }
+
+    /**
+     * Marca a oferta como pendente aps a perda do login com o qual foi
+     * registrada.
+     */
+    public void invalidate() {
+      if (pendingSince == 0) {
+        pendingSince = System.nanoTime();
+      }
+      registration.pending();
+    }
+
+    /**
+     * Marca a oferta como invlida para que o registro seja refeito.
+     */
+    public void reset() {
+      logger.fine("Resetando oferta.");
+      if (pendingSince == 0) {
+        pendingSince = System.nanoTime();
+      }
+      try {
+        assist.engine.schedule(this);
+      }
+      catch (RejectedExecutionException e) {
+        logger.fine("Assistente finalizado, oferta no ser registrada.");
+      }
+    }
+
+    /**
+     * Consulta o estado de registro da oferta.
+     * 
+     * @param login o login atual do assistente.
+     * @return o estado da oferta.
+     */
+    OfferStatus status(LoginInfo login) {
+      String[] props = new String[properties.length];
+      for (int i = 0; i < properties.length; i++) {
+        props[i] = properties[i].name + "=" + properties[i].value;
+      }
+      ServiceOfferDesc desc = offer.get();
+      String offerId = null;
+      if (desc != null) {
+        for (ServiceProperty prop : desc.properties) {
+          if (prop.name.equals(ServiceProperties.ID)) {
+            offerId = prop.value;
+          }
+        }
+      }
+      boolean registered = login != null && login.id.equals(loginId());
+      return new OfferStatus(props, offerId, registered, registrations.get(),
+        timeToRegister / 1000L);
+    }
+  }
+
+  /**
+   * Tarefa peridica que solicita a verificao da existncia no barramento
+   * das ofertas registradas.
+   * 
+   * @author Tecgraf
+   */
+  private class CheckOffers implements Runnable {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
       synchronized (Assistant.this.offers) {
         for (Offer aOffer : Assistant.this.offers) {
-          aOffer.reset();
+          aOffer.check();
+        }
+      }
+    }
+  }
+
+  /**
+   * Classe interna do Assistente que representa uma assinatura de ofertas a se
+   * manter registrada no barramento.
+   * 
+   * @author Tecgraf
+   */
+  private class Subscription extends RegistrationEngine.Task {
+
+    /** O assistente */
+    Assistant assist;
+    /** A viso mantida pela assinatura */
+    ServiceOfferView view;
+    /** Observador de registro de ofertas */
+    RegistryObserver registryObserver = new RegistryObserver(this);
+    /** Observador das ofertas da viso */
+    ServiceObserver serviceObserver = new ServiceObserver(this);
+    /** Referncia para o observador de registro de ofertas */
+    OfferRegistryObserver registryObserverRef;
+    /** Referncia para o observador das ofertas da viso */
+    OfferObserver serviceObserverRef;
+    /** Assinatura do observador de registro de ofertas no barramento */
+    OfferRegistryObserverSubscription registrySub;
+    /** Assinaturas dos observadores das ofertas indexadas pelo identificador */
+    Map<String, OfferObserverSubscription> offerSubs =
+      new HashMap<String, OfferObserverSubscription>();
+    /** Login com o qual a assinatura foi sincronizada */
+    volatile String loginId;
+
+    /**
+     * Construtor.
+     * 
+     * @param assist o assistente
+     * @param view a viso mantida pela assinatura
+     */
+    public Subscription(Assistant assist, ServiceOfferView view) {
+      this.assist = assist;
+      this.view = view;
+    }
+
+    /**
+     * Sincroniza a assinatura caso ela no tenha sido sincronizada com o login
+     * atual. {@inheritDoc}
+     */
+    @Override
+    boolean process() {
+      logger.fine("Tratando sincronizao de assinatura.");
+      LoginInfo login = assist.conn.login();
+      if (login == null) {
+        return true;
+      }
+      if (login.id.equals(loginId)) {
+        return false;
+      }
+      Connection previous = assist.enter();
+      try {
+        return synchronize(login);
+      }
+      finally {
+        assist.leave(previous);
+      }
+    }
+
+    /**
+     * Mtodo responsvel por registrar os observadores no barramento e
+     * sincronizar a viso com as ofertas registradas. O mtodo retorna uma
+     * indicao se deveria retentar a sincronizao, dado que ocorreu alguma
+     * falha durante o processo.
+     * 
+     * @param login o login com o qual a sincronizao  realizada.
+     * @return <code>true</code> caso a sincronizao tenha falhado, e
+     *         <code>false</code> caso seja bem sucedida.
+     */
+    public boolean synchronize(LoginInfo login) {
+      boolean failed = true;
+      Exception ex = null;
+      try {
+        activate();
+        if (registrySub != null) {
+          try {
+            registrySub.remove();
+          }
+          catch (Exception e) {
+            logger.fine("Assinatura anterior no existe mais no barramento.");
+          }
+          registrySub = null;
+        }
+        OfferRegistry offerRegistry = assist.context.getOfferRegistry();
+        view.beginSync();
+        registrySub =
+          offerRegistry.subscribeObserver(registryObserverRef, view
+            .properties());
+        ServiceOfferDesc[] found =
+          offerRegistry.findServices(view.properties());
+        view.endSync(found);
+        synchronized (offerSubs) {
+          offerSubs.clear();
+        }
+        for (ServiceOfferDesc desc : view.offers()) {
+          observe(desc);
+        }
+        loginId = login.id;
+        failed = false;
+        assist.busResponded();
+      }
+      // bus core
+      catch (ServiceFailure e) {
+        ex = e;
+        logger.log(Level.SEVERE, "Erro ao assinar ofertas.", e);
+      }
+      catch (TRANSIENT e) {
+        ex = e;
+        assist.busFailed();
+        logger
+          .log(Level.WARNING, "o barramento esta inacessvel no momento", e);
+      }
+      catch (COMM_FAILURE e) {
+        ex = e;
+        assist.busFailed();
+        logger.log(Level.WARNING,
+          "falha de comunicao ao acessar servios ncleo do barramento", e);
+      }
+      catch (NO_PERMISSION e) {
+        ex = e;
+        if (e.minor == NoLoginCode.value) {
+          logger.log(Level.WARNING, "no h um login vlido no momento", e);
+        }
+        else {
+          logger.log(Level.SEVERE, String.format(
+            "erro de NO_PERMISSION no esperado: minor_code = %s", e.minor), e);
+        }
+      }
+      catch (Exception e) {
+        ex = e;
+        logger.log(Level.SEVERE, "Erro inesperado!", e);
+      }
+      finally {
+        if (failed) {
+          try {
+            assist.callback.onFindFailure(assist, ex);
+          }
+          catch (Exception e) {
+            logger.log(Level.SEVERE, "Erro inesperado ao chamar callback!", e);
+          }
+        }
+      }
+      return failed;
+    }
+
+    /**
+     * Ativa os observadores no POA do ORB utilizado pelo assistente.
+     * 
+     * @throws Exception
+     */
+    private synchronized void activate() throws Exception {
+      if (registryObserverRef == null) {
+        POA poa =
+          POAHelper.narrow(assist.orb.resolve_initial_references("RootPOA"));
+        poa.the_POAManager().activate();
+        registryObserverRef =
+          OfferRegistryObserverHelper.narrow(poa
+            .servant_to_reference(registryObserver));
+        serviceObserverRef =
+          OfferObserverHelper.narrow(poa.servant_to_reference(serviceObserver));
+        if (assist.sharedORB) {
+          assist.dispatch.register(poa.servant_to_id(registryObserver), assist);
+          assist.dispatch.register(poa.servant_to_id(serviceObserver), assist);
+        }
+      }
+    }
+
+    /**
+     * Registra o observador da viso em uma oferta. Caso a oferta no exista
+     * mais, ela  removida da viso.
+     * 
+     * @param desc a descrio da oferta.
+     */
+    public void observe(ServiceOfferDesc desc) {
+      String id = ServiceOfferView.offerId(desc);
+      synchronized (offerSubs) {
+        if (offerSubs.containsKey(id)) {
+          return;
+        }
+      }
+      Connection previous = assist.enter();
+      try {
+        OfferObserverSubscription sub =
+          desc.ref.subscribeObserver(serviceObserverRef);
+        synchronized (offerSubs) {
+          offerSubs.put(id, sub);
+        }
+      }
+      catch (OBJECT_NOT_EXIST e) {
+        logger.fine("Oferta removida antes do registro do observador.");
+        view.remove(desc);
+      }
+      catch (Exception e) {
+        logger.log(Level.WARNING,
+          "Erro ao registrar observador de oferta de servio.", e);
+      }
+      finally {
+        assist.leave(previous);
+      }
+    }
+
+    /**
+     * Descarta o observador registrado em uma oferta removida.
+     * 
+     * @param desc a descrio da oferta.
+     */
+    public void forget(ServiceOfferDesc desc) {
+      synchronized (offerSubs) {
+        offerSubs.remove(ServiceOfferView.offerId(desc));
+      }
+    }
+
+    /**
+     * Marca a assinatura como invlida para que o registro dos observadores
+     * seja refeito.
+     */
+    public void reset() {
+      logger.fine("Resetando assinatura.");
+      this.loginId = null;
+      try {
+        assist.engine.schedule(this);
+      }
+      catch (RejectedExecutionException e) {
+        logger.fine("Assistente finalizado, assinatura no ser registrada.");
+      }
+    }
+
+    /**
+     * Cancela a assinatura, desativando os observadores.
+     * 
+     * @param remote <code>true</code> caso os observadores devam ser removidos
+     *        do barramento, e <code>false</code> caso contrrio.
+     */
+    public void cancel(boolean remote) {
+      this.canceled = true;
+      if (remote) {
+        List<OfferObserverSubscription> subs;
+        synchronized (offerSubs) {
+          subs = new ArrayList<OfferObserverSubscription>(offerSubs.values());
+          offerSubs.clear();
+        }
+        Connection previous = assist.enter();
+        try {
+          if (registrySub != null) {
+            registrySub.remove();
+          }
+          for (OfferObserverSubscription sub : subs) {
+            sub.remove();
+          }
+        }
+        catch (Exception e) {
+          logger.log(Level.WARNING,
+            "Erro ao remover observadores de ofertas de servio.", e);
+        }
+        finally {
+          assist.leave(previous);
+        }
+      }
+      synchronized (this) {
+        if (registryObserverRef != null) {
+          try {
+            POA poa =
+              POAHelper
+                .narrow(assist.orb.resolve_initial_references("RootPOA"));
+            byte[] registryId = poa.servant_to_id(registryObserver);
+            byte[] serviceId = poa.servant_to_id(serviceObserver);
+            if (assist.sharedORB) {
+              assist.dispatch.unregister(registryId);
+              assist.dispatch.unregister(serviceId);
+            }
+            poa.deactivate_object(registryId);
+            poa.deactivate_object(serviceId);
+          }
+          catch (Exception e) {
+            logger.log(Level.WARNING, "Erro ao desativar observadores.", e);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Observador de registro de ofertas de uma assinatura.
+   * 
+   * @author Tecgraf
+   */
+  private class RegistryObserver extends OfferRegistryObserverPOA {
+
+    /** A assinatura */
+    private Subscription subscription;
+
+    /**
+     * Construtor.
+     * 
+     * @param subscription a assinatura
+     */
+    public RegistryObserver(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void offerRegistered(ServiceOfferDesc offer) {
+      if (subscription.view.put(offer)) {
+        subscription.observe(offer);
+      }
+    }
+  }
+
+  /**
+   * Observador das ofertas de uma assinatura.
+   * 
+   * @author Tecgraf
+   */
+  private class ServiceObserver extends OfferObserverPOA {
+
+    /** A assinatura */
+    private Subscription subscription;
+
+    /**
+     * Construtor.
+     * 
+     * @param subscription a assinatura
+     */
+    public ServiceObserver(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    /**
+     * Atualiza a oferta na viso, descartando o seu observador caso ela deixe
+     * de apresentar as propriedades da viso. {@inheritDoc}
+     */
+    @Override
+    public void propertiesChanged(ServiceOfferDesc offer) {
+      if (subscription.view.update(offer)) {
+        subscription.forget(offer);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removed(ServiceOfferDesc offer) {
+      subscription.view.remove(offer);
+      subscription.forget(offer);
+    }
+  }
+
+  /**
+   * Callback do assistente a ser chamado quando ocorrer uma exceo
+   * {@link NO_PERMISSION} com minor igual a {@link InvalidLoginCode}
+   * 
+   * @author Tecgraf
+   */
+  private class OnInvalidLogin implements InvalidLoginCallback {
+
+    /**
+     * Dispara a recuperao do login sem bloquear a thread que detectou a sua
+     * perda. {@inheritDoc}
+     */
+    @Override
+    public void invalidLogin(Connection conn, LoginInfo login) {
+      logger.fine("Iniciando callback 'OnInvalidLogin");
+      if (conn == standby) {
+        logger.warning("o login da conexo reserva foi perdido.");
+        synchronized (endpoints) {
+          if (standby == conn) {
+            standby = null;
+          }
         }
+        requestStandby();
+        return;
       }
+      if (conn != Assistant.this.conn) {
+        // conexo com uma rplica que deixou de ser utilizada
+        logger.fine("Login perdido de rplica descartada.");
+        return;
+      }
+      recoverLogin(login);
       logger.fine("Finalizando callback 'OnInvalidLogin");
     }
 
   }
 
+  /**
+   * Tarefa peridica que dispara a verificao da validade do login. A
+   * verificao  feita pelas threads do assistente que realizam chamadas
+   * assncronas, sem ocupar as threads de registro. Uma nova verificao s 
+   * disparada aps o trmino da anterior.
+   * 
+   * @author Tecgraf
+   */
+  private class CheckLogin implements Runnable {
+
+    /** Indica se h uma verificao em andamento */
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    /** Verificao realizada pelas threads do assistente */
+    private final Runnable check = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          checkLogin();
+        }
+        finally {
+          running.set(false);
+        }
+      }
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      if (!running.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        threadPool.execute(check);
+      }
+      catch (RejectedExecutionException e) {
+        running.set(false);
+      }
+    }
+  }
+
+  /**
+   * Tarefa que cria a conexo reserva. O login da conexo reserva  feito por
+   * autenticao compartilhada a partir do login atual, de forma que a
+   * aplicao no precisa fornecer novamente os argumentos de autenticao.
+   * Em caso de falha, a criao  tentada novamente aps o intervalo entre
+   * tentativas.
+   * 
+   * @author Tecgraf
+   */
+  private class BuildStandby implements Runnable {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      Connection next = null;
+      boolean failed = false;
+      try {
+        Connection primary = conn;
+        if (shutdown || standby != null || primary.login() == null) {
+          // a conexo reserva  solicitada novamente aps o prximo login
+          return;
+        }
+        SharedAuthSecret secret = primary.startSharedAuth();
+        next = createConnection(endpoints.current());
+        next.onInvalidLoginCallback(new OnInvalidLogin());
+        next.loginBySharedAuth(secret);
+        synchronized (endpoints) {
+          if (!shutdown && primary == conn && standby == null) {
+            standby = next;
+            next = null;
+          }
+        }
+        logger.fine("Conexo reserva estabelecida.");
+      }
+      catch (Exception e) {
+        logger.log(Level.WARNING, "falha ao estabelecer a conexo reserva.", e);
+        failed = true;
+      }
+      finally {
+        buildingStandby.set(false);
+      }
+      if (next != null && next.login() != null) {
+        // a conexo principal mudou durante a criao
+        discardConnection(next);
+      }
+      if (failed && !shutdown) {
+        try {
+          scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+              requestStandby();
+            }
+          }, mInterval, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+          logger.fine("Escalonador finalizado, conexo reserva no criada.");
+        }
+      }
+    }
+  }
+
+  /**
+   * Tarefa que troca a rplica do barramento aps falhas de comunicao
+   * consecutivas com a rplica atual. O login  refeito na nova rplica e as
+   * ofertas e observadores so registrados novamente nela.
+   * 
+   * @author Tecgraf
+   */
+  private class Failover implements Runnable {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      try {
+        LoginInfo login = conn.login();
+        if (login == null || shutdown) {
+          // o login est sendo refeito e as rplicas so trocadas pelo login
+          return;
+        }
+        logger.warning("rplica do barramento degradada, trocando de rplica.");
+        if (switchEndpoint()) {
+          recoverLogin(login);
+        }
+      }
+      finally {
+        failingOver.set(false);
+      }
+    }
+  }
+
+  /**
+   * Tentativa de login em uma das rplicas do barramento durante uma disputa
+   * de login (veja {@link Assistant#raceLogin()}). Caso outra rplica tenha
+   * respondido antes, o login obtido  descartado.
+   * 
+   * @author Tecgraf
+   */
+  private class LoginAttempt implements Runnable {
+
+    /** Disputa da qual a tentativa participa */
+    private final LoginRace race;
+    /** Posio da rplica na lista de rplicas */
+    private final int index;
+
+    /**
+     * Construtor.
+     * 
+     * @param race a disputa da qual a tentativa participa.
+     * @param index posio da rplica na lista de rplicas.
+     */
+    public LoginAttempt(LoginRace race, int index) {
+      this.race = race;
+      this.index = index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      BusEndpoint endpoint = endpoints.get(index);
+      Connection target = null;
+      Exception ex;
+      try {
+        target = createConnection(endpoint);
+        target.onInvalidLoginCallback(new OnInvalidLogin());
+        ex = authenticate(target);
+      }
+      catch (Exception e) {
+        logger.log(Level.SEVERE, String.format(
+          "Erro ao conectar  rplica do barramento %s.", endpoint), e);
+        ex = e;
+      }
+      if (!race.finish(index, target, ex) && ex == null) {
+        // outra rplica respondeu antes
+        try {
+          target.logout();
+        }
+        catch (Exception e) {
+          logger.log(Level.FINE, "falha ao descartar o login excedente.", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Disputa entre tentativas simultneas de login nas rplicas do barramento.
+   * A primeira tentativa bem sucedida vence a disputa.
+   * 
+   * @author Tecgraf
+   */
+  private static class LoginRace {
+
+    /** Nmero de tentativas em andamento */
+    private int pending;
+    /** Conexo da tentativa vencedora */
+    private Connection winner;
+    /** Posio da rplica da tentativa vencedora */
+    private int winnerIndex = -1;
+    /** Falha da rplica preferida dentre as que falharam */
+    private Exception failure;
+    /** Posio da rplica de 'failure' */
+    private int failureIndex = -1;
+    /** Indica se o resultado da disputa deixou de ser aguardado */
+    private boolean abandoned = false;
+
+    /**
+     * Construtor.
+     * 
+     * @param attempts nmero de tentativas.
+     */
+    public LoginRace(int attempts) {
+      this.pending = attempts;
+    }
+
+    /**
+     * Registra o trmino de uma tentativa.
+     * 
+     * @param index posio da rplica da tentativa.
+     * @param target conexo da tentativa.
+     * @param ex a exceo que causou a falha, ou <code>null</code> caso o
+     *        login tenha sido bem sucedido.
+     * @return <code>true</code> caso a tentativa tenha vencido a disputa, e
+     *         <code>false</code> caso contrrio.
+     */
+    synchronized boolean finish(int index, Connection target, Exception ex) {
+      pending--;
+      boolean won = false;
+      if (ex == null) {
+        if (winner == null && !abandoned) {
+          winner = target;
+          winnerIndex = index;
+          won = true;
+        }
+      }
+      else if (failure == null || index < failureIndex) {
+        failure = ex;
+        failureIndex = index;
+      }
+      notifyAll();
+      return won;
+    }
+
+    /**
+     * Aguarda a primeira tentativa bem sucedida, ou o trmino de todas as
+     * tentativas.
+     * 
+     * @return a conexo da tentativa vencedora, ou <code>null</code> caso
+     *         todas as tentativas tenham falhado.
+     * @throws InterruptedException caso a thread seja interrompida.
+     */
+    synchronized Connection await() throws InterruptedException {
+      while (winner == null && pending > 0) {
+        wait();
+      }
+      return winner;
+    }
+
+    /**
+     * Deixa de aguardar a disputa. Os logins obtidos a partir de ento so
+     * descartados.
+     * 
+     * @return a conexo da tentativa vencedora, caso j haja uma, ou
+     *         <code>null</code> caso contrrio.
+     */
+    synchronized Connection abandon() {
+      abandoned = true;
+      return winner;
+    }
+
+    /**
+     * Consulta a posio da rplica da tentativa vencedora.
+     * 
+     * @return a posio da rplica.
+     */
+    synchronized int winnerIndex() {
+      return winnerIndex;
+    }
+
+    /**
+     * Consulta a falha da rplica preferida dentre as que falharam.
+     * 
+     * @return a exceo que causou a falha.
+     */
+    synchronized Exception failure() {
+      return failure;
+    }
+  }
+
+  /**
+   * Tarefa compartilhada que refaz o login e dispara o registro das ofertas e
+   * observadores. Solicitaes de login feitas durante a execuo da tarefa
+   * so atendidas pela prpria tarefa, de forma que h no mximo uma tarefa
+   * de recuperao em execuo.
+   * 
+   * @author Tecgraf
+   */
+  private class RecoverLogin implements Runnable {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      try {
+        while (loginRequested && !shutdown) {
+          loginRequested = false;
+          new DoLogin(Assistant.this).run();
+          synchronized (loginLock) {
+            loginLock.notifyAll();
+          }
+          requestStandby();
+          if (lostLogin.get() == null) {
+            // login inicial, no h registros a refazer
+            continue;
+          }
+          resetRegistrations();
+        }
+      }
+      finally {
+        recovering.set(false);
+      }
+      if (loginRequested && !shutdown) {
+        // solicitao feita aps o trmino do lao
+        requestLogin();
+      }
+    }
+  }
+
   /**
    * Tarefa que executa o processo de login junto ao barramento.
    * 
@@ -992,11 +3863,37 @@ public abstract class Assistant {
         // j possui um login vlido
         retry = false;
       }
+      RetryPolicy.Backoff backoff =
+        assist.retryPolicy.persistent(assist.mInterval).start();
+      // rplicas tentadas desde a ltima espera
+      int tried = 1;
       while (retry && !assist.shutdown) {
+        if (assist.raceLogin) {
+          retry = assist.raceLogin();
+          if (retry) {
+            assist.metrics.retried();
+            try {
+              Thread.sleep(backoff.next());
+            }
+            catch (InterruptedException e) {
+              logger.fine("Thread 'DoLogin' foi interrompida.");
+            }
+          }
+          continue;
+        }
         retry = assist.login();
+        if (retry && assist.loginUnreachable && assist.endpoints.size() > 1
+          && assist.switchEndpoint()) {
+          if (tried++ < assist.endpoints.size()) {
+            // tenta a prxima rplica sem esperar
+            continue;
+          }
+          tried = 1;
+        }
         if (retry) {
+          assist.metrics.retried();
           try {
-            Thread.sleep(mInterval);
+            Thread.sleep(backoff.next());
           }
           catch (InterruptedException e) {
             logger.fine("Thread 'DoLogin' foi interrompida.");
@@ -1008,76 +3905,47 @@ public abstract class Assistant {
   }
 
   /**
-   * Tarefa que executa o processo de registro de oferta junto ao barramento.
+   * Resultado de uma busca no barramento compartilhado entre as threads que
+   * aguardaram a busca (veja {@link Assistant#findShared}).
    * 
    * @author Tecgraf
    */
-  private class DoRegister implements Runnable {
+  private static class FoundOffers {
 
-    /** Assistente em uso */
-    Assistant assist;
-    /** Oferta de servio a ser registrada */
-    private Offer offer;
+    /** As ofertas encontradas */
+    private final ServiceOfferDesc[] offers;
+    /** A gerao do cache no incio da busca */
+    private final long generation;
 
     /**
-     * Construtor
+     * Construtor.
      * 
-     * @param assist o assistente em uso.
-     * @param offer a oferta a ser registrada.
+     * @param offers as ofertas encontradas.
+     * @param generation a gerao do cache no incio da busca.
      */
-    public DoRegister(Assistant assist, Offer offer) {
-      this.assist = assist;
-      this.offer = offer;
+    FoundOffers(ServiceOfferDesc[] offers, long generation) {
+      this.offers = offers;
+      this.generation = generation;
     }
+  }
+
+  /**
+   * Chamada assncrona submetida pela aplicao, distinguvel das tarefas
+   * internas do assistente na fila do pool de threads.
+   * 
+   * @param <T> tipo do resultado da chamada.
+   * 
+   * @author Tecgraf
+   */
+  private static class AsyncCall<T> extends FutureTask<T> {
 
     /**
-     * {@inheritDoc}
+     * Construtor.
+     * 
+     * @param call a chamada.
      */
-    @Override
-    public void run() {
-      logger.fine("Iniciando tarefa 'DoRegister'.");
-      while (!assist.shutdown) {
-        boolean retry = true;
-        // espera por notificao de evento
-        synchronized (offer.lock) {
-          while (!offer.event.get() && !assist.shutdown) {
-            try {
-              offer.lock.wait();
-            }
-            catch (InterruptedException e) {
-              logger.fine("Thread 'DoRegister' foi interrompida.");
-              break;
-            }
-          }
-          offer.event.set(false);
-        }
-        // tratando 1 evento
-        while (retry && !assist.shutdown) {
-          logger.fine("Thread 'DoRegister' tratando evento");
-          LoginInfo login = assist.conn.login();
-          if (login != null) {
-            if (!login.id.equals(offer.loginId())) {
-              retry = offer.registryOffer();
-            }
-            else {
-              retry = false;
-            }
-          }
-          if (retry) {
-            try {
-              Thread.sleep(mInterval);
-            }
-            catch (InterruptedException e) {
-              logger.warning("Thread 'DoRegister' foi interrompida.");
-              break;
-            }
-          }
-          else {
-            logger.fine("Completou atendimento de evento 'DoRegister'.");
-          }
-        }
-      }
-      logger.fine("Finalizando tarefa 'DoRegister'.");
+    AsyncCall(Callable<T> call) {
+      super(call);
     }
   }
 
@@ -0,0 +1,199 @@
+package tecgraf.openbus.assistant;
+
+import javax.management.MXBean;
+
+/**
+ * Mtricas de funcionamento de um assistente.
+ * <p>
+ * As mtricas cobrem o processo de login, o registro das ofertas mantidas pelo
+ * assistente e as buscas de ofertas. Os contadores so acumulados desde a
+ * criao do assistente e as latncias so resumidas por histogramas (veja
+ * {@link LatencySnapshot}). A coleta das mtricas no aloca memria nem utiliza
+ * travas nas operaes do assistente.
+ * <p>
+ * As mtricas de um assistente so obtidas atravs do mtodo
+ * {@link Assistant#metrics()} e podem ser exportadas via JMX definindo o
+ * parmetro 'metricsName' de {@link AssistantParams}.
+ * 
+ * @author Tecgraf
+ */
+@MXBean
+public interface AssistantMetrics {
+
+  /**
+   * Recupera o nmero de tentativas de login.
+   * 
+   * @return o nmero de tentativas.
+   */
+  long getLoginAttempts();
+
+  /**
+   * Recupera o nmero de tentativas de login que falharam.
+   * 
+   * @return o nmero de falhas.
+   */
+  long getLoginFailures();
+
+  /**
+   * Recupera as latncias das tentativas de login bem sucedidas.
+   * 
+   * @return o resumo das latncias.
+   */
+  LatencySnapshot getLoginLatency();
+
+  /**
+   * Recupera o nmero de vezes que o login do assistente foi perdido.
+   * 
+   * @return o nmero de logins invlidos.
+   */
+  long getInvalidLogins();
+
+  /**
+   * Recupera o nmero de vezes que o assistente passou a utilizar outra
+   * rplica do barramento (veja {@link AssistantParams#failoverThreshold}).
+   * 
+   * @return o nmero de trocas de rplica.
+   */
+  long getFailovers();
+
+  /**
+   * Recupera o nmero de vezes que o assistente passou a utilizar a conexo
+   * reserva aps a perda do login (veja {@link AssistantParams#standbyLogin}).
+   * 
+   * @return o nmero de promoes da conexo reserva.
+   */
+  long getStandbyPromotions();
+
+  /**
+   * Recupera o nmero de tentativas de registro de ofertas.
+   * 
+   * @return o nmero de tentativas.
+   */
+  long getRegistrationAttempts();
+
+  /**
+   * Recupera o nmero de tentativas de registro de ofertas que falharam.
+   * 
+   * @return o nmero de falhas.
+   */
+  long getRegistrationFailures();
+
+  /**
+   * Recupera os tempos decorridos entre as ofertas se tornarem pendentes, seja
+   * pela solicitao de registro ou pela perda do login, e o seu registro no
+   * barramento.
+   * 
+   * @return o resumo dos tempos.
+   */
+  LatencySnapshot getTimeToRegister();
+
+  /**
+   * Recupera o nmero de ofertas registradas com o login atual que deixaram de
+   * existir no barramento, por exemplo, removidas pelo administrador, e foram
+   * registradas novamente (veja o parmetro 'offerCheckInterval' de
+   * {@link AssistantParams}).
+   * 
+   * @return o nmero de ofertas perdidas.
+   */
+  long getLostOffers();
+
+  /**
+   * Recupera o nmero de ofertas registradas com o login atual.
+   * 
+   * @return o nmero de ofertas registradas.
+   */
+  int getRegisteredOffers();
+
+  /**
+   * Recupera o nmero de ofertas aguardando registro.
+   * 
+   * @return o nmero de ofertas pendentes.
+   */
+  int getPendingOffers();
+
+  /**
+   * Recupera o estado de registro de cada oferta mantida pelo assistente.
+   * 
+   * @return o estado das ofertas.
+   */
+  OfferStatus[] getOffers();
+
+  /**
+   * Recupera o nmero de buscas de ofertas realizadas no barramento.
+   * 
+   * @return o nmero de buscas.
+   */
+  long getFindCalls();
+
+  /**
+   * Recupera o nmero de buscas de ofertas realizadas no barramento que
+   * falharam.
+   * 
+   * @return o nmero de falhas.
+   */
+  long getFindFailures();
+
+  /**
+   * Recupera as latncias das buscas de ofertas bem sucedidas realizadas no
+   * barramento.
+   * 
+   * @return o resumo das latncias.
+   */
+  LatencySnapshot getFindLatency();
+
+  /**
+   * Recupera o nmero de buscas que aguardaram uma busca idntica j em
+   * andamento no barramento e receberam o seu resultado, sem realizar uma
+   * nova busca.
+   * 
+   * @return o nmero de buscas agrupadas.
+   */
+  long getCoalescedFinds();
+
+  /**
+   * Recupera o nmero de buscas atendidas pelo cache de buscas.
+   * 
+   * @return o nmero de acertos.
+   */
+  long getCacheHits();
+
+  /**
+   * Recupera o nmero de buscas no atendidas pelo cache de buscas.
+   * 
+   * @return o nmero de faltas.
+   */
+  long getCacheMisses();
+
+  /**
+   * Recupera a proporo de buscas atendidas pelo cache de buscas.
+   * 
+   * @return a proporo de acertos entre 0 e 1, ou 0 caso nenhuma busca tenha
+   *         consultado o cache.
+   */
+  double getCacheHitRatio();
+
+  /**
+   * Recupera o nmero de facetas obtidas do cache de facetas (veja
+   * {@link Assistant#getFacet(tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc, Class)}
+   * ).
+   * 
+   * @return o nmero de acertos.
+   */
+  long getFacetCacheHits();
+
+  /**
+   * Recupera o nmero de facetas no encontradas no cache de facetas, que
+   * foram obtidas do componente da oferta.
+   * 
+   * @return o nmero de faltas.
+   */
+  long getFacetCacheMisses();
+
+  /**
+   * Recupera o nmero de novas tentativas de login, de buscas e de incio de
+   * autenticao compartilhada realizadas aps falhas.
+   * 
+   * @return o nmero de novas tentativas.
+   */
+  long getRetries();
+}
@@ -1,6 +1,11 @@
 package tecgraf.openbus.assistant;
 
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import org.omg.CORBA.ORB;
 import org.omg.CORBA.Object;
@@ -16,6 +21,8 @@ import org.omg.CORBA.Object;
  * depois de uma falha na tentativa de um login ou registro de oferta, o
  * assistente espera pelo menos o tempo indicado por esse parmetro antes de
  * tentar uma nova tentativa.
+ * <li>retryPolicy: Poltica que define o tempo de espera entre tentativas. Caso
+ * seja definida, substitui o tempo de espera fixo dado por 'interval'.
  * <li>orb: O ORB a ser utilizado pelo assistente para realizar suas tarefas. O
  * assistente tambm configura esse ORB de forma que todas as chamadas feitas
  * por ele sejam feitas com a identidade do login estabelecido pelo assistente.
@@ -26,6 +33,43 @@ import org.omg.CORBA.Object;
  * operao 'OpenBusContext::createConnection()'.
  * <li>callback: Objeto de callback que recebe notificaes de falhas das
  * tarefas realizadas pelo assistente.
+ * <li>cacheTTL: Tempo em segundos durante o qual o resultado de uma busca de
+ * ofertas  mantido em cache local pelo assistente. Caso no seja definido, as
+ * buscas sempre so feitas no barramento.
+ * <li>cacheMaxSize: Nmero mximo de buscas distintas mantidas no cache local.
+ * <li>facetCacheMaxSize: Nmero mximo de facetas mantidas no cache local de
+ * facetas.
+ * <li>registerConcurrency: Nmero mximo de registros de ofertas e observadores
+ * realizados simultaneamente pelo assistente.
+ * <li>registerRate: Nmero mximo de registros de ofertas e observadores
+ * realizados por segundo pelo assistente.
+ * <li>offerCheckInterval: Tempo em segundos entre verificaes da existncia
+ * no barramento das ofertas registradas pelo assistente.
+ * <li>loginCheckInterval: Tempo em segundos entre verificaes da validade do
+ * login do assistente no barramento.
+ * <li>executor: Executor que realiza as tarefas em segundo plano do
+ * assistente, tais como as chamadas assncronas e o login.
+ * <li>scheduler: Escalonador que realiza os registros de ofertas e observadores
+ * e as verificaes peridicas.
+ * <li>threadFactory: Fbrica das threads dos executores criados pelo
+ * assistente.
+ * <li>virtualThreads: Indica se os executores criados pelo assistente utilizam
+ * threads virtuais.
+ * <li>asyncThreads: Nmero mximo de threads do pool de tarefas em segundo
+ * plano criado pelo assistente.
+ * <li>asyncQueueSize: Tamanho mximo da fila de tarefas em segundo plano
+ * aguardando uma thread livre.
+ * <li>rejectionPolicy: Tratamento das chamadas assncronas recusadas pelo
+ * pool criado pelo assistente.
+ * <li>failoverThreshold: Nmero de falhas de comunicao consecutivas com a
+ * rplica atual do barramento aps o qual o assistente passa a utilizar outra
+ * rplica.
+ * <li>raceLogin: Indica se o login deve ser tentado simultaneamente em todas
+ * as rplicas do barramento.
+ * <li>standbyLogin: Indica se o assistente mantm uma conexo reserva com
+ * login, a ser utilizada imediatamente caso o login atual seja perdido.
+ * <li>sharedORB: Indica se o ORB pode ser compartilhado com outros
+ * assistentes.
  * </ul>
  * 
  * @author Tecgraf
@@ -41,6 +85,11 @@ public class AssistantParams {
    * barramento
    */
   protected Object reference;
+  /**
+   * Rplicas do barramento em ordem de preferncia, ou <code>null</code> caso
+   * o barramento seja indicado por 'host' e 'port' ou por 'reference'
+   */
+  protected BusEndpoint[] endpoints;
   /**
    * Tempo em segundos indicando o tempo mnimo de espera antes de cada nova
    * tentativa aps uma falha na execuo de uma tarefa. Por exemplo, depois de
@@ -49,6 +98,17 @@ public class AssistantParams {
    * nova tentativa. No pode ser menor do que 1 segundo.
    */
   public Float interval;
+  /**
+   * Poltica que define o tempo de espera entre tentativas aps uma falha na
+   * execuo de uma tarefa, utilizada no login, no registro de ofertas e
+   * observadores e nas buscas. Permite, por exemplo, que a primeira tentativa
+   * seja feita em menos de 1 segundo e que as tentativas seguintes sejam
+   * espaadas de forma crescente e aleatria. Caso no seja definida, o
+   * assistente espera sempre o tempo dado por 'interval' entre tentativas.
+   * 
+   * @see RetryPolicy
+   */
+  public RetryPolicy retryPolicy;
   /**
    * O ORB a ser utilizado pelo assistente para realizar suas tarefas. O
    * assistente tambm configura esse ORB de forma que todas as chamadas feitas
@@ -68,6 +128,189 @@ public class AssistantParams {
    * pelo assistente.
    */
   public OnFailureCallback callback;
+  /**
+   * Tempo em segundos durante o qual o resultado de uma busca de ofertas 
+   * mantido em cache local pelo assistente. Buscas com o mesmo conjunto de
+   * propriedades, independente da ordem, feitas dentro desse tempo so
+   * respondidas sem acessar o barramento. O cache  descartado sempre que o
+   * login  perdido. Caso no seja definido, as buscas sempre so feitas no
+   * barramento.
+   */
+  public Float cacheTTL;
+  /**
+   * Nmero mximo de buscas distintas mantidas no cache local. Quando
+   * atingido, as buscas utilizadas h mais tempo so descartadas. Caso no seja
+   * definido, so mantidas no mximo 128 buscas.
+   */
+  public Integer cacheMaxSize;
+  /**
+   * Nmero mximo de facetas mantidas no cache local de facetas (veja
+   * {@link Assistant#getFacet(tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc, Class)}
+   * ). Quando atingido, as facetas utilizadas h mais tempo so descartadas.
+   * Caso no seja definido, so mantidas no mximo 256 facetas.
+   */
+  public Integer facetCacheMaxSize;
+  /**
+   * Nmero mximo de registros de ofertas e observadores realizados
+   * simultaneamente pelo assistente. Esse  tambm o nmero de threads
+   * utilizadas para esses registros. Caso no seja definido, so realizados no
+   * mximo 2 registros simultneos.
+   */
+  public Integer registerConcurrency;
+  /**
+   * Nmero mximo de registros de ofertas e observadores realizados por segundo
+   * pelo assistente. Limita a carga imposta ao barramento quando todas as
+   * ofertas precisam ser registradas novamente aps o restabelecimento do
+   * login. Caso no seja definido, no h limite de registros por segundo.
+   */
+  public Float registerRate;
+  /**
+   * Tempo em segundos entre verificaes da existncia no barramento das
+   * ofertas registradas pelo assistente. Cada verificao consulta apenas se a
+   * referncia da oferta ainda existe, e as ofertas que deixaram de existir sem
+   * a perda do login, por exemplo, removidas pelo administrador do barramento,
+   * so registradas novamente. Caso no seja definido, as ofertas no so
+   * verificadas e s so registradas novamente aps a perda do login.
+   */
+  public Float offerCheckInterval;
+  /**
+   * Tempo em segundos entre verificaes da validade do login do assistente no
+   * barramento. As verificaes so feitas em segundo plano e, caso o login
+   * tenha sido perdido, ele  refeito e as ofertas e observadores so
+   * registrados novamente antes que as chamadas da aplicao detectem a perda
+   * do login. Caso no seja definido, a perda do login s  tratada quando
+   * detectada por alguma chamada.
+   */
+  public Float loginCheckInterval;
+  /**
+   * Nome JMX (veja {@link javax.management.ObjectName}) com o qual as mtricas
+   * do assistente so registradas no servidor de MBeans da plataforma, como
+   * 'tecgraf.openbus.assistant:type=Assistant,name=MeuServico'. O registro 
+   * removido na finalizao do assistente. Caso no seja definido, as mtricas
+   * so coletadas mas no so exportadas via JMX (veja
+   * {@link AssistantMetrics}).
+   */
+  public String metricsName;
+  /**
+   * Executor que realiza as tarefas em segundo plano do assistente: as
+   * chamadas assncronas (como 'findServicesAsync'), o login e a verificao
+   * do login. Permite que o assistente utilize um pool de threads j existente
+   * na aplicao. Esse executor no  finalizado pelo assistente, e deve
+   * dispor de threads suficientes para que o login possa ser refeito enquanto
+   * houver chamadas assncronas aguardando o login. Caso no seja definido, o
+   * assistente cria o seu prprio pool (veja 'asyncThreads').
+   */
+  public ExecutorService executor;
+  /**
+   * Escalonador que realiza os registros de ofertas e observadores, as novas
+   * tentativas de registro e as verificaes peridicas de ofertas e login. No
+   * mximo 'registerConcurrency' registros ocupam as threads do escalonador
+   * simultaneamente. Esse escalonador no  finalizado pelo assistente. Caso
+   * no seja definido, o assistente cria um escalonador com
+   * 'registerConcurrency' threads.
+   */
+  public ScheduledExecutorService scheduler;
+  /**
+   * Fbrica das threads dos executores criados pelo assistente, por exemplo,
+   * para definir o nome, a prioridade ou o grupo das threads. Em JVMs que
+   * oferecem threads virtuais, tambm permite que o assistente as utilize,
+   * como em 'Thread.ofVirtual().name("assistant-", 0).factory()'. Caso no
+   * seja definida, so criadas threads Daemon nomeadas como
+   * 'openbus-assistant-&lt;n&gt;-async-&lt;m&gt;' e
+   * 'openbus-assistant-&lt;n&gt;-register-&lt;m&gt;'.
+   */
+  public ThreadFactory threadFactory;
+  /**
+   * Indica se os executores criados pelo assistente utilizam threads virtuais,
+   * disponveis a partir do Java 21. Nesse modo, as esperas entre tentativas
+   * de login, de registro e de busca feitas pelas threads do assistente no
+   * ocupam threads do sistema, permitindo manter um grande nmero de ofertas e
+   * de buscas assncronas simultneas com poucas threads do sistema (veja a
+   * propriedade 'jdk.virtualThreadScheduler.parallelism' da JVM). No pode ser
+   * utilizado em conjunto com 'threadFactory'. Caso no seja definido, so
+   * utilizadas threads do sistema.
+   */
+  public Boolean virtualThreads;
+  /**
+   * Nmero mximo de threads do pool de tarefas em segundo plano criado pelo
+   * assistente. Threads ociosas so finalizadas aps 60 segundos. Caso no
+   * seja definido, o nmero de threads no  limitado e uma nova thread 
+   * criada sempre que no houver thread livre. No  utilizado caso
+   * 'executor' seja definido.
+   */
+  public Integer asyncThreads;
+  /**
+   * Tamanho mximo da fila de tarefas em segundo plano aguardando uma thread
+   * livre, quando o nmero de threads  limitado por 'asyncThreads'. Tarefas
+   * que excedam a fila so tratadas por 'rejectionPolicy'. O valor 0 indica
+   * que no h fila. Caso no seja definido, a fila no  limitada.
+   */
+  public Integer asyncQueueSize;
+  /**
+   * Tratamento das chamadas assncronas (como
+   * {@link Assistant#findServicesAsync}) recusadas pelo pool de tarefas em
+   * segundo plano criado pelo assistente (veja
+   * {@link java.util.concurrent.ThreadPoolExecutor}). Caso no seja definido,
+   * as chamadas assncronas recusadas lanam
+   * {@link java.util.concurrent.RejectedExecutionException}. A poltica no 
+   * aplicada s tarefas internas do assistente, como o login, a verificao
+   * do login e a troca de rplica: tarefas internas recusadas so sempre
+   * tentadas novamente aps o intervalo entre tentativas. A poltica
+   * {@link java.util.concurrent.ThreadPoolExecutor.DiscardOldestPolicy}
+   * descarta apenas a chamada assncrona mais antiga da fila.
+   */
+  public RejectedExecutionHandler rejectionPolicy;
+  /**
+   * Nmero de falhas de comunicao consecutivas com a rplica atual do
+   * barramento, nas buscas, nos registros e nas verificaes do login, aps o
+   * qual o assistente passa a utilizar outra rplica, refazendo o login e os
+   * registros de ofertas e observadores nela. Falhas de comunicao no login
+   * levam  troca imediata de rplica. S  utilizado caso sejam fornecidas
+   * vrias rplicas (veja {@link #AssistantParams(List)}). Caso no seja
+   * definido, a rplica  trocada aps 3 falhas consecutivas.
+   */
+  public Integer failoverThreshold;
+  /**
+   * Indica se o login deve ser tentado simultaneamente em todas as rplicas
+   * do barramento, mantendo o primeiro login bem sucedido e descartando os
+   * demais. Dessa forma, o tempo para estabelecer o login deixa de depender
+   * das rplicas inacessveis ou lentas. S tem efeito quando so utilizadas
+   * vrias rplicas (veja {@link #AssistantParams(List)}) e no deve ser
+   * utilizado com autenticao compartilhada, j que o segredo s pode ser
+   * utilizado em um login. Caso no seja definido, as rplicas so tentadas
+   * uma de cada vez, em ordem de preferncia.
+   */
+  public Boolean raceLogin;
+  /**
+   * Indica se o assistente mantm uma conexo reserva com um segundo login da
+   * mesma entidade, obtido por autenticao compartilhada a partir do login
+   * atual. Caso o login atual seja perdido, a conexo reserva passa a ser
+   * utilizada imediatamente, sem esperar um novo login, e uma nova conexo
+   * reserva  criada em segundo plano. As ofertas e observadores ainda
+   * precisam ser registrados novamente, mas as buscas e demais chamadas
+   * deixam de falhar durante a recuperao. O login da conexo reserva 
+   * renovado pela prpria conexo. Caso no seja definido, o assistente no
+   * mantm uma conexo reserva.
+   */
+  public Boolean standbyLogin;
+  /**
+   * Indica se o ORB pode ser compartilhado com outros assistentes, por
+   * exemplo, para que um mesmo processo atue em nome de vrias entidades.
+   * Nesse caso, o assistente no define a conexo padro do ORB: as chamadas
+   * feitas pelo assistente utilizam a sua conexo como conexo corrente da
+   * thread, e as chamadas recebidas pelos componentes ofertados atravs do
+   * assistente, pelas suas facetas e pelos observadores de ofertas do
+   * assistente so atendidas pela sua conexo (veja
+   * {@link tecgraf.openbus.OpenBusContext#onCallDispatch(tecgraf.openbus.CallDispatchCallback)}
+   * ). Para isso, o componente e as suas facetas devem estar ativados no
+   * 'RootPOA' do ORB. A aplicao deve selecionar a conexo do assistente
+   * (veja {@link Assistant#connection()}) ao chamar os servios encontrados. Os
+   * assistentes tambm podem compartilhar as threads atravs de 'executor' e
+   * 'scheduler'. Caso no seja definido, o assistente utiliza a conexo
+   * padro do ORB, e a criao do assistente falha caso o ORB j possua uma
+   * conexo padro.
+   */
+  public Boolean sharedORB;
 
   /**
    * Parmetros de configurao de assistente que realizar a conexo a um
@@ -93,4 +336,32 @@ public class AssistantParams {
   public AssistantParams(Object reference) {
     this.reference = reference;
   }
+
+  /**
+   * Parmetros de configurao de assistente que realizar a conexo a um
+   * barramento replicado, utilizando uma lista de rplicas em ordem de
+   * preferncia.
+   * <p>
+   * O assistente realiza o login na primeira rplica acessvel da lista. Caso
+   * uma rplica fique inacessvel, o assistente passa a utilizar a prxima
+   * rplica, refazendo o login e registrando novamente as ofertas e
+   * observadores nela (veja 'failoverThreshold'). As ofertas registradas na
+   * rplica anterior so removidas pelo barramento quando o login anterior
+   * expirar.
+   * 
+   * @param endpoints Rplicas do barramento em ordem de preferncia.
+   */
+  public AssistantParams(List<BusEndpoint> endpoints) {
+    if (endpoints == null || endpoints.isEmpty()) {
+      throw new IllegalArgumentException(
+        "A lista de rplicas do barramento no pode ser vazia.");
+    }
+    this.endpoints = endpoints.toArray(new BusEndpoint[endpoints.size()]);
+    for (BusEndpoint endpoint : this.endpoints) {
+      if (endpoint == null) {
+        throw new IllegalArgumentException(
+          "As rplicas do barramento no podem ser nulas.");
+      }
+    }
+  }
 }
@@ -0,0 +1,101 @@
+package tecgraf.openbus.assistant;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fbrica das threads Daemon utilizadas pelo assistente.
+ * <p>
+ * As threads recebem nomes no formato
+ * 'openbus-assistant-&lt;assistente&gt;-&lt;funo&gt;-&lt;thread&gt;', por
+ * exemplo, 'openbus-assistant-1-register-2', permitindo identific-las em
+ * profilers e em dumps de threads.
+ * <p>
+ * Em JVMs que oferecem threads virtuais (Java 21 ou superior), a fbrica
+ * tambm pode criar threads virtuais (veja
+ * {@link #virtual(int, String)}). A API de threads virtuais  acessada por
+ * reflexo, de forma que o assistente continua compatvel com Java 1.6.
+ * 
+ * @author Tecgraf
+ */
+class AssistantThreadFactory implements ThreadFactory {
+
+  /** Contador de assistentes, utilizado nos nomes das threads */
+  private static final AtomicInteger assistants = new AtomicInteger(0);
+
+  /** Prefixo dos nomes das threads criadas */
+  private final String prefix;
+  /** Contador de threads criadas */
+  private final AtomicInteger threads = new AtomicInteger(0);
+
+  /**
+   * Construtor.
+   * 
+   * @param assistant nmero do assistente (veja {@link #nextAssistant()}).
+   * @param role funo das threads no assistente.
+   */
+  AssistantThreadFactory(int assistant, String role) {
+    this.prefix = "openbus-assistant-" + assistant + "-" + role + "-";
+  }
+
+  /**
+   * Obtm o nmero do prximo assistente criado.
+   * 
+   * @return o nmero do assistente.
+   */
+  static int nextAssistant() {
+    return assistants.incrementAndGet();
+  }
+
+  /**
+   * Cria uma fbrica de threads virtuais nomeadas para serem utilizadas pelo
+   * assistente. Threads virtuais no ocupam uma thread do sistema enquanto
+   * aguardam, por exemplo, o intervalo entre tentativas de login ou de busca,
+   * de forma que um grande nmero de tarefas do assistente pode aguardar
+   * simultaneamente utilizando poucas threads do sistema.
+   * 
+   * @param assistant nmero do assistente (veja {@link #nextAssistant()}).
+   * @param role funo das threads no assistente.
+   * @return a fbrica de threads virtuais, ou <code>null</code> caso a JVM no
+   *         oferea threads virtuais.
+   */
+  static ThreadFactory virtual(int assistant, String role) {
+    try {
+      Method ofVirtual = Thread.class.getMethod("ofVirtual");
+      // os mtodos so obtidos da interface pblica do construtor de threads
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      Method name = builder.getMethod("name", String.class, long.class);
+      Method factory = builder.getMethod("factory");
+      Object virtual = ofVirtual.invoke(null);
+      virtual =
+        name.invoke(virtual, "openbus-assistant-" + assistant + "-" + role
+          + "-", 1L);
+      return (ThreadFactory) factory.invoke(virtual);
+    }
+    catch (NoSuchMethodException e) {
+      return null;
+    }
+    catch (ClassNotFoundException e) {
+      return null;
+    }
+    catch (IllegalAccessException e) {
+      return null;
+    }
+    catch (InvocationTargetException e) {
+      // ocorre em Java 19 e 20, em que threads virtuais so experimentais
+      return null;
+    }
+  }
+
+  /**
+   * Cria threads Daemon nomeadas para serem utilizadas pelo assistente.
+   */
+  @Override
+  public Thread newThread(Runnable task) {
+    Thread thread = new Thread(task, prefix + threads.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
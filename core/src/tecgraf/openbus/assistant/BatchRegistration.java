@@ -0,0 +1,98 @@
+package tecgraf.openbus.assistant;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acompanhamento do registro de um lote de ofertas de servio.
+ * <p>
+ * O lote  concludo quando todas as suas ofertas tiverem sido registradas no
+ * barramento ao menos uma vez. Aps a concluso, as ofertas continuam sendo
+ * mantidas pelo assistente normalmente, inclusive aps a perda do login.
+ * 
+ * @see Assistant#registerServices(java.util.Collection)
+ * 
+ * @author Tecgraf
+ */
+public class BatchRegistration {
+
+  /** Registros das ofertas do lote */
+  private final List<OfferRegistration> registrations;
+  /** Nmero de ofertas do lote */
+  private final int size;
+  /** Nmero de ofertas ainda no registradas */
+  private final CountDownLatch remaining;
+
+  /**
+   * Construtor.
+   * 
+   * @param registrations registros das ofertas do lote.
+   */
+  BatchRegistration(List<OfferRegistration> registrations) {
+    this.registrations = Collections.unmodifiableList(registrations);
+    this.size = registrations.size();
+    this.remaining = new CountDownLatch(size);
+  }
+
+  /**
+   * Notifica o primeiro registro de uma oferta do lote.
+   */
+  void offerRegistered() {
+    remaining.countDown();
+  }
+
+  /**
+   * Consulta o nmero de ofertas do lote.
+   * 
+   * @return o nmero de ofertas.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Recupera o acompanhamento do registro de cada oferta do lote, na ordem em
+   * que foram fornecidas.
+   * 
+   * @return os registros das ofertas.
+   */
+  public List<OfferRegistration> registrations() {
+    return registrations;
+  }
+
+  /**
+   * Consulta o nmero de ofertas do lote j registradas.
+   * 
+   * @return o nmero de ofertas registradas.
+   */
+  public int registered() {
+    return size - (int) remaining.getCount();
+  }
+
+  /**
+   * Indica se todas as ofertas do lote foram registradas.
+   * 
+   * @return <code>true</code> caso todas as ofertas tenham sido registradas, e
+   *         <code>false</code> caso contrrio.
+   */
+  public boolean isDone() {
+    return remaining.getCount() == 0;
+  }
+
+  /**
+   * Aguarda o registro de todas as ofertas do lote.
+   * 
+   * @param timeout tempo mximo de espera.
+   * @param unit unidade do tempo mximo.
+   * @return <code>true</code> caso todas as ofertas tenham sido registradas, e
+   *         <code>false</code> caso o tempo tenha se esgotado.
+   * @throws InterruptedException caso a thread seja interrompida durante a
+   *         espera.
+   */
+  public boolean await(long timeout, TimeUnit unit)
+    throws InterruptedException {
+    return remaining.await(timeout, unit);
+  }
+}
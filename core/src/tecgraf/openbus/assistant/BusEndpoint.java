@@ -0,0 +1,67 @@
+package tecgraf.openbus.assistant;
+
+import org.omg.CORBA.Object;
+
+/**
+ * Endereo de uma rplica do barramento a ser utilizada pelo assistente.
+ * <p>
+ * Uma rplica  indicada por um nome ou endereo de rede e um nmero de
+ * porta, ou por uma referncia CORBA a um componente SCS que representa os
+ * servios ncleo do barramento, da mesma forma que nos construtores de
+ * {@link AssistantParams}.
+ * 
+ * @see AssistantParams#AssistantParams(java.util.List)
+ * 
+ * @author Tecgraf
+ */
+public class BusEndpoint {
+
+  /** Host da rplica */
+  final String host;
+  /** Porta da rplica */
+  final int port;
+  /** Referncia para os servios ncleo da rplica */
+  final Object reference;
+
+  /**
+   * Rplica indicada por host e porta.
+   * 
+   * @param host Endereo ou nome de rede onde os servios ncleo do barramento
+   *        esto executando.
+   * @param port Porta onde os servios ncleo do barramento esto executando.
+   */
+  public BusEndpoint(String host, int port) {
+    if (host == null) {
+      throw new IllegalArgumentException("O host no pode ser nulo.");
+    }
+    this.host = host;
+    this.port = port;
+    this.reference = null;
+  }
+
+  /**
+   * Rplica indicada por uma referncia CORBA.
+   * 
+   * @param reference Referncia CORBA a um componente SCS que representa os
+   *        servios ncleo do barramento.
+   */
+  public BusEndpoint(Object reference) {
+    if (reference == null) {
+      throw new IllegalArgumentException("A referncia no pode ser nula.");
+    }
+    this.host = null;
+    this.port = 0;
+    this.reference = reference;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    if (reference != null) {
+      return "referncia " + reference;
+    }
+    return host + ":" + port;
+  }
+}
@@ -0,0 +1,143 @@
+package tecgraf.openbus.assistant;
+
+/**
+ * Lista ordenada das rplicas do barramento utilizadas pelo assistente, com o
+ * acompanhamento da sade de cada rplica.
+ * <p>
+ * O assistente utiliza uma rplica por vez. Falhas de comunicao consecutivas
+ * com a rplica atual so contadas e, ao atingir o limite definido, o
+ * assistente passa a utilizar outra rplica. A rplica escolhida  a primeira
+ * da lista que no tenha falhado recentemente, de forma que as rplicas
+ * preferidas pela aplicao voltam a ser utilizadas aps o tempo de
+ * quarentena. Caso todas as rplicas tenham falhado recentemente,  escolhida
+ * a que falhou h mais tempo.
+ * 
+ * @author Tecgraf
+ */
+class EndpointList {
+
+  /** As rplicas em ordem de preferncia */
+  private final BusEndpoint[] endpoints;
+  /** Nmero de falhas consecutivas que leva  troca de rplica */
+  private final int threshold;
+  /** Tempo em nanosegundos durante o qual uma rplica que falhou  evitada */
+  private final long quarantine;
+  /** Instante da ltima falha de cada rplica, caso tenha falhado */
+  private final long[] failedAt;
+  /** Indica se cada rplica j falhou */
+  private final boolean[] failed;
+  /** Posio da rplica atual */
+  private int current = 0;
+  /** Falhas consecutivas da rplica atual */
+  private int failures = 0;
+
+  /**
+   * Construtor.
+   * 
+   * @param endpoints as rplicas em ordem de preferncia.
+   * @param threshold nmero de falhas consecutivas que leva  troca de rplica.
+   * @param quarantine tempo em nanosegundos durante o qual uma rplica que
+   *        falhou  evitada.
+   */
+  EndpointList(BusEndpoint[] endpoints, int threshold, long quarantine) {
+    this.endpoints = endpoints.clone();
+    this.threshold = threshold;
+    this.quarantine = quarantine;
+    this.failedAt = new long[endpoints.length];
+    this.failed = new boolean[endpoints.length];
+  }
+
+  /**
+   * Consulta o nmero de rplicas.
+   * 
+   * @return o nmero de rplicas.
+   */
+  int size() {
+    return endpoints.length;
+  }
+
+  /**
+   * Consulta uma rplica.
+   * 
+   * @param index posio da rplica na lista.
+   * @return a rplica.
+   */
+  BusEndpoint get(int index) {
+    return endpoints[index];
+  }
+
+  /**
+   * Consulta a rplica atual.
+   * 
+   * @return a rplica atual.
+   */
+  synchronized BusEndpoint current() {
+    return endpoints[current];
+  }
+
+  /**
+   * Registra uma comunicao bem sucedida com a rplica atual.
+   */
+  synchronized void succeeded() {
+    failures = 0;
+  }
+
+  /**
+   * Passa a utilizar uma rplica com a qual houve uma comunicao bem
+   * sucedida.
+   * 
+   * @param index posio da rplica na lista.
+   */
+  synchronized void use(int index) {
+    current = index;
+    failed[index] = false;
+    failures = 0;
+  }
+
+  /**
+   * Registra uma falha de comunicao com a rplica atual.
+   * 
+   * @return <code>true</code> caso o limite de falhas consecutivas tenha sido
+   *         atingido e haja outra rplica a ser utilizada, e
+   *         <code>false</code> caso contrrio.
+   */
+  synchronized boolean failed() {
+    if (endpoints.length < 2) {
+      return false;
+    }
+    failures++;
+    return failures >= threshold;
+  }
+
+  /**
+   * Descarta a rplica atual e escolhe a prxima rplica a ser utilizada.
+   * 
+   * @return a rplica escolhida.
+   */
+  synchronized BusEndpoint next() {
+    long now = System.nanoTime();
+    failed[current] = true;
+    failedAt[current] = now;
+    int chosen = -1;
+    for (int i = 0; i < endpoints.length; i++) {
+      if (i != current && (!failed[i] || now - failedAt[i] >= quarantine)) {
+        chosen = i;
+        break;
+      }
+    }
+    if (chosen < 0) {
+      // todas falharam recentemente: utiliza a que falhou h mais tempo
+      for (int i = 0; i < endpoints.length; i++) {
+        if (i != current
+          && (chosen < 0 || failedAt[i] - failedAt[chosen] < 0)) {
+          chosen = i;
+        }
+      }
+    }
+    if (chosen >= 0) {
+      current = chosen;
+    }
+    failures = 0;
+    return endpoints[current];
+  }
+}
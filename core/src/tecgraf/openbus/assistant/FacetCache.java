@@ -0,0 +1,308 @@
+package tecgraf.openbus.assistant;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * Cache local das referncias para facetas de ofertas de servio, j
+ * convertidas para a interface da faceta.
+ * <p>
+ * As entradas so indexadas pelo identificador da oferta e pelo identificador
+ * de repositrio da interface da faceta. Dessa forma, o uso repetido de uma
+ * faceta dispensa a chamada remota 'getFacet' ao componente e a verificao
+ * remota de tipo feita pelo 'narrow'. As entradas de uma oferta so
+ * descartadas quando a oferta deixa de existir e, ao atingir o tamanho
+ * mximo, as entradas menos utilizadas recentemente so descartadas.
+ * <p>
+ * Cada descarte das facetas de uma oferta avana a gerao da oferta. A
+ * gerao  obtida antes da chamada remota que obtm a faceta, e a faceta s
+ *  armazenada caso a gerao no tenha mudado, de forma que um descarte
+ * concorrente com a obteno no  desfeito pelo armazenamento.
+ * <p>
+ * O cache tambm guarda as ofertas encontradas pela ltima busca feita no
+ * barramento com cada conjunto de propriedades. As entradas das ofertas que
+ * deixam de ser encontradas por uma nova busca com as mesmas propriedades so
+ * descartadas.
+ * <p>
+ * A converso utiliza a classe Helper gerada pelo compilador IDL para a
+ * interface da faceta, obtida por reflexo.
+ * 
+ * @author Tecgraf
+ */
+class FacetCache {
+
+  /** Nmero mximo de entradas */
+  private final int maxSize;
+  /** Entradas do cache ordenadas por acesso */
+  private final Map<Key, org.omg.CORBA.Object> entries;
+  /** Ofertas encontradas pela ltima busca com cada conjunto de propriedades */
+  private final Map<OfferCache.Key, Set<String>> results;
+  /** Gerao do ltimo descarte de cada oferta, ordenada por acesso */
+  private final Map<String, Long> discards;
+  /** Nmero de descartes feitos */
+  private long discarded = 0;
+  /** Maior gerao dentre os descartes que deixaram de ser mantidos */
+  private long forgotten = 0;
+  /** Classes Helper j resolvidas, indexadas pela interface */
+  private final ConcurrentMap<Class<?>, Helper> helpers =
+    new ConcurrentHashMap<Class<?>, Helper>();
+
+  /**
+   * Construtor.
+   * 
+   * @param maxSize nmero mximo de entradas mantidas.
+   */
+  FacetCache(final int maxSize) {
+    this.maxSize = maxSize;
+    this.entries =
+      new LinkedHashMap<Key, org.omg.CORBA.Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+          Map.Entry<Key, org.omg.CORBA.Object> eldest) {
+          return size() > FacetCache.this.maxSize;
+        }
+      };
+    this.results =
+      new LinkedHashMap<OfferCache.Key, Set<String>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+          Map.Entry<OfferCache.Key, Set<String>> eldest) {
+          return size() > FacetCache.this.maxSize;
+        }
+      };
+    this.discards = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        if (size() > FacetCache.this.maxSize) {
+          forgotten = Math.max(forgotten, eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Consulta a gerao das facetas de uma oferta. Ofertas cujo ltimo descarte
+   * deixou de ser mantido assumem a maior gerao esquecida, o que no mximo
+   * impede o armazenamento de uma faceta.
+   * 
+   * @param offerId identificador da oferta.
+   * @return a gerao atual da oferta.
+   */
+  synchronized long generation(String offerId) {
+    Long generation = discards.get(offerId);
+    return generation != null ? generation : forgotten;
+  }
+
+  /**
+   * Recupera a referncia de uma faceta.
+   * 
+   * @param offerId identificador da oferta.
+   * @param repId identificador de repositrio da interface da faceta.
+   * @return a referncia j convertida, ou <code>null</code> caso no exista
+   *         entrada para a faceta.
+   */
+  synchronized org.omg.CORBA.Object get(String offerId, String repId) {
+    return entries.get(new Key(offerId, repId));
+  }
+
+  /**
+   * Armazena a referncia de uma faceta, caso as facetas da oferta no tenham
+   * sido descartadas desde a obteno da gerao.
+   * 
+   * @param offerId identificador da oferta.
+   * @param repId identificador de repositrio da interface da faceta.
+   * @param facet a referncia j convertida.
+   * @param generation a gerao da oferta antes da obteno da faceta.
+   * @return <code>true</code> caso a faceta tenha sido armazenada, e
+   *         <code>false</code> caso contrrio.
+   */
+  synchronized boolean put(String offerId, String repId,
+    org.omg.CORBA.Object facet, long generation) {
+    if (generation(offerId) != generation) {
+      return false;
+    }
+    entries.put(new Key(offerId, repId), facet);
+    return true;
+  }
+
+  /**
+   * Descarta as facetas de uma oferta.
+   * 
+   * @param offerId identificador da oferta.
+   */
+  synchronized void invalidate(String offerId) {
+    discards.put(offerId, ++discarded);
+    Iterator<Key> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().offerId.equals(offerId)) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Registra o resultado de uma busca feita no barramento, descartando as
+   * facetas das ofertas encontradas pela busca anterior com as mesmas
+   * propriedades que no foram encontradas novamente.
+   * 
+   * @param props as propriedades da busca.
+   * @param offers as ofertas encontradas.
+   */
+  synchronized void found(ServiceProperty[] props, ServiceOfferDesc[] offers) {
+    Set<String> ids = new HashSet<String>();
+    for (ServiceOfferDesc offer : offers) {
+      String id = ServiceOfferView.offerId(offer);
+      if (id != null) {
+        ids.add(id);
+      }
+    }
+    Set<String> previous = results.put(new OfferCache.Key(props), ids);
+    if (previous != null) {
+      for (String id : previous) {
+        if (!ids.contains(id)) {
+          invalidate(id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Consulta o nmero de entradas no cache.
+   * 
+   * @return o nmero de entradas.
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Obtm a classe Helper de uma interface IDL.
+   * 
+   * @param type a interface.
+   * @return a classe Helper.
+   * @throws IllegalArgumentException caso a interface no possua uma classe
+   *         Helper.
+   */
+  Helper helper(Class<?> type) {
+    Helper helper = helpers.get(type);
+    if (helper == null) {
+      helper = new Helper(type);
+      helpers.putIfAbsent(type, helper);
+    }
+    return helper;
+  }
+
+  /**
+   * Classe Helper gerada pelo compilador IDL para uma interface.
+   * 
+   * @author Tecgraf
+   */
+  static class Helper {
+
+    /** Identificador de repositrio da interface */
+    final String id;
+    /** Mtodo de converso de referncias */
+    private final Method narrow;
+
+    /**
+     * Construtor.
+     * 
+     * @param type a interface.
+     * @throws IllegalArgumentException caso a interface no possua uma classe
+     *         Helper.
+     */
+    Helper(Class<?> type) {
+      try {
+        Class<?> helper =
+          Class.forName(type.getName() + "Helper", true, type.getClassLoader());
+        this.id = (String) helper.getMethod("id").invoke(null);
+        this.narrow = helper.getMethod("narrow", org.omg.CORBA.Object.class);
+      }
+      catch (Exception e) {
+        throw new IllegalArgumentException(String.format(
+          "A interface %s no possui uma classe Helper vlida.", type
+            .getName()), e);
+      }
+    }
+
+    /**
+     * Converte uma referncia para a interface.
+     * 
+     * @param obj a referncia.
+     * @return a referncia convertida.
+     * @throws org.omg.CORBA.BAD_PARAM caso a referncia no implemente a
+     *         interface.
+     */
+    org.omg.CORBA.Object narrow(org.omg.CORBA.Object obj) {
+      try {
+        return (org.omg.CORBA.Object) narrow.invoke(null, obj);
+      }
+      catch (InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw (Error) cause;
+      }
+      catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  /**
+   * Chave do cache formada pela oferta e pela interface da faceta.
+   * 
+   * @author Tecgraf
+   */
+  private static class Key {
+
+    /** Identificador da oferta */
+    private final String offerId;
+    /** Identificador de repositrio da interface */
+    private final String repId;
+
+    /**
+     * Construtor.
+     * 
+     * @param offerId identificador da oferta.
+     * @param repId identificador de repositrio da interface.
+     */
+    Key(String offerId, String repId) {
+      this.offerId = offerId;
+      this.repId = repId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return 31 * offerId.hashCode() + repId.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return offerId.equals(other.offerId) && repId.equals(other.repId);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package tecgraf.openbus.assistant;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latncias com preciso relativa fixa, no estilo do
+ * HdrHistogram.
+ * <p>
+ * As latncias so registradas em microssegundos em faixas de tamanho
+ * crescente: cada potncia de 2  dividida em 16 faixas de mesmo tamanho, de
+ * forma que o erro relativo dos percentis calculados  de no mximo 1/16 (cerca
+ * de 6%) em toda a escala, de 1 microssegundo at cerca de 25 dias. O registro
+ * de uma latncia no aloca memria nem utiliza travas, podendo ser feito
+ * concorrentemente por vrias threads.
+ * 
+ * @author Tecgraf
+ */
+class LatencyHistogram {
+
+  /** Nmero de bits que definem as faixas de cada potncia de 2 */
+  private static final int SUB_BITS = 4;
+  /** Nmero de faixas em cada potncia de 2 */
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  /** Maior latncia registrada em microssegundos */
+  private static final long MAX_VALUE = (1L << 41) - 1;
+  /** Nmero total de faixas */
+  private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+  /** Nmero de registros em cada faixa */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  /** Nmero total de registros */
+  private final AtomicLong count = new AtomicLong(0);
+  /** Soma das latncias registradas em microssegundos */
+  private final AtomicLong sum = new AtomicLong(0);
+  /** Maior latncia registrada em microssegundos */
+  private final AtomicLong max = new AtomicLong(0);
+
+  /**
+   * Registra uma latncia.
+   * 
+   * @param nanos a latncia em nanosegundos.
+   */
+  void record(long nanos) {
+    long value = Math.min(MAX_VALUE, Math.max(0, nanos / 1000L));
+    counts.incrementAndGet(index(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long current;
+    while (value > (current = max.get())) {
+      if (max.compareAndSet(current, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Obtm um resumo das latncias registradas.
+   * 
+   * @return o resumo.
+   */
+  LatencySnapshot snapshot() {
+    long total = count.get();
+    if (total == 0) {
+      return new LatencySnapshot(0, 0.0, 0, 0, 0, 0, 0);
+    }
+    long highest = max.get();
+    return new LatencySnapshot(total, (double) sum.get() / total, highest,
+      percentile(50.0, highest), percentile(90.0, highest), percentile(99.0,
+        highest), percentile(99.9, highest));
+  }
+
+  /**
+   * Calcula um percentil das latncias registradas.
+   * 
+   * @param percentile o percentil, entre 0 e 100.
+   * @param highest a maior latncia registrada.
+   * @return o maior valor da faixa que contm o percentil, limitado  maior
+   *         latncia registrada.
+   */
+  private long percentile(double percentile, long highest) {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(highest, highestValue(i));
+      }
+    }
+    return highest;
+  }
+
+  /**
+   * Calcula a faixa de uma latncia.
+   * 
+   * @param value a latncia em microssegundos.
+   * @return o ndice da faixa.
+   */
+  private static int index(long value) {
+    int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+    return SUB_COUNT * shift + (int) (value >>> shift);
+  }
+
+  /**
+   * Calcula o maior valor de uma faixa.
+   * 
+   * @param index o ndice da faixa.
+   * @return o maior valor da faixa em microssegundos.
+   */
+  private static long highestValue(int index) {
+    if (index < 2 * SUB_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_COUNT - 1;
+    long sub = index - SUB_COUNT * shift;
+    return ((sub + 1) << shift) - 1;
+  }
+}
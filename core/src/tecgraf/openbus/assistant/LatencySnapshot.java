@@ -0,0 +1,126 @@
+package tecgraf.openbus.assistant;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Resumo das latncias de uma operao do assistente. Todos os tempos so
+ * expressos em microssegundos.
+ * 
+ * @see AssistantMetrics
+ * 
+ * @author Tecgraf
+ */
+public class LatencySnapshot {
+
+  /** Nmero de operaes medidas */
+  private final long count;
+  /** Latncia mdia */
+  private final double mean;
+  /** Maior latncia */
+  private final long max;
+  /** Mediana das latncias */
+  private final long p50;
+  /** Percentil 90 das latncias */
+  private final long p90;
+  /** Percentil 99 das latncias */
+  private final long p99;
+  /** Percentil 99,9 das latncias */
+  private final long p999;
+
+  /**
+   * Construtor.
+   * 
+   * @param count nmero de operaes medidas.
+   * @param mean latncia mdia.
+   * @param max maior latncia.
+   * @param p50 mediana das latncias.
+   * @param p90 percentil 90 das latncias.
+   * @param p99 percentil 99 das latncias.
+   * @param p999 percentil 99,9 das latncias.
+   */
+  @ConstructorProperties( { "count", "mean", "max", "p50", "p90", "p99",
+      "p999" })
+  public LatencySnapshot(long count, double mean, long max, long p50,
+    long p90, long p99, long p999) {
+    this.count = count;
+    this.mean = mean;
+    this.max = max;
+    this.p50 = p50;
+    this.p90 = p90;
+    this.p99 = p99;
+    this.p999 = p999;
+  }
+
+  /**
+   * Recupera o nmero de operaes medidas.
+   * 
+   * @return o nmero de operaes.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Recupera a latncia mdia.
+   * 
+   * @return a latncia mdia em microssegundos.
+   */
+  public double getMean() {
+    return mean;
+  }
+
+  /**
+   * Recupera a maior latncia.
+   * 
+   * @return a maior latncia em microssegundos.
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Recupera a mediana das latncias.
+   * 
+   * @return a mediana em microssegundos.
+   */
+  public long getP50() {
+    return p50;
+  }
+
+  /**
+   * Recupera o percentil 90 das latncias.
+   * 
+   * @return o percentil em microssegundos.
+   */
+  public long getP90() {
+    return p90;
+  }
+
+  /**
+   * Recupera o percentil 99 das latncias.
+   * 
+   * @return o percentil em microssegundos.
+   */
+  public long getP99() {
+    return p99;
+  }
+
+  /**
+   * Recupera o percentil 99,9 das latncias.
+   * 
+   * @return o percentil em microssegundos.
+   */
+  public long getP999() {
+    return p999;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return String.format(
+      "count=%d mean=%.1fus p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+      count, mean, p50, p90, p99, p999, max);
+  }
+}
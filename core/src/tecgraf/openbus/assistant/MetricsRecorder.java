@@ -0,0 +1,377 @@
+package tecgraf.openbus.assistant;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coletor das mtricas de um assistente.
+ * <p>
+ * Os contadores e histogramas so atualizados pelas operaes do assistente
+ * sem alocar memria. O estado das ofertas  obtido do assistente apenas
+ * quando consultado.
+ * 
+ * @author Tecgraf
+ */
+class MetricsRecorder implements AssistantMetrics {
+
+  /** O assistente */
+  private final Assistant assist;
+  /** Nmero de tentativas de login */
+  private final AtomicLong loginAttempts = new AtomicLong(0);
+  /** Nmero de tentativas de login que falharam */
+  private final AtomicLong loginFailures = new AtomicLong(0);
+  /** Latncias dos logins */
+  private final LatencyHistogram loginLatency = new LatencyHistogram();
+  /** Nmero de logins perdidos */
+  private final AtomicLong invalidLogins = new AtomicLong(0);
+  /** Nmero de trocas de rplica do barramento */
+  private final AtomicLong failovers = new AtomicLong(0);
+  /** Nmero de promoes da conexo reserva */
+  private final AtomicLong standbyPromotions = new AtomicLong(0);
+  /** Nmero de tentativas de registro de ofertas */
+  private final AtomicLong registrationAttempts = new AtomicLong(0);
+  /** Nmero de tentativas de registro de ofertas que falharam */
+  private final AtomicLong registrationFailures = new AtomicLong(0);
+  /** Tempos at o registro das ofertas */
+  private final LatencyHistogram timeToRegister = new LatencyHistogram();
+  /** Nmero de ofertas que deixaram de existir no barramento */
+  private final AtomicLong lostOffers = new AtomicLong(0);
+  /** Nmero de buscas no barramento */
+  private final AtomicLong findCalls = new AtomicLong(0);
+  /** Nmero de buscas no barramento que falharam */
+  private final AtomicLong findFailures = new AtomicLong(0);
+  /** Latncias das buscas */
+  private final LatencyHistogram findLatency = new LatencyHistogram();
+  /** Nmero de acertos do cache de buscas */
+  private final AtomicLong cacheHits = new AtomicLong(0);
+  /** Nmero de faltas do cache de buscas */
+  private final AtomicLong cacheMisses = new AtomicLong(0);
+  /** Nmero de acertos do cache de facetas */
+  private final AtomicLong facetHits = new AtomicLong(0);
+  /** Nmero de faltas do cache de facetas */
+  private final AtomicLong facetMisses = new AtomicLong(0);
+  /** Nmero de novas tentativas */
+  private final AtomicLong retries = new AtomicLong(0);
+
+  /**
+   * Construtor.
+   * 
+   * @param assist o assistente.
+   */
+  MetricsRecorder(Assistant assist) {
+    this.assist = assist;
+  }
+
+  /**
+   * Registra uma tentativa de login.
+   * 
+   * @param start instante do incio da tentativa em nanosegundos.
+   * @param failed indica se a tentativa falhou.
+   */
+  void loginAttempted(long start, boolean failed) {
+    loginAttempts.incrementAndGet();
+    if (failed) {
+      loginFailures.incrementAndGet();
+    }
+    else {
+      loginLatency.record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Registra a perda do login.
+   */
+  void loginInvalidated() {
+    invalidLogins.incrementAndGet();
+  }
+
+  /**
+   * Registra a troca de rplica do barramento.
+   */
+  void failedOver() {
+    failovers.incrementAndGet();
+  }
+
+  /**
+   * Registra a promoo da conexo reserva.
+   */
+  void standbyPromoted() {
+    standbyPromotions.incrementAndGet();
+  }
+
+  /**
+   * Registra uma tentativa de registro de oferta.
+   * 
+   * @param pendingSince instante em nanosegundos em que a oferta se tornou
+   *        pendente.
+   * @param failed indica se a tentativa falhou.
+   * @return o tempo em nanosegundos at o registro, ou 0 caso a tentativa
+   *         tenha falhado.
+   */
+  long registrationAttempted(long pendingSince, boolean failed) {
+    registrationAttempts.incrementAndGet();
+    if (failed) {
+      registrationFailures.incrementAndGet();
+      return 0;
+    }
+    long elapsed = System.nanoTime() - pendingSince;
+    timeToRegister.record(elapsed);
+    return elapsed;
+  }
+
+  /**
+   * Registra uma oferta que deixou de existir no barramento.
+   */
+  void offerLost() {
+    lostOffers.incrementAndGet();
+  }
+
+  /**
+   * Registra uma busca no barramento.
+   * 
+   * @param start instante do incio da busca em nanosegundos.
+   * @param failed indica se a busca falhou.
+   */
+  void findAttempted(long start, boolean failed) {
+    findCalls.incrementAndGet();
+    if (failed) {
+      findFailures.incrementAndGet();
+    }
+    else {
+      findLatency.record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Registra uma consulta ao cache de facetas.
+   * 
+   * @param hit indica se a faceta foi obtida do cache.
+   */
+  void facetLookup(boolean hit) {
+    if (hit) {
+      facetHits.incrementAndGet();
+    }
+    else {
+      facetMisses.incrementAndGet();
+    }
+  }
+
+  /**
+   * Registra uma consulta ao cache de buscas.
+   * 
+   * @param hit indica se a busca foi atendida pelo cache.
+   */
+  void cacheLookup(boolean hit) {
+    if (hit) {
+      cacheHits.incrementAndGet();
+    }
+    else {
+      cacheMisses.incrementAndGet();
+    }
+  }
+
+  /**
+   * Registra uma nova tentativa aps uma falha.
+   */
+  void retried() {
+    retries.incrementAndGet();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getLoginAttempts() {
+    return loginAttempts.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getLoginFailures() {
+    return loginFailures.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LatencySnapshot getLoginLatency() {
+    return loginLatency.snapshot();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getInvalidLogins() {
+    return invalidLogins.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getFailovers() {
+    return failovers.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStandbyPromotions() {
+    return standbyPromotions.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getRegistrationAttempts() {
+    return registrationAttempts.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getRegistrationFailures() {
+    return registrationFailures.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LatencySnapshot getTimeToRegister() {
+    return timeToRegister.snapshot();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getLostOffers() {
+    return lostOffers.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getRegisteredOffers() {
+    int registered = 0;
+    for (OfferStatus status : assist.offerStatus()) {
+      if (status.isRegistered()) {
+        registered++;
+      }
+    }
+    return registered;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getPendingOffers() {
+    OfferStatus[] offers = assist.offerStatus();
+    int pending = offers.length;
+    for (OfferStatus status : offers) {
+      if (status.isRegistered()) {
+        pending--;
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public OfferStatus[] getOffers() {
+    return assist.offerStatus();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getFindCalls() {
+    return findCalls.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getFindFailures() {
+    return findFailures.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LatencySnapshot getFindLatency() {
+    return findLatency.snapshot();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getCoalescedFinds() {
+    return assist.coalescedFinds();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getCacheHits() {
+    return cacheHits.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getCacheMisses() {
+    return cacheMisses.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getFacetCacheHits() {
+    return facetHits.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getFacetCacheMisses() {
+    return facetMisses.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getCacheHitRatio() {
+    long hits = cacheHits.get();
+    long total = hits + cacheMisses.get();
+    return total > 0 ? (double) hits / total : 0.0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getRetries() {
+    return retries.get();
+  }
+}
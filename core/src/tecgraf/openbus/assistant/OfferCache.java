@@ -0,0 +1,188 @@
+package tecgraf.openbus.assistant;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * Cache local dos resultados de buscas de ofertas de servio.
+ * <p>
+ * As entradas so indexadas pelo conjunto de propriedades utilizado na busca,
+ * independente da ordem em que as propriedades foram fornecidas. Cada entrada
+ * expira aps o tempo de vida configurado e, ao atingir o tamanho mximo, as
+ * entradas menos utilizadas recentemente so descartadas.
+ * 
+ * @author Tecgraf
+ */
+class OfferCache {
+
+  /** Tempo de vida das entradas em nanosegundos */
+  private final long ttl;
+  /** Nmero mximo de entradas */
+  private final int maxSize;
+  /** Gerao atual do cache, incrementada a cada invalidao */
+  private long generation = 0;
+  /** Entradas do cache ordenadas por acesso */
+  private final Map<Key, CachedResult> entries;
+
+  /**
+   * Construtor.
+   * 
+   * @param ttl tempo de vida das entradas em milissegundos.
+   * @param maxSize nmero mximo de entradas mantidas.
+   */
+  OfferCache(long ttl, final int maxSize) {
+    this.ttl = ttl * 1000000L;
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+        Map.Entry<Key, CachedResult> eldest) {
+        return size() > OfferCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * Recupera o resultado de uma busca ainda vlida.
+   * 
+   * @param props as propriedades da busca.
+   * @return as ofertas encontradas, ou <code>null</code> caso no exista
+   *         entrada vlida para a busca.
+   */
+  synchronized ServiceOfferDesc[] get(ServiceProperty[] props) {
+    Key key = new Key(props);
+    CachedResult entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.expiration >= 0) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.offers.clone();
+  }
+
+  /**
+   * Consulta a gerao atual do cache. Deve ser obtida antes da busca remota e
+   * fornecida ao mtodo {@link #put(ServiceProperty[], ServiceOfferDesc[], long)}
+   * para evitar que resultados obtidos antes de uma invalidao sejam
+   * armazenados.
+   * 
+   * @return a gerao atual.
+   */
+  synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Armazena o resultado de uma busca.
+   * 
+   * @param props as propriedades da busca.
+   * @param offers as ofertas encontradas.
+   * @param generation a gerao do cache no incio da busca.
+   */
+  synchronized void put(ServiceProperty[] props, ServiceOfferDesc[] offers,
+    long generation) {
+    if (generation != this.generation) {
+      return;
+    }
+    entries.put(new Key(props), new CachedResult(offers.clone(), System
+      .nanoTime()
+      + ttl));
+  }
+
+  /**
+   * Descarta todas as entradas do cache.
+   */
+  synchronized void clear() {
+    generation++;
+    entries.clear();
+  }
+
+  /**
+   * Consulta o nmero de entradas no cache.
+   * 
+   * @return o nmero de entradas.
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Chave do cache formada pelo conjunto ordenado de propriedades.
+   * 
+   * @author Tecgraf
+   */
+  static class Key {
+
+    /** Pares de nome e valor das propriedades ordenados */
+    private final String[] props;
+    /** Hash pr-calculado */
+    private final int hash;
+
+    /**
+     * Construtor.
+     * 
+     * @param props as propriedades da busca.
+     */
+    Key(ServiceProperty[] props) {
+      this.props = new String[props.length];
+      for (int i = 0; i < props.length; i++) {
+        this.props[i] = props[i].name + '\0' + props[i].value;
+      }
+      Arrays.sort(this.props);
+      this.hash = Arrays.hashCode(this.props);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && Arrays.equals(props, other.props);
+    }
+  }
+
+  /**
+   * Entrada do cache.
+   * 
+   * @author Tecgraf
+   */
+  private static class CachedResult {
+
+    /** Ofertas encontradas */
+    final ServiceOfferDesc[] offers;
+    /** Instante de expirao em nanosegundos */
+    final long expiration;
+
+    /**
+     * Construtor.
+     * 
+     * @param offers as ofertas encontradas.
+     * @param expiration instante de expirao.
+     */
+    CachedResult(ServiceOfferDesc[] offers, long expiration) {
+      this.offers = offers;
+      this.expiration = expiration;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package tecgraf.openbus.assistant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * ndice local de um conjunto de ofertas de servio, que responde buscas por
+ * propriedades sem acessar o barramento.
+ * <p>
+ * Cada par (nome, valor) de propriedade  associado  lista ordenada das
+ * ofertas que o apresentam. Uma busca por vrias propriedades  respondida
+ * intersectando essas listas, a partir da menor delas, de forma que o custo da
+ * busca depende do nmero de ofertas que apresentam as propriedades buscadas,
+ * e no do nmero total de ofertas. O ndice  imutvel e pode ser consultado
+ * por vrias threads simultaneamente.
+ * <p>
+ * O ndice pode ser construdo a partir do resultado de uma nica busca no
+ * barramento, por exemplo, de 'Assistant::getAllServices()', para responder
+ * localmente diversas buscas com combinaes diferentes de propriedades. Para
+ * um ndice mantido atualizado pelo barramento, veja o mtodo
+ * {@link ServiceOfferView#find(ServiceProperty[])}.
+ * 
+ * @author Tecgraf
+ */
+public class OfferIndex {
+
+  /** Sequncia vazia de ofertas */
+  private static final ServiceOfferDesc[] EMPTY = new ServiceOfferDesc[0];
+  /** Ordena as listas de ofertas pelo tamanho */
+  private static final Comparator<int[]> SHORTEST_FIRST =
+    new Comparator<int[]>() {
+      @Override
+      public int compare(int[] l1, int[] l2) {
+        return l1.length < l2.length ? -1 : (l1.length == l2.length ? 0 : 1);
+      }
+    };
+
+  /** As ofertas indexadas */
+  final ServiceOfferDesc[] offers;
+  /**
+   * Posies das ofertas, em ordem crescente, indexadas pelo nome e pelo valor
+   * da propriedade
+   */
+  private final Map<String, Map<String, int[]>> postings =
+    new HashMap<String, Map<String, int[]>>();
+
+  /**
+   * Constri o ndice de um conjunto de ofertas.
+   * 
+   * @param offers as ofertas a serem indexadas.
+   */
+  public OfferIndex(ServiceOfferDesc[] offers) {
+    this.offers = offers;
+    Map<String, Map<String, List<Integer>>> lists =
+      new HashMap<String, Map<String, List<Integer>>>();
+    for (int i = 0; i < offers.length; i++) {
+      for (ServiceProperty prop : offers[i].properties) {
+        Map<String, List<Integer>> values = lists.get(prop.name);
+        if (values == null) {
+          values = new HashMap<String, List<Integer>>();
+          lists.put(prop.name, values);
+        }
+        List<Integer> list = values.get(prop.value);
+        if (list == null) {
+          list = new ArrayList<Integer>();
+          values.put(prop.value, list);
+        }
+        // a mesma propriedade pode aparecer repetida na oferta
+        if (list.isEmpty() || list.get(list.size() - 1) != i) {
+          list.add(i);
+        }
+      }
+    }
+    for (Map.Entry<String, Map<String, List<Integer>>> byName : lists
+      .entrySet()) {
+      Map<String, int[]> values = new HashMap<String, int[]>();
+      for (Map.Entry<String, List<Integer>> byValue : byName.getValue()
+        .entrySet()) {
+        List<Integer> list = byValue.getValue();
+        int[] positions = new int[list.size()];
+        for (int i = 0; i < positions.length; i++) {
+          positions[i] = list.get(i);
+        }
+        values.put(byValue.getKey(), positions);
+      }
+      postings.put(byName.getKey(), values);
+    }
+  }
+
+  /**
+   * Consulta o nmero de ofertas indexadas.
+   * 
+   * @return o nmero de ofertas.
+   */
+  public int size() {
+    return offers.length;
+  }
+
+  /**
+   * Consulta todas as ofertas indexadas.
+   * 
+   * @return Sequncia de descries das ofertas indexadas.
+   */
+  public ServiceOfferDesc[] offers() {
+    return offers.clone();
+  }
+
+  /**
+   * Busca as ofertas indexadas que apresentem um conjunto de propriedades
+   * definido, como feito pelo mtodo 'Assistant::findServices()'. As ofertas
+   * encontradas so retornadas na ordem em que foram indexadas.
+   * 
+   * @param properties Propriedades que as ofertas de servios encontradas devem
+   *        apresentar.
+   * @return Sequncia de descries de ofertas de servio encontradas.
+   */
+  public ServiceOfferDesc[] find(ServiceProperty[] properties) {
+    if (properties.length == 0) {
+      return offers.clone();
+    }
+    int[][] lists = new int[properties.length][];
+    for (int i = 0; i < properties.length; i++) {
+      Map<String, int[]> values = postings.get(properties[i].name);
+      int[] list = values != null ? values.get(properties[i].value) : null;
+      if (list == null) {
+        return EMPTY;
+      }
+      lists[i] = list;
+    }
+    Arrays.sort(lists, SHORTEST_FIRST);
+    int[] result = lists[0];
+    for (int i = 1; i < lists.length && result.length > 0; i++) {
+      if (lists[i] != lists[i - 1]) {
+        result = intersect(result, lists[i]);
+      }
+    }
+    ServiceOfferDesc[] found = new ServiceOfferDesc[result.length];
+    for (int i = 0; i < result.length; i++) {
+      found[i] = offers[result[i]];
+    }
+    return found;
+  }
+
+  /**
+   * Intersecta duas listas de posies em ordem crescente.
+   * 
+   * @param shorter a menor lista.
+   * @param longer a maior lista.
+   * @return as posies presentes em ambas as listas.
+   */
+  private static int[] intersect(int[] shorter, int[] longer) {
+    int[] result = new int[shorter.length];
+    int found = 0;
+    int from = 0;
+    for (int i = 0; i < shorter.length && from < longer.length; i++) {
+      int pos = Arrays.binarySearch(longer, from, longer.length, shorter[i]);
+      if (pos >= 0) {
+        result[found++] = shorter[i];
+        from = pos + 1;
+      }
+      else {
+        from = -pos - 1;
+      }
+    }
+    return Arrays.copyOf(result, found);
+  }
+}
@@ -0,0 +1,206 @@
+package tecgraf.openbus.assistant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+
+/**
+ * Acompanhamento do registro de uma oferta de servio mantida pelo assistente.
+ * <p>
+ * A oferta fica pendente at ser registrada no barramento e volta a ficar
+ * pendente sempre que o login do assistente  perdido, at ser registrada
+ * novamente com o novo login. A aplicao pode consultar o estado da oferta,
+ * aguardar o seu registro ou ser notificada das mudanas de estado atravs de
+ * um {@link OfferRegistrationListener}. O acompanhamento tambm identifica a
+ * oferta na sua remoo ou na alterao das suas propriedades.
+ * 
+ * @see Assistant#registerService(scs.core.IComponent,
+ *      tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty[])
+ * 
+ * @author Tecgraf
+ */
+public class OfferRegistration {
+
+  /** Instncia do logger */
+  private static final Logger logger = Logger
+    .getLogger(OfferRegistration.class.getName());
+
+  /**
+   * Estados do registro de uma oferta.
+   * 
+   * @author Tecgraf
+   */
+  public enum State {
+    /** A oferta aguarda registro no barramento */
+    PENDING,
+    /** A oferta est registrada no barramento com o login atual */
+    REGISTERED,
+    /** A oferta foi removida e deixou de ser mantida pelo assistente */
+    REMOVED;
+  }
+
+  /** Estado atual */
+  private State state = State.PENDING;
+  /** Descrio da oferta no ltimo registro */
+  private ServiceOfferDesc offer;
+  /** Observadores das mudanas de estado */
+  private final List<OfferRegistrationListener> listeners =
+    new ArrayList<OfferRegistrationListener>();
+
+  /**
+   * Construtor.
+   */
+  OfferRegistration() {
+  }
+
+  /**
+   * Consulta o estado atual do registro da oferta.
+   * 
+   * @return o estado.
+   */
+  public synchronized State state() {
+    return state;
+  }
+
+  /**
+   * Recupera a descrio da oferta obtida no seu ltimo registro.
+   * 
+   * @return a descrio da oferta, ou <code>null</code> caso a oferta nunca
+   *         tenha sido registrada.
+   */
+  public synchronized ServiceOfferDesc offer() {
+    return offer;
+  }
+
+  /**
+   * Indica se a oferta est registrada no barramento com o login atual.
+   * 
+   * @return <code>true</code> caso a oferta esteja registrada, e
+   *         <code>false</code> caso contrrio.
+   */
+  public synchronized boolean isRegistered() {
+    return state == State.REGISTERED;
+  }
+
+  /**
+   * Aguarda at que a oferta esteja registrada no barramento.
+   * 
+   * @param timeout tempo mximo de espera.
+   * @param unit unidade do tempo mximo.
+   * @return <code>true</code> caso a oferta esteja registrada, e
+   *         <code>false</code> caso o tempo tenha se esgotado ou a oferta tenha
+   *         sido removida.
+   * @throws InterruptedException caso a thread seja interrompida durante a
+   *         espera.
+   */
+  public boolean await(long timeout, TimeUnit unit)
+    throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (this) {
+      while (state == State.PENDING) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return state == State.REGISTERED;
+    }
+  }
+
+  /**
+   * Adiciona um observador das mudanas de estado do registro. Caso a oferta
+   * j esteja registrada, o observador  notificado imediatamente.
+   * 
+   * @param listener o observador.
+   */
+  public void addListener(OfferRegistrationListener listener) {
+    boolean registered;
+    synchronized (this) {
+      listeners.add(listener);
+      registered = state == State.REGISTERED;
+    }
+    if (registered) {
+      notifyRegistered(listener);
+    }
+  }
+
+  /**
+   * Remove um observador das mudanas de estado do registro.
+   * 
+   * @param listener o observador.
+   */
+  public synchronized void removeListener(OfferRegistrationListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Marca a oferta como registrada.
+   * 
+   * @param desc a descrio da oferta registrada.
+   */
+  void registered(ServiceOfferDesc desc) {
+    OfferRegistrationListener[] current;
+    synchronized (this) {
+      if (state == State.REMOVED
+        || (state == State.REGISTERED && offer == desc)) {
+        return;
+      }
+      this.offer = desc;
+      this.state = State.REGISTERED;
+      notifyAll();
+      current = listeners.toArray(new OfferRegistrationListener[0]);
+    }
+    for (OfferRegistrationListener listener : current) {
+      notifyRegistered(listener);
+    }
+  }
+
+  /**
+   * Marca a oferta como pendente, por exemplo, aps a perda do login.
+   */
+  void pending() {
+    OfferRegistrationListener[] current;
+    synchronized (this) {
+      if (state != State.REGISTERED) {
+        return;
+      }
+      this.state = State.PENDING;
+      current = listeners.toArray(new OfferRegistrationListener[0]);
+    }
+    for (OfferRegistrationListener listener : current) {
+      try {
+        listener.pending(this);
+      }
+      catch (Exception e) {
+        logger.log(Level.SEVERE, "Erro inesperado ao chamar observador!", e);
+      }
+    }
+  }
+
+  /**
+   * Marca a oferta como removida. A partir da o estado no muda mais.
+   */
+  synchronized void removed() {
+    this.state = State.REMOVED;
+    notifyAll();
+  }
+
+  /**
+   * Notifica um observador do registro da oferta.
+   * 
+   * @param listener o observador.
+   */
+  private void notifyRegistered(OfferRegistrationListener listener) {
+    try {
+      listener.registered(this);
+    }
+    catch (Exception e) {
+      logger.log(Level.SEVERE, "Erro inesperado ao chamar observador!", e);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package tecgraf.openbus.assistant;
+
+/**
+ * Observador das mudanas de estado do registro de uma oferta mantida pelo
+ * assistente.
+ * <p>
+ * As notificaes so feitas pelas threads do assistente e no devem
+ * bloquear.
+ * 
+ * @see OfferRegistration#addListener(OfferRegistrationListener)
+ * 
+ * @author Tecgraf
+ */
+public interface OfferRegistrationListener {
+
+  /**
+   * Notifica que a oferta foi registrada no barramento, seja pela primeira vez
+   * ou aps o restabelecimento do login.
+   * 
+   * @param registration o registro da oferta.
+   */
+  void registered(OfferRegistration registration);
+
+  /**
+   * Notifica que a oferta deixou de estar registrada e aguarda um novo
+   * registro, por exemplo, aps a perda do login.
+   * 
+   * @param registration o registro da oferta.
+   */
+  void pending(OfferRegistration registration);
+}
@@ -0,0 +1,80 @@
+package tecgraf.openbus.assistant;
+
+import java.util.Arrays;
+
+import scs.core.IComponent;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * Especificao de uma oferta de servio a ser registrada pelo assistente em
+ * um registro em lote.
+ * 
+ * @see Assistant#registerServices(java.util.Collection)
+ * 
+ * @author Tecgraf
+ */
+public class OfferSpec {
+
+  /** Prefixo das propriedades definidas pelo barramento */
+  static final String RESERVED_PREFIX = "openbus.";
+
+  /** O componente a ser ofertado */
+  IComponent component;
+  /** As propriedades da oferta */
+  ServiceProperty[] properties;
+  /** A prioridade de registro da oferta */
+  int priority;
+
+  /**
+   * Especificao de uma oferta com prioridade de registro 0.
+   * 
+   * @param component Referncia do servio sendo ofertado.
+   * @param properties Propriedades do servio sendo ofertado.
+   */
+  public OfferSpec(IComponent component, ServiceProperty[] properties) {
+    this(component, properties, 0);
+  }
+
+  /**
+   * Especificao de uma oferta com prioridade de registro definida (veja
+   * {@link Assistant#registerService(IComponent, ServiceProperty[], int)}).
+   * 
+   * @param component Referncia do servio sendo ofertado.
+   * @param properties Propriedades do servio sendo ofertado.
+   * @param priority Prioridade de registro da oferta.
+   */
+  public OfferSpec(IComponent component, ServiceProperty[] properties,
+    int priority) {
+    validate(component, properties);
+    this.component = component;
+    this.properties = Arrays.copyOf(properties, properties.length);
+    this.priority = priority;
+  }
+
+  /**
+   * Verifica se um componente e suas propriedades podem ser registrados como
+   * uma oferta. Propriedades nulas ou definidas pelo barramento, cujo registro
+   * seria sempre recusado, so rejeitadas.
+   * 
+   * @param component Referncia do servio sendo ofertado.
+   * @param properties Propriedades do servio sendo ofertado.
+   * @throws IllegalArgumentException caso o componente ou as propriedades
+   *         sejam invlidos.
+   */
+  static void validate(IComponent component, ServiceProperty[] properties) {
+    if (component == null || properties == null) {
+      throw new IllegalArgumentException(
+        "Componente e propriedades devem ser diferentes de nulo.");
+    }
+    for (ServiceProperty prop : properties) {
+      if (prop == null || prop.name == null || prop.value == null) {
+        throw new IllegalArgumentException(
+          "Propriedades da oferta no podem ser nulas.");
+      }
+      if (prop.name.startsWith(RESERVED_PREFIX)) {
+        throw new IllegalArgumentException(String.format(
+          "A propriedade '%s'  definida pelo barramento.", prop.name));
+      }
+    }
+  }
+}
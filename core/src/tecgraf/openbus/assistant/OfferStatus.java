@@ -0,0 +1,96 @@
+package tecgraf.openbus.assistant;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Estado de registro de uma oferta mantida pelo assistente.
+ * 
+ * @see AssistantMetrics#getOffers()
+ * 
+ * @author Tecgraf
+ */
+public class OfferStatus {
+
+  /** Propriedades fornecidas no registro, no formato 'nome=valor' */
+  private final String[] properties;
+  /** Identificador da oferta no barramento */
+  private final String offerId;
+  /** Indica se a oferta est registrada com o login atual */
+  private final boolean registered;
+  /** Nmero de vezes que a oferta foi registrada */
+  private final long registrations;
+  /** Tempo at o ltimo registro em microssegundos */
+  private final long timeToRegister;
+
+  /**
+   * Construtor.
+   * 
+   * @param properties propriedades fornecidas no registro, no formato
+   *        'nome=valor'.
+   * @param offerId identificador da oferta no barramento, ou <code>null</code>
+   *        caso nunca tenha sido registrada.
+   * @param registered indica se a oferta est registrada com o login atual.
+   * @param registrations nmero de vezes que a oferta foi registrada.
+   * @param timeToRegister tempo at o ltimo registro em microssegundos.
+   */
+  @ConstructorProperties( { "properties", "offerId", "registered",
+      "registrations", "timeToRegister" })
+  public OfferStatus(String[] properties, String offerId, boolean registered,
+    long registrations, long timeToRegister) {
+    this.properties = properties.clone();
+    this.offerId = offerId;
+    this.registered = registered;
+    this.registrations = registrations;
+    this.timeToRegister = timeToRegister;
+  }
+
+  /**
+   * Recupera as propriedades fornecidas no registro da oferta.
+   * 
+   * @return as propriedades no formato 'nome=valor'.
+   */
+  public String[] getProperties() {
+    return properties.clone();
+  }
+
+  /**
+   * Recupera o identificador da oferta no ltimo registro.
+   * 
+   * @return o identificador, ou <code>null</code> caso a oferta nunca tenha
+   *         sido registrada.
+   */
+  public String getOfferId() {
+    return offerId;
+  }
+
+  /**
+   * Indica se a oferta est registrada com o login atual.
+   * 
+   * @return <code>true</code> caso esteja registrada, e <code>false</code> caso
+   *         o registro esteja pendente.
+   */
+  public boolean isRegistered() {
+    return registered;
+  }
+
+  /**
+   * Recupera o nmero de vezes que a oferta foi registrada, incluindo os
+   * registros refeitos aps a perda do login.
+   * 
+   * @return o nmero de registros.
+   */
+  public long getRegistrations() {
+    return registrations;
+  }
+
+  /**
+   * Recupera o tempo decorrido entre a oferta se tornar pendente e o seu ltimo
+   * registro, incluindo as novas tentativas.
+   * 
+   * @return o tempo em microssegundos, ou 0 caso a oferta nunca tenha sido
+   *         registrada.
+   */
+  public long getTimeToRegister() {
+    return timeToRegister;
+  }
+}
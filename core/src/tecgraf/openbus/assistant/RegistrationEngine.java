@@ -0,0 +1,379 @@
+package tecgraf.openbus.assistant;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mecanismo de registro de recursos mantidos pelo assistente no barramento,
+ * tais como ofertas de servio e observadores.
+ * <p>
+ * Os recursos que precisam ser (re)registrados so marcados como pendentes e
+ * colocados em uma fila ordenada por prioridade. Um nmero fixo de
+ * trabalhadores executados pelo escalonador consome essa fila, de forma que o
+ * nmero de threads utilizadas no depende do nmero de recursos mantidos e o
+ * nmero de registros simultneos  limitado. Opcionalmente, a taxa de
+ * registros por segundo tambm  limitada, evitando sobrecarregar o barramento
+ * quando todos os recursos precisam ser registrados novamente aps a perda do
+ * login. Recursos cujo registro falhou so recolocados na fila aps o tempo de
+ * espera definido pela poltica de tentativas, exceto se a tarefa for
+ * executada novamente antes disso, por exemplo, aps ser marcada como
+ * pendente pelo assistente.
+ * <p>
+ * Uma mesma tarefa nunca  executada por dois trabalhadores ao mesmo tempo.
+ * Caso a tarefa seja marcada como pendente durante a sua execuo, ela 
+ * recolocada na fila somente aps o trmino da execuo.
+ * 
+ * @author Tecgraf
+ */
+class RegistrationEngine {
+
+  /** Instncia do logger */
+  private static final Logger logger = Logger
+    .getLogger(RegistrationEngine.class.getName());
+
+  /** Escalonador que executa os trabalhadores e as novas tentativas */
+  private final ScheduledExecutorService scheduler;
+  /** Nmero mximo de trabalhadores simultneos */
+  private final int workers;
+  /** Poltica de espera entre tentativas */
+  private final RetryPolicy policy;
+  /** Intervalo mnimo entre registros em nanosegundos, ou 0 se ilimitado */
+  private final long pace;
+  /** Instante a partir do qual o prximo registro pode ser feito */
+  private long nextPermit = System.nanoTime();
+  /** Contador para manter a ordem de chegada entre tarefas de mesma prioridade */
+  private final AtomicLong sequence = new AtomicLong(0);
+  /** Fila de tarefas pendentes */
+  private final Queue<Task> pending = new PriorityBlockingQueue<Task>(64,
+    new Comparator<Task>() {
+      @Override
+      public int compare(Task t1, Task t2) {
+        if (t1.priority != t2.priority) {
+          return t1.priority > t2.priority ? -1 : 1;
+        }
+        return t1.sequence < t2.sequence ? -1 : (t1.sequence == t2.sequence
+          ? 0 : 1);
+      }
+    });
+  /** Nmero de trabalhadores ativos */
+  private final AtomicInteger active = new AtomicInteger(0);
+  /** Indica se o mecanismo foi finalizado */
+  private volatile boolean stopped = false;
+  /** Trabalhador que consome a fila de tarefas pendentes */
+  private final Runnable worker = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  /**
+   * Construtor.
+   * 
+   * @param scheduler escalonador que executa os trabalhadores.
+   * @param workers nmero mximo de trabalhadores simultneos.
+   * @param policy poltica de espera entre tentativas.
+   */
+  RegistrationEngine(ScheduledExecutorService scheduler, int workers,
+    RetryPolicy policy) {
+    this(scheduler, workers, policy, 0.0f);
+  }
+
+  /**
+   * Construtor.
+   * 
+   * @param scheduler escalonador que executa os trabalhadores.
+   * @param workers nmero mximo de trabalhadores simultneos.
+   * @param policy poltica de espera entre tentativas.
+   * @param rate nmero mximo de registros por segundo, ou 0 caso no haja
+   *        limite.
+   */
+  RegistrationEngine(ScheduledExecutorService scheduler, int workers,
+    RetryPolicy policy, float rate) {
+    this.scheduler = scheduler;
+    this.workers = workers;
+    this.policy = policy.unbounded();
+    this.pace = rate > 0.0f ? (long) (1000000000L / rate) : 0;
+  }
+
+  /**
+   * Marca uma tarefa como pendente. Caso a tarefa j esteja pendente, nada 
+   * feito. Caso esteja em execuo, a tarefa  recolocada na fila ao trmino
+   * da execuo.
+   * 
+   * @param task a tarefa.
+   * @throws RejectedExecutionException caso o mecanismo ou o escalonador
+   *         tenham sido finalizados.
+   */
+  void schedule(Task task) {
+    if (isStopped()) {
+      throw new RejectedExecutionException(
+        "O mecanismo de registro foi finalizado.");
+    }
+    if (task.pending.compareAndSet(false, true) && enqueue(task)) {
+      dispatch();
+    }
+  }
+
+  /**
+   * Marca um conjunto de tarefas como pendentes de uma s vez. As tarefas so
+   * colocadas na fila antes que os trabalhadores sejam disparados, de forma que
+   * o lote  consumido pelos trabalhadores existentes sem um disparo por
+   * tarefa. Tarefas que j estejam pendentes so ignoradas.
+   * 
+   * @param tasks as tarefas.
+   * @throws RejectedExecutionException caso o mecanismo ou o escalonador
+   *         tenham sido finalizados.
+   */
+  void scheduleAll(Collection<? extends Task> tasks) {
+    if (isStopped()) {
+      throw new RejectedExecutionException(
+        "O mecanismo de registro foi finalizado.");
+    }
+    for (Task task : tasks) {
+      if (task.pending.compareAndSet(false, true)) {
+        enqueue(task);
+      }
+    }
+    dispatch();
+  }
+
+  /**
+   * Coloca uma tarefa pendente na fila, caso ela no esteja na fila nem em
+   * execuo. Uma tarefa em execuo  recolocada na fila pelo trabalhador que
+   * a executa, ao trmino da execuo.
+   * 
+   * @param task a tarefa.
+   * @return <code>true</code> caso a tarefa tenha sido colocada na fila, e
+   *         <code>false</code> caso contrrio.
+   */
+  private boolean enqueue(Task task) {
+    if (task.running.get() || !task.queued.compareAndSet(false, true)) {
+      return false;
+    }
+    task.sequence = sequence.getAndIncrement();
+    pending.add(task);
+    return true;
+  }
+
+  /**
+   * Finaliza o mecanismo de registro. As tarefas pendentes so descartadas e
+   * novas tarefas so recusadas. O escalonador no  finalizado, permitindo
+   * que ele seja compartilhado com outras atividades da aplicao.
+   */
+  void shutdown() {
+    stopped = true;
+  }
+
+  /**
+   * Verifica se o mecanismo de registro ou o seu escalonador foram
+   * finalizados.
+   * 
+   * @return <code>true</code> caso tenham sido finalizados, e
+   *         <code>false</code> caso contrrio.
+   */
+  private boolean isStopped() {
+    return stopped || scheduler.isShutdown();
+  }
+
+  /**
+   * Dispara trabalhadores enquanto houver tarefas pendentes e o limite de
+   * trabalhadores no tiver sido atingido.
+   */
+  private void dispatch() {
+    while (!pending.isEmpty()) {
+      int current = active.get();
+      if (current >= workers) {
+        return;
+      }
+      if (active.compareAndSet(current, current + 1)) {
+        try {
+          scheduler.execute(worker);
+        }
+        catch (RejectedExecutionException e) {
+          active.decrementAndGet();
+          logger.fine("Escalonador finalizado, tarefas descartadas.");
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Consome a fila de tarefas pendentes.
+   */
+  private void drain() {
+    boolean release = true;
+    try {
+      Task task;
+      while ((task = pending.poll()) != null) {
+        if (task.canceled || isStopped()) {
+          task.queued.set(false);
+          task.pending.set(false);
+          continue;
+        }
+        long wait = acquire();
+        if (wait > 0) {
+          // devolve a tarefa e retoma o trabalho quando houver permisso
+          pending.add(task);
+          release = !resume(wait);
+          return;
+        }
+        // permite que a tarefa seja marcada novamente durante a execuo,
+        // sem que seja colocada na fila antes do trmino da execuo
+        task.running.set(true);
+        task.queued.set(false);
+        task.pending.set(false);
+        task.executions.incrementAndGet();
+        boolean retry = true;
+        try {
+          retry = task.process();
+        }
+        catch (RuntimeException e) {
+          logger.log(Level.SEVERE, "Erro inesperado!", e);
+        }
+        finally {
+          task.running.set(false);
+        }
+        if (retry) {
+          retry(task);
+        }
+        else {
+          task.backoff = null;
+        }
+        if (task.pending.get()) {
+          // marcada novamente durante a execuo
+          enqueue(task);
+        }
+      }
+    }
+    finally {
+      if (release) {
+        active.decrementAndGet();
+      }
+    }
+    // tarefas marcadas aps a sada do lao
+    dispatch();
+  }
+
+  /**
+   * Obtm permisso para realizar um registro de acordo com a taxa mxima de
+   * registros.
+   * 
+   * @return 0 caso a permisso tenha sido obtida, ou o tempo em nanosegundos
+   *         a esperar pela prxima permisso.
+   */
+  private synchronized long acquire() {
+    if (pace == 0) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    long wait = nextPermit - now;
+    if (wait > 0) {
+      return wait;
+    }
+    nextPermit = now + pace;
+    return 0;
+  }
+
+  /**
+   * Agenda a retomada do consumo da fila por um trabalhador ativo.
+   * 
+   * @param wait tempo de espera em nanosegundos.
+   * @return <code>true</code> caso a retomada tenha sido agendada, e
+   *         <code>false</code> caso contrrio.
+   */
+  private boolean resume(long wait) {
+    try {
+      scheduler.schedule(worker, wait, TimeUnit.NANOSECONDS);
+      return true;
+    }
+    catch (RejectedExecutionException e) {
+      logger.fine("Escalonador finalizado, tarefas descartadas.");
+      return false;
+    }
+  }
+
+  /**
+   * Agenda uma nova tentativa de uma tarefa aps o tempo de espera definido
+   * pela poltica de tentativas. A tentativa  descartada caso a tarefa seja
+   * executada novamente durante a espera, j que essa execuo foi bem
+   * sucedida ou agendou a sua prpria tentativa, e no deve consumir uma
+   * permisso da taxa de registros.
+   * 
+   * @param task a tarefa.
+   */
+  private void retry(final Task task) {
+    if (task.backoff == null) {
+      task.backoff = policy.start();
+    }
+    long delay = task.backoff.next();
+    final long execution = task.executions.get();
+    try {
+      scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          if (task.executions.get() != execution) {
+            logger.finest("Tarefa executada novamente, tentativa descartada.");
+            return;
+          }
+          try {
+            schedule(task);
+          }
+          catch (RejectedExecutionException e) {
+            logger.fine("Escalonador finalizado, tarefa descartada.");
+          }
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException e) {
+      logger.fine("Escalonador finalizado, tarefa descartada.");
+    }
+  }
+
+  /**
+   * Recurso a ser mantido registrado no barramento.
+   * 
+   * @author Tecgraf
+   */
+  abstract static class Task {
+
+    /** Indica se a tarefa foi marcada como pendente e ainda no executada */
+    final AtomicBoolean pending = new AtomicBoolean(false);
+    /** Indica se a tarefa est na fila de tarefas pendentes */
+    final AtomicBoolean queued = new AtomicBoolean(false);
+    /** Indica se a tarefa est sendo executada por um trabalhador */
+    final AtomicBoolean running = new AtomicBoolean(false);
+    /** Indica se a tarefa foi cancelada */
+    volatile boolean canceled = false;
+    /**
+     * Prioridade da tarefa. Tarefas de maior prioridade so registradas
+     * primeiro.
+     */
+    volatile int priority = 0;
+    /** Ordem de chegada da tarefa na fila */
+    volatile long sequence;
+    /** Sequncia de tentativas em andamento, caso o ltimo registro falhou */
+    volatile RetryPolicy.Backoff backoff;
+    /** Nmero de execues da tarefa, utilizado para descartar tentativas */
+    final AtomicLong executions = new AtomicLong(0);
+
+    /**
+     * Realiza o registro do recurso, caso necessrio.
+     * 
+     * @return <code>true</code> caso o registro tenha falhado e deva ser
+     *         retentado, e <code>false</code> caso contrrio.
+     */
+    abstract boolean process();
+  }
+}
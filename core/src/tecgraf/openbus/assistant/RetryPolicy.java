@@ -0,0 +1,236 @@
+package tecgraf.openbus.assistant;
+
+import java.util.Random;
+
+/**
+ * Poltica que define o tempo de espera entre tentativas das tarefas
+ * realizadas pelo assistente, tais como login, registro de ofertas e buscas.
+ * <p>
+ * As polticas pr-definidas so obtidas atravs dos mtodos
+ * {@link #fixed(long)}, {@link #exponential(long, long, double)} e
+ * {@link #decorrelatedJitter(long, long)}, e podem ter o tempo total de
+ * tentativas limitado atravs do mtodo {@link #withMaxElapsed(long)}.
+ * Polticas com espera aleatria evitam que vrios assistentes retentem suas
+ * tarefas ao mesmo tempo aps uma indisponibilidade do barramento.
+ * <p>
+ * As tarefas mantidas continuamente pelo assistente, como o login e o registro
+ * de ofertas, nunca desistem: o limite de tempo total s  aplicado s
+ * operaes com nmero de tentativas definido pela aplicao, como as buscas.
+ * 
+ * @see AssistantParams#retryPolicy
+ * 
+ * @author Tecgraf
+ */
+public abstract class RetryPolicy {
+
+  /** Gerador de nmeros aleatrios compartilhado */
+  private static final Random random = new Random();
+
+  /**
+   * Calcula o tempo de espera antes de uma nova tentativa.
+   * 
+   * @param attempt nmero da tentativa que falhou, comeando em 1.
+   * @param previous tempo de espera em milissegundos utilizado antes da
+   *        tentativa que falhou, ou 0 caso seja a primeira.
+   * @param elapsed tempo em milissegundos decorrido desde a primeira
+   *        tentativa.
+   * @return o tempo de espera em milissegundos, ou um valor negativo caso no
+   *         se deva tentar novamente. Nas tarefas mantidas continuamente pelo
+   *         assistente, que nunca desistem, um valor negativo faz com que seja
+   *         utilizado o tempo de espera dado pelo parmetro 'interval' (veja
+   *         {@link AssistantParams#interval}).
+   */
+  public abstract long nextDelay(int attempt, long previous, long elapsed);
+
+  /**
+   * Obtm uma poltica equivalente a esta porm sem limite de tempo total de
+   * tentativas.
+   * 
+   * @return a poltica sem limite de tempo total.
+   */
+  public RetryPolicy unbounded() {
+    return this;
+  }
+
+  /**
+   * Obtm uma poltica que desiste de novas tentativas aps um tempo total.
+   * 
+   * @param maxElapsed tempo mximo em milissegundos decorrido desde a primeira
+   *        tentativa aps o qual no so feitas novas tentativas.
+   * @return a poltica com tempo total limitado.
+   */
+  public RetryPolicy withMaxElapsed(final long maxElapsed) {
+    if (maxElapsed < 0) {
+      throw new IllegalArgumentException(
+        "O tempo mximo de tentativas no pode ser negativo.");
+    }
+    final RetryPolicy policy = this.unbounded();
+    return new RetryPolicy() {
+      @Override
+      public long nextDelay(int attempt, long previous, long elapsed) {
+        long delay = policy.nextDelay(attempt, previous, elapsed);
+        if (delay < 0 || elapsed + delay > maxElapsed) {
+          return -1;
+        }
+        return delay;
+      }
+
+      @Override
+      public RetryPolicy unbounded() {
+        return policy;
+      }
+    };
+  }
+
+  /**
+   * Obtm uma poltica para as tarefas mantidas continuamente pelo assistente,
+   * que nunca desistem. O limite de tempo total  ignorado e, caso esta
+   * poltica indique que no se deve tentar novamente,  utilizado o tempo de
+   * espera padro.
+   * 
+   * @param fallback tempo de espera padro em milissegundos.
+   * @return a poltica que nunca desiste.
+   */
+  RetryPolicy persistent(final long fallback) {
+    final RetryPolicy policy = this.unbounded();
+    return new RetryPolicy() {
+      @Override
+      public long nextDelay(int attempt, long previous, long elapsed) {
+        long delay = policy.nextDelay(attempt, previous, elapsed);
+        if (delay < 0) {
+          return fallback;
+        }
+        return delay;
+      }
+    };
+  }
+
+  /**
+   * Obtm uma poltica com tempo de espera fixo entre tentativas.
+   * 
+   * @param delay tempo de espera em milissegundos.
+   * @return a poltica.
+   */
+  public static RetryPolicy fixed(final long delay) {
+    if (delay <= 0) {
+      throw new IllegalArgumentException(
+        "O tempo de espera deve ser maior que zero.");
+    }
+    return new RetryPolicy() {
+      @Override
+      public long nextDelay(int attempt, long previous, long elapsed) {
+        return delay;
+      }
+    };
+  }
+
+  /**
+   * Obtm uma poltica com tempo de espera que cresce exponencialmente a cada
+   * tentativa.
+   * 
+   * @param initial tempo de espera em milissegundos aps a primeira falha.
+   * @param max tempo mximo de espera em milissegundos.
+   * @param multiplier fator de multiplicao do tempo de espera a cada nova
+   *        falha.
+   * @return a poltica.
+   */
+  public static RetryPolicy exponential(final long initial, final long max,
+    final double multiplier) {
+    if (initial <= 0 || max < initial) {
+      throw new IllegalArgumentException(
+        "Os tempos de espera devem ser positivos e o mximo no pode ser "
+          + "menor que o inicial.");
+    }
+    if (Double.isNaN(multiplier) || multiplier < 1.0) {
+      throw new IllegalArgumentException(
+        "O fator de multiplicao deve ser maior ou igual a 1.");
+    }
+    return new RetryPolicy() {
+      @Override
+      public long nextDelay(int attempt, long previous, long elapsed) {
+        if (previous <= 0) {
+          return initial;
+        }
+        return (long) Math.min(max, previous * multiplier);
+      }
+    };
+  }
+
+  /**
+   * Obtm uma poltica com tempo de espera aleatrio entre o tempo base e o
+   * triplo da espera anterior ("decorrelated jitter"). Essa poltica espalha as
+   * tentativas de vrios assistentes ao longo do tempo, ao mesmo tempo em que
+   * aumenta a espera durante indisponibilidades longas.
+   * 
+   * @param base tempo mnimo de espera em milissegundos.
+   * @param max tempo mximo de espera em milissegundos.
+   * @return a poltica.
+   */
+  public static RetryPolicy decorrelatedJitter(final long base, final long max) {
+    if (base <= 0 || max < base) {
+      throw new IllegalArgumentException(
+        "Os tempos de espera devem ser positivos e o mximo no pode ser "
+          + "menor que o base.");
+    }
+    return new RetryPolicy() {
+      @Override
+      public long nextDelay(int attempt, long previous, long elapsed) {
+        long upper = Math.min(max, Math.max(base, previous) * 3);
+        if (upper <= base) {
+          return base;
+        }
+        return base + (long) (random.nextDouble() * (upper - base));
+      }
+    };
+  }
+
+  /**
+   * Inicia uma sequncia de tentativas.
+   * 
+   * @return o controle da sequncia de tentativas.
+   */
+  Backoff start() {
+    return new Backoff(this);
+  }
+
+  /**
+   * Controle de uma sequncia de tentativas segundo uma poltica.
+   * 
+   * @author Tecgraf
+   */
+  static class Backoff {
+
+    /** A poltica */
+    private final RetryPolicy policy;
+    /** Instante da primeira tentativa em nanosegundos */
+    private final long start = System.nanoTime();
+    /** Nmero de tentativas que falharam */
+    private int attempt = 0;
+    /** ltimo tempo de espera */
+    private long previous = 0;
+
+    /**
+     * Construtor.
+     * 
+     * @param policy a poltica.
+     */
+    Backoff(RetryPolicy policy) {
+      this.policy = policy;
+    }
+
+    /**
+     * Registra a falha de uma tentativa e calcula a espera at a prxima.
+     * 
+     * @return o tempo de espera em milissegundos, ou um valor negativo caso no
+     *         se deva tentar novamente.
+     */
+    long next() {
+      long elapsed = (System.nanoTime() - start) / 1000000L;
+      long delay = policy.nextDelay(++attempt, previous, elapsed);
+      if (delay >= 0) {
+        previous = delay;
+      }
+      return delay;
+    }
+  }
+}
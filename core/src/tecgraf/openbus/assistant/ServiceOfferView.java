@@ -0,0 +1,276 @@
+package tecgraf.openbus.assistant;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * Viso local e atualizada das ofertas de servio que apresentam um conjunto de
+ * propriedades.
+ * <p>
+ * A viso  mantida pelo assistente atravs de observadores registrados no
+ * barramento, que notificam o registro de novas ofertas, a alterao de
+ * propriedades e a remoo de ofertas. Dessa forma, a consulta s ofertas da
+ * viso no acessa o barramento e no bloqueia.
+ * <p>
+ * Buscas por propriedades adicionais dentre as ofertas da viso tambm so
+ * respondidas localmente, atravs de um ndice das ofertas (veja
+ * {@link OfferIndex}). Por exemplo, uma viso das ofertas de um domnio
+ * permite buscar as ofertas desse domnio por diferentes combinaes de
+ * propriedades com uma nica assinatura no barramento.
+ * <p>
+ * Para que a viso seja atualizada  necessrio que o ORB utilizado pelo
+ * assistente esteja processando chamadas, por exemplo, fazendo com que a
+ * aplicao chame o mtodo 'ORB::run()'.
+ * 
+ * @see Assistant#subscribeServices(ServiceProperty[])
+ * 
+ * @author Tecgraf
+ */
+public class ServiceOfferView {
+
+  /** Sequncia vazia de ofertas */
+  private static final ServiceOfferDesc[] EMPTY = new ServiceOfferDesc[0];
+
+  /** Assistente que mantm a viso */
+  private final Assistant assist;
+  /** Propriedades que as ofertas da viso apresentam */
+  private final ServiceProperty[] properties;
+  /** Ofertas da viso indexadas pelo identificador da oferta */
+  private final Map<String, ServiceOfferDesc> entries =
+    new LinkedHashMap<String, ServiceOfferDesc>();
+  /** Cpia imutvel das ofertas atuais, utilizada nas consultas */
+  private volatile ServiceOfferDesc[] offers = EMPTY;
+  /** ndice das ofertas atuais, construdo sob demanda nas buscas */
+  private volatile OfferIndex index;
+  /** Ofertas notificadas durante uma sincronizao */
+  private Set<String> added;
+  /** Ofertas removidas durante uma sincronizao */
+  private Set<String> removed;
+  /** Indica se a viso foi cancelada */
+  private volatile boolean canceled = false;
+
+  /**
+   * Construtor.
+   * 
+   * @param assist o assistente que mantm a viso.
+   * @param properties as propriedades que as ofertas da viso apresentam.
+   */
+  ServiceOfferView(Assistant assist, ServiceProperty[] properties) {
+    this.assist = assist;
+    this.properties = Arrays.copyOf(properties, properties.length);
+  }
+
+  /**
+   * Consulta as propriedades que as ofertas da viso apresentam.
+   * 
+   * @return as propriedades utilizadas na assinatura.
+   */
+  public ServiceProperty[] properties() {
+    return properties.clone();
+  }
+
+  /**
+   * Consulta as ofertas atuais da viso sem acessar o barramento.
+   * 
+   * @return Sequncia de descries das ofertas de servio conhecidas.
+   */
+  public ServiceOfferDesc[] offers() {
+    return offers.clone();
+  }
+
+  /**
+   * Busca dentre as ofertas atuais da viso as que apresentem um conjunto de
+   * propriedades definido, sem acessar o barramento. O ndice das ofertas 
+   * reconstrudo apenas na primeira busca aps alguma mudana na viso.
+   * 
+   * @param properties Propriedades que as ofertas de servios encontradas devem
+   *        apresentar.
+   * @return Sequncia de descries de ofertas de servio encontradas.
+   */
+  public ServiceOfferDesc[] find(ServiceProperty[] properties) {
+    ServiceOfferDesc[] current = offers;
+    OfferIndex currentIndex = index;
+    if (currentIndex == null || currentIndex.offers != current) {
+      currentIndex = new OfferIndex(current);
+      index = currentIndex;
+    }
+    return currentIndex.find(properties);
+  }
+
+  /**
+   * Verifica se a viso foi cancelada.
+   * 
+   * @return <code>true</code> caso a viso tenha sido cancelada, e
+   *         <code>false</code> caso contrrio.
+   */
+  public boolean isCanceled() {
+    return canceled;
+  }
+
+  /**
+   * Cancela a viso, removendo os observadores registrados no barramento. Aps
+   * o cancelamento a viso deixa de ser atualizada.
+   */
+  public void cancel() {
+    if (!canceled) {
+      canceled = true;
+      assist.unsubscribe(this);
+    }
+  }
+
+  /**
+   * Adiciona ou atualiza uma oferta na viso.
+   * 
+   * @param desc a descrio da oferta.
+   * @return <code>true</code> caso a oferta no fizesse parte da viso, e
+   *         <code>false</code> caso contrrio.
+   */
+  synchronized boolean put(ServiceOfferDesc desc) {
+    String id = offerId(desc);
+    if (added != null) {
+      added.add(id);
+      removed.remove(id);
+    }
+    boolean isNew = entries.put(id, desc) == null;
+    publish();
+    return isNew;
+  }
+
+  /**
+   * Atualiza as propriedades de uma oferta j presente na viso. Caso as novas
+   * propriedades deixem de apresentar as propriedades da viso, a oferta 
+   * removida da viso (veja {@link #remove(ServiceOfferDesc)}).
+   * 
+   * @param desc a nova descrio da oferta.
+   * @return <code>true</code> caso a oferta tenha sido removida da viso, e
+   *         <code>false</code> caso contrrio.
+   */
+  synchronized boolean update(ServiceOfferDesc desc) {
+    String id = offerId(desc);
+    if (!entries.containsKey(id)) {
+      return false;
+    }
+    if (!matches(desc)) {
+      return remove(desc);
+    }
+    entries.put(id, desc);
+    publish();
+    return false;
+  }
+
+  /**
+   * Remove uma oferta da viso.
+   * 
+   * @param desc a descrio da oferta.
+   * @return <code>true</code> caso a oferta fizesse parte da viso, e
+   *         <code>false</code> caso contrrio.
+   */
+  synchronized boolean remove(ServiceOfferDesc desc) {
+    String id = offerId(desc);
+    if (added != null) {
+      added.remove(id);
+      removed.add(id);
+    }
+    boolean found = entries.remove(id) != null;
+    if (found) {
+      publish();
+      assist.offerRemoved(id);
+    }
+    return found;
+  }
+
+  /**
+   * Inicia uma sincronizao da viso com o barramento. As notificaes
+   * recebidas at o trmino da sincronizao prevalecem sobre o resultado da
+   * busca feita no barramento.
+   */
+  synchronized void beginSync() {
+    added = new HashSet<String>();
+    removed = new HashSet<String>();
+  }
+
+  /**
+   * Conclui uma sincronizao da viso, substituindo suas ofertas pelas
+   * encontradas no barramento.
+   * 
+   * @param found as ofertas encontradas no barramento.
+   */
+  synchronized void endSync(ServiceOfferDesc[] found) {
+    Map<String, ServiceOfferDesc> current =
+      new LinkedHashMap<String, ServiceOfferDesc>(entries);
+    entries.clear();
+    for (ServiceOfferDesc desc : found) {
+      String id = offerId(desc);
+      if (!removed.contains(id)) {
+        entries.put(id, desc);
+      }
+    }
+    for (String id : added) {
+      ServiceOfferDesc desc = current.get(id);
+      if (desc != null) {
+        entries.put(id, desc);
+      }
+    }
+    added = null;
+    removed = null;
+    publish();
+    for (String id : current.keySet()) {
+      if (!entries.containsKey(id)) {
+        // oferta removida enquanto as notificaes no eram recebidas
+        assist.offerRemoved(id);
+      }
+    }
+  }
+
+  /**
+   * Atualiza a cpia imutvel das ofertas consultada pela aplicao.
+   */
+  private void publish() {
+    offers = entries.values().toArray(new ServiceOfferDesc[entries.size()]);
+  }
+
+  /**
+   * Verifica se uma oferta apresenta todas as propriedades da viso.
+   * 
+   * @param desc a descrio da oferta.
+   * @return <code>true</code> caso a oferta apresente as propriedades, e
+   *         <code>false</code> caso contrrio.
+   */
+  private boolean matches(ServiceOfferDesc desc) {
+    for (ServiceProperty wanted : properties) {
+      boolean found = false;
+      for (ServiceProperty prop : desc.properties) {
+        if (prop.name.equals(wanted.name) && prop.value.equals(wanted.value)) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Recupera o identificador de uma oferta a partir de suas propriedades.
+   * 
+   * @param desc a descrio da oferta.
+   * @return o identificador da oferta, ou <code>null</code> caso no esteja
+   *         presente.
+   */
+  static String offerId(ServiceOfferDesc desc) {
+    for (ServiceProperty prop : desc.properties) {
+      if (prop.name.equals(ServiceProperties.ID)) {
+        return prop.value;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,167 @@
+package tecgraf.openbus.assistant;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.Servant;
+
+import scs.core.FacetDescription;
+import scs.core.IComponent;
+import scs.core.IComponentOperations;
+import scs.core.IMetaInterfaceOperations;
+import tecgraf.openbus.CallDispatchCallback;
+import tecgraf.openbus.Connection;
+import tecgraf.openbus.OpenBusContext;
+
+/**
+ * Seleo da conexo que atende as chamadas recebidas pelos objetos dos
+ * assistentes que compartilham um ORB.
+ * <p>
+ * Quando vrios assistentes compartilham um ORB, nenhum deles define a conexo
+ * padro, de forma que as chamadas recebidas pelos componentes ofertados e
+ * pelos observadores de ofertas de cada assistente precisam ser atendidas pela
+ * conexo do assistente que os registrou. H uma nica instncia por contexto, que identifica o assistente
+ * pelo identificador do objeto chamado. As chamadas a objetos que no
+ * pertencem a nenhum assistente so repassadas  callback definida
+ * anteriormente no contexto, caso exista.
+ * 
+ * @author Tecgraf
+ */
+class SharedDispatch implements CallDispatchCallback {
+
+  /** Callback definida no contexto antes da instalao */
+  private final CallDispatchCallback fallback;
+  /** Assistentes indexados pelo identificador dos seus objetos */
+  private final ConcurrentMap<ByteBuffer, Assistant> targets =
+    new ConcurrentHashMap<ByteBuffer, Assistant>();
+
+  /**
+   * Construtor.
+   * 
+   * @param fallback callback definida no contexto antes da instalao, ou
+   *        <code>null</code> caso no exista.
+   */
+  private SharedDispatch(CallDispatchCallback fallback) {
+    this.fallback = fallback;
+  }
+
+  /**
+   * Obtm a instncia associada a um contexto, instalando-a caso ainda no
+   * exista.
+   * 
+   * @param context o contexto.
+   * @return a instncia associada ao contexto.
+   */
+  static SharedDispatch install(OpenBusContext context) {
+    synchronized (context) {
+      CallDispatchCallback current = context.onCallDispatch();
+      if (current instanceof SharedDispatch) {
+        return (SharedDispatch) current;
+      }
+      SharedDispatch dispatch = new SharedDispatch(current);
+      context.onCallDispatch(dispatch);
+      return dispatch;
+    }
+  }
+
+  /**
+   * Associa um objeto a um assistente.
+   * 
+   * @param objectId identificador do objeto.
+   * @param assistant o assistente.
+   */
+  void register(byte[] objectId, Assistant assistant) {
+    targets.put(ByteBuffer.wrap(objectId.clone()), assistant);
+  }
+
+  /**
+   * Desfaz a associao de um objeto.
+   * 
+   * @param objectId identificador do objeto.
+   */
+  void unregister(byte[] objectId) {
+    targets.remove(ByteBuffer.wrap(objectId));
+  }
+
+  /**
+   * Desfaz a associao de todos os objetos de um assistente.
+   * 
+   * @param assistant o assistente.
+   */
+  void unregister(Assistant assistant) {
+    Iterator<Map.Entry<ByteBuffer, Assistant>> it =
+      targets.entrySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().getValue() == assistant) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Obtm os identificadores de um componente e das suas facetas ativados em
+   * um POA. O componente e a sua faceta IMetaInterface so consultados
+   * diretamente nos seus servants, sem chamadas atravs do ORB, j que as
+   * chamadas recebidas pelo componente s podem ser atendidas aps o seu
+   * mapeamento. Objetos que no tenham sido ativados no POA so ignorados.
+   * 
+   * @param poa o POA.
+   * @param component o componente.
+   * @return os identificadores encontrados.
+   */
+  static List<byte[]> objectIds(POA poa, IComponent component) {
+    List<byte[]> ids = new ArrayList<byte[]>();
+    Servant meta;
+    try {
+      ids.add(poa.reference_to_id(component));
+      Servant servant = poa.reference_to_servant(component);
+      if (!(servant instanceof IComponentOperations)) {
+        return ids;
+      }
+      org.omg.CORBA.Object ref =
+        ((IComponentOperations) servant).getFacetByName("IMetaInterface");
+      if (ref == null) {
+        return ids;
+      }
+      meta = poa.reference_to_servant(ref);
+    }
+    catch (Exception e) {
+      return ids;
+    }
+    if (meta instanceof IMetaInterfaceOperations) {
+      for (FacetDescription facet : ((IMetaInterfaceOperations) meta)
+        .getFacets()) {
+        try {
+          ids.add(poa.reference_to_id(facet.facet_ref));
+        }
+        catch (Exception e) {
+          // faceta ativada em outro POA
+        }
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Seleciona a conexo do assistente ao qual o objeto chamado pertence.
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection dispatch(OpenBusContext context, String busid,
+    String loginId, byte[] object_id, String operation) {
+    Assistant assistant = targets.get(ByteBuffer.wrap(object_id));
+    if (assistant != null) {
+      return assistant.connection();
+    }
+    if (fallback != null) {
+      return fallback.dispatch(context, busid, loginId, object_id, operation);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,99 @@
+package tecgraf.openbus.assistant;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agrupamento de chamadas idnticas simultneas.
+ * <p>
+ * A primeira thread a solicitar uma chamada com uma determinada chave realiza
+ * a chamada. As threads que solicitarem a mesma chave enquanto a chamada
+ * estiver em andamento aguardam o seu trmino e recebem o mesmo resultado, ou
+ * a mesma exceo, sem realizar uma nova chamada. Terminada a chamada, a
+ * prxima solicitao com a mesma chave realiza uma nova chamada, de forma que
+ * resultados nunca so reaproveitados entre chamadas que no foram
+ * simultneas.
+ * 
+ * @param <K> tipo da chave que identifica chamadas idnticas.
+ * @param <V> tipo do resultado das chamadas.
+ * 
+ * @author Tecgraf
+ */
+class SingleFlight<K, V> {
+
+  /** Chamadas em andamento indexadas pela chave */
+  private final ConcurrentMap<K, FutureTask<V>> calls =
+    new ConcurrentHashMap<K, FutureTask<V>>();
+  /** Nmero de solicitaes atendidas por uma chamada em andamento */
+  private final AtomicLong shared = new AtomicLong(0);
+
+  /**
+   * Realiza uma chamada, ou aguarda o resultado de uma chamada idntica em
+   * andamento.
+   * 
+   * @param key a chave que identifica a chamada.
+   * @param call a chamada a ser realizada caso no haja uma em andamento.
+   * @param timeout tempo mximo de espera em nanosegundos por uma chamada em
+   *        andamento, ou um valor negativo para esperar indefinidamente. A
+   *        chamada realizada pela prpria thread no  limitada.
+   * @return o resultado da chamada.
+   * @throws TimeoutException caso o tempo de espera se esgote.
+   * @throws InterruptedException caso a thread seja interrompida durante a
+   *         espera.
+   * @throws Exception a exceo lanada pela chamada.
+   */
+  V execute(K key, Callable<V> call, long timeout) throws Exception {
+    FutureTask<V> task = new FutureTask<V>(call);
+    FutureTask<V> current = calls.putIfAbsent(key, task);
+    if (current == null) {
+      try {
+        task.run();
+      }
+      finally {
+        calls.remove(key, task);
+      }
+      current = task;
+    }
+    else {
+      shared.incrementAndGet();
+    }
+    try {
+      if (timeout < 0 || current == task) {
+        return current.get();
+      }
+      return current.get(timeout, TimeUnit.NANOSECONDS);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  /**
+   * Consulta o nmero de chamadas em andamento.
+   * 
+   * @return o nmero de chamadas.
+   */
+  int inFlight() {
+    return calls.size();
+  }
+
+  /**
+   * Consulta o nmero de solicitaes que foram atendidas por uma chamada
+   * idntica em andamento, sem realizar uma nova chamada.
+   * 
+   * @return o nmero de solicitaes agrupadas.
+   */
+  long shared() {
+    return shared.get();
+  }
+}
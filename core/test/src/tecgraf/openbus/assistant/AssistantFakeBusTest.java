@@ -0,0 +1,1312 @@
+package tecgraf.openbus.assistant;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.omg.CORBA.COMM_FAILURE;
+import org.omg.CORBA.CompletionStatus;
+import org.omg.CORBA.TRANSIENT;
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.POAHelper;
+
+import scs.core.ComponentContext;
+import scs.core.ComponentId;
+import scs.core.FacetDescription;
+import scs.core.IComponent;
+import scs.core.IComponentHelper;
+import scs.core.IComponentPOA;
+import scs.core.IMetaInterfacePOA;
+import tecgraf.openbus.assistant.fake.FakeBus;
+import tecgraf.openbus.core.v2_1.services.access_control.AccessDenied;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistry;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+public class AssistantFakeBusTest {
+
+  private static final String entity = "fake";
+  private static final long timeout = 10;
+
+  private FakeBus bus;
+  private AssistantParams params;
+  private CountingCallback callback;
+  private Assistant assist;
+
+  @Before
+  public void setUp() throws Exception {
+    bus = new FakeBus();
+    params = bus.params();
+    params.retryPolicy = RetryPolicy.fixed(10);
+    callback = new CountingCallback();
+    params.callback = callback;
+  }
+
+  @After
+  public void tearDown() {
+    if (assist != null) {
+      assist.shutdown();
+    }
+    bus.shutdown();
+  }
+
+  @Test
+  public void registerAndFindTest() throws Exception {
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("register"), properties("register"));
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    ServiceOfferDesc[] found =
+      assist.findServices(properties("register"), -1);
+    Assert.assertEquals(1, found.length);
+    Assert.assertEquals(0, callback.registerFailures.get());
+    Assert.assertEquals(0, callback.findFailures.get());
+  }
+
+  @Test
+  public void registerServicesTest() throws Exception {
+    assist = createAssistant(entity);
+    IComponent component = buildComponent("batch");
+    List<OfferSpec> specs = new ArrayList<OfferSpec>();
+    for (int i = 0; i < 50; i++) {
+      specs.add(new OfferSpec(component, new ServiceProperty[] {
+          new ServiceProperty("offer.domain", "batch"),
+          new ServiceProperty("batch.index", Integer.toString(i)) }));
+    }
+    bus.failNext("registerService", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), 5);
+    BatchRegistration batch = assist.registerServices(specs);
+    Assert.assertEquals(50, batch.size());
+    Assert.assertTrue(batch.await(timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(batch.isDone());
+    Assert.assertEquals(50, batch.registered());
+    for (OfferRegistration registration : batch.registrations()) {
+      Assert.assertTrue(registration.isRegistered());
+    }
+    Assert.assertEquals(50, bus.offerCount());
+    Assert.assertEquals(50, assist.findServices(properties("batch"), 0).length);
+  }
+
+  @Test
+  public void registrationHandleTest() throws Exception {
+    bus.failNext("registerService", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), 2);
+    assist = createAssistant(entity);
+    OfferRegistration registration =
+      assist.registerService(buildComponent("handle"), properties("handle"));
+    final CountDownLatch registered = new CountDownLatch(2);
+    final CountDownLatch pending = new CountDownLatch(1);
+    registration.addListener(new OfferRegistrationListener() {
+      @Override
+      public void registered(OfferRegistration registration) {
+        registered.countDown();
+      }
+
+      @Override
+      public void pending(OfferRegistration registration) {
+        pending.countDown();
+      }
+    });
+    Assert.assertTrue(registration.await(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(OfferRegistration.State.REGISTERED, registration
+      .state());
+    Assert.assertNotNull(registration.offer());
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, assist.findServices(properties("handle"), 0).length);
+
+    String offerId = offerId(registration.offer());
+    bus.invalidateLogins();
+    Assert.assertTrue(pending.await(timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(registered.await(timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertFalse(offerId.equals(offerId(registration.offer())));
+  }
+
+  @Test
+  public void awaitAllRegisteredTimeoutTest() throws Exception {
+    bus.failNext("registerService", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), Integer.MAX_VALUE);
+    assist = createAssistant(entity);
+    OfferRegistration registration =
+      assist.registerService(buildComponent("never"), properties("never"));
+    Assert.assertFalse(assist.awaitAllRegistered(100, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(OfferRegistration.State.PENDING, registration.state());
+    Assert.assertNull(registration.offer());
+  }
+
+  @Test
+  public void unregisterServiceTest() throws Exception {
+    assist = createAssistant(entity);
+    OfferRegistration kept =
+      assist.registerService(buildComponent("kept"), properties("kept"));
+    OfferRegistration removed =
+      assist.registerService(buildComponent("removed"), properties("removed"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    long logins = bus.loginCount();
+    bus.failNext("remove", new TRANSIENT(0, CompletionStatus.COMPLETED_NO), 2);
+    assist.unregisterService(removed);
+    Assert.assertEquals(OfferRegistration.State.REMOVED, removed.state());
+    Assert.assertTrue(waitOffers(1));
+    Assert.assertEquals(0, assist.findServices(properties("removed"), 0,
+      false).length);
+    Assert.assertEquals(1, assist.findServices(properties("kept"), 0).length);
+    Assert.assertTrue(kept.isRegistered());
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(logins, bus.loginCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unregisterUnknownServiceTest() throws Exception {
+    assist = createAssistant(entity);
+    OfferRegistration registration =
+      assist.registerService(buildComponent("twice"), properties("twice"));
+    assist.unregisterService(registration);
+    assist.unregisterService(registration);
+  }
+
+  @Test
+  public void updateServicePropertiesTest() throws Exception {
+    assist = createAssistant(entity);
+    OfferRegistration registration =
+      assist.registerService(buildComponent("before"), properties("before"));
+    Assert.assertTrue(registration.await(timeout, TimeUnit.SECONDS));
+    String offerId = offerId(registration.offer());
+    bus.failNext("setProperties", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), 2);
+    assist.updateServiceProperties(registration, properties("after"));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (assist.findServices(properties("after"), 0, false).length == 0) {
+      Assert.assertTrue(System.nanoTime() < deadline);
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(0, assist.findServices(properties("before"), 0,
+      false).length);
+    Assert.assertEquals(1, bus.offerCount());
+    ServiceOfferDesc[] found = assist.findServices(properties("after"), 0);
+    Assert.assertEquals(offerId, offerId(found[0]));
+    Assert.assertEquals(1, assist.metrics().getRegistrationAttempts());
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+
+    // o prximo registro utiliza as novas propriedades
+    bus.invalidateLogins();
+    Assert.assertTrue(waitLogin(2));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertFalse(offerId.equals(offerId(registration.offer())));
+    Assert.assertEquals(1, assist.findServices(properties("after"), 0, false)
+      .length);
+  }
+
+  @Test
+  public void offerCheckTest() throws Exception {
+    params.offerCheckInterval = 0.05f;
+    assist = createAssistant(entity);
+    OfferRegistration registration =
+      assist.registerService(buildComponent("check"), properties("check"));
+    Assert.assertTrue(registration.await(timeout, TimeUnit.SECONDS));
+    String offerId = offerId(registration.offer());
+    bus.removeOffers();
+    Assert.assertEquals(0, bus.offerCount());
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertFalse(offerId.equals(offerId(registration.offer())));
+    Assert.assertEquals(1, assist.metrics().getLostOffers());
+    Assert.assertEquals(1, bus.loginCount());
+    Assert.assertEquals(1, assist.findServices(properties("check"), 0).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void reservedPropertyTest() throws Exception {
+    new OfferSpec(buildComponent("reserved"), new ServiceProperty[] {
+        new ServiceProperty("openbus.offer.id", "fake") });
+  }
+
+  @Test
+  public void registerRetriesAfterTransientTest() throws Exception {
+    bus.failNext("registerService", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), 3);
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("transient"),
+      properties("transient"));
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(3, callback.registerFailures.get());
+  }
+
+  @Test
+  public void findRetriesAfterCommFailureTest() throws Exception {
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("comm"), properties("comm"));
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    bus.failNext("findServices", new COMM_FAILURE(0,
+      CompletionStatus.COMPLETED_MAYBE), 2);
+    ServiceOfferDesc[] found = assist.findServices(properties("comm"), 5);
+    Assert.assertEquals(1, found.length);
+    Assert.assertEquals(2, callback.findFailures.get());
+
+    bus.failNext("findServices", new COMM_FAILURE(0,
+      CompletionStatus.COMPLETED_MAYBE), 1);
+    boolean failed = false;
+    try {
+      assist.findServices(properties("comm"), 0);
+    }
+    catch (COMM_FAILURE e) {
+      failed = true;
+    }
+    Assert.assertTrue(failed);
+  }
+
+  @Test
+  public void findWithTimeoutGivesUpTest() throws Exception {
+    assist = createAssistant(entity);
+    Assert.assertTrue(waitLogin(1));
+    bus.failNext("findServices", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), Integer.MAX_VALUE);
+    long start = System.nanoTime();
+    boolean failed = false;
+    try {
+      assist.findServices(properties("timeout"), 200, TimeUnit.MILLISECONDS);
+    }
+    catch (TRANSIENT e) {
+      failed = true;
+    }
+    long elapsed =
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assert.assertTrue(failed);
+    Assert.assertTrue(elapsed < 1000);
+    Assert.assertTrue(callback.findFailures.get() > 1);
+  }
+
+  @Test
+  public void coalescedFindTest() throws Exception {
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("coalesced"),
+      properties("coalesced"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    bus.setLatency(300, TimeUnit.MILLISECONDS);
+    final int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger found = new AtomicInteger(0);
+    List<Thread> finders = new ArrayList<Thread>();
+    for (int i = 0; i < threads; i++) {
+      Thread finder = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            found.addAndGet(assist.findServices(properties("coalesced"), 0,
+              false).length);
+          }
+          catch (Exception e) {
+            // contabilizado pelo nmero de ofertas encontradas
+          }
+        }
+      };
+      finder.start();
+      finders.add(finder);
+    }
+    start.countDown();
+    for (Thread finder : finders) {
+      finder.join(TimeUnit.SECONDS.toMillis(timeout));
+    }
+    Assert.assertEquals(threads, found.get());
+    AssistantMetrics metrics = assist.metrics();
+    Assert.assertTrue(metrics.getCoalescedFinds() > 0);
+    Assert.assertEquals(threads, metrics.getFindCalls()
+      + metrics.getCoalescedFinds());
+  }
+
+  @Test
+  public void coalescedFindAfterInvalidationTest() throws Exception {
+    params.cacheTTL = 60.0f;
+    params.standbyLogin = true;
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("stale"), properties("stale"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(waitActiveLogins(2));
+    bus.setLatency(500, TimeUnit.MILLISECONDS);
+    final AtomicInteger found = new AtomicInteger(0);
+    Thread leader = new Thread() {
+      @Override
+      public void run() {
+        try {
+          assist.findServices(properties("stale"), 0);
+          found.incrementAndGet();
+        }
+        catch (Exception e) {
+          // contabilizado pelo nmero de buscas bem sucedidas
+        }
+      }
+    };
+    leader.start();
+    Thread.sleep(100);
+    // a perda do login invalida o cache durante a busca em andamento, que
+    // termina com a conexo reserva promovida
+    bus.invalidateLogin(assist.connection().login().id);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (assist.metrics().getStandbyPromotions() == 0
+      && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, assist.metrics().getStandbyPromotions());
+    // a segunda busca aguarda a busca iniciada antes da invalidao, cujo
+    // resultado pode no conter a oferta removida junto com o login perdido
+    assist.findServices(properties("stale"), 0);
+    found.incrementAndGet();
+    leader.join(TimeUnit.SECONDS.toMillis(timeout));
+    Assert.assertEquals(2, found.get());
+    Assert.assertEquals(1, assist.metrics().getFindCalls());
+    Assert.assertEquals(1, assist.metrics().getCoalescedFinds());
+    // o resultado obtido antes da invalidao no foi armazenado
+    long misses = assist.metrics().getCacheMisses();
+    bus.setLatency(0, TimeUnit.MILLISECONDS);
+    assist.findServices(properties("stale"), 0);
+    Assert.assertEquals(misses + 1, assist.metrics().getCacheMisses());
+    Assert.assertEquals(0, assist.metrics().getCacheHits());
+  }
+
+  @Test
+  public void latencyTest() throws Exception {
+    assist = createAssistant(entity);
+    Assert.assertTrue(waitLogin(1));
+    bus.setLatency(50, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    assist.getAllServices(0);
+    long elapsed =
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assert.assertTrue(elapsed >= 50);
+  }
+
+  @Test
+  public void expiredLoginIsRecoveredTest() throws Exception {
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("expiry"), properties("expiry"));
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    long logins = bus.loginCount();
+    bus.expireLogins();
+    // a perda do login s  percebida na prxima chamada
+    Assert.assertEquals(1, bus.offerCount());
+    assist.findServices(properties("expiry"), -1);
+    Assert.assertTrue(bus.loginCount() > logins);
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    ServiceOfferDesc[] found = assist.findServices(properties("expiry"), -1);
+    Assert.assertEquals(1, found.length);
+  }
+
+  @Test
+  public void loginCheckTest() throws Exception {
+    params.loginCheckInterval = 0.05f;
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("monitor"), properties("monitor"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    // a perda do login  tratada sem nenhuma chamada da aplicao
+    bus.expireLogins();
+    Assert.assertTrue(waitLogin(2));
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, assist.metrics().getInvalidLogins());
+    Assert.assertEquals(1, assist.findServices(properties("monitor"), 0)
+      .length);
+    Assert.assertEquals(2, bus.loginCount());
+  }
+
+  @Test
+  public void asyncLoginRecoveryTest() throws Exception {
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("async"), properties("async"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    bus.failNext("loginByPassword", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), 30);
+    bus.expireLogins();
+    // a chamada que detecta a perda do login no refaz o login
+    try {
+      assist.findServices(properties("async"), 0);
+    }
+    catch (Exception e) {
+      // a chamada pode falhar enquanto o login no  refeito
+    }
+    Assert.assertEquals(1, bus.loginCount());
+    Assert.assertFalse(assist.awaitLogin(1, TimeUnit.MILLISECONDS));
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(2, bus.loginCount());
+    Assert.assertEquals(1, assist.metrics().getInvalidLogins());
+  }
+
+  @Test
+  public void loginLeaseTest() throws Exception {
+    bus.setLoginLease(100, TimeUnit.MILLISECONDS);
+    assist = createAssistant(entity);
+    Assert.assertTrue(waitLogin(1));
+    long logins = bus.loginCount();
+    Thread.sleep(150);
+    assist.getAllServices(-1);
+    Assert.assertTrue(bus.loginCount() > logins);
+  }
+
+  @Test
+  public void invalidateLoginsTest() throws Exception {
+    assist = createAssistant(entity);
+    ServiceOfferView view = assist.subscribeServices(properties("invalid"));
+    assist.registerService(buildComponent("invalid"), properties("invalid"));
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    bus.invalidateLogins();
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (view.offers().length != 1 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, view.offers().length);
+  }
+
+  @Test
+  public void viewFindTest() throws Exception {
+    assist = createAssistant(entity);
+    ServiceOfferView view = assist.subscribeServices(properties("indexed"));
+    IComponent component = buildComponent("indexed");
+    for (int i = 0; i < 4; i++) {
+      assist.registerService(component, new ServiceProperty[] {
+          new ServiceProperty("offer.domain", "indexed"),
+          new ServiceProperty("indexed.parity", Integer.toString(i % 2)) });
+    }
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (view.offers().length != 4 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    ServiceProperty[] even =
+      new ServiceProperty[] { new ServiceProperty("indexed.parity", "0") };
+    Assert.assertEquals(2, view.find(even).length);
+    Assert.assertEquals(4, view.find(properties("indexed")).length);
+
+    // o ndice acompanha as mudanas da viso
+    bus.removeOffers();
+    deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (view.offers().length != 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(0, view.find(even).length);
+  }
+
+  @Test
+  public void viewPropertiesChangedTest() throws Exception {
+    assist = createAssistant(entity);
+    ServiceOfferView view = assist.subscribeServices(properties("moving"));
+    OfferRegistration moved =
+      assist.registerService(buildComponent("moved"), properties("moving"));
+    OfferRegistration kept =
+      assist.registerService(buildComponent("kept"), properties("moving"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (view.offers().length != 2 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(2, view.offers().length);
+    // a oferta cujas propriedades deixam de apresentar as da viso  removida
+    ServiceProperty[] extra =
+      new ServiceProperty[] { new ServiceProperty("offer.extra", "kept") };
+    assist.updateServiceProperties(moved, properties("elsewhere"));
+    assist.updateServiceProperties(kept, new ServiceProperty[] {
+        new ServiceProperty("offer.domain", "moving"), extra[0] });
+    deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while ((view.offers().length != 1 || view.find(extra).length != 1)
+      && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, view.offers().length);
+    Assert.assertEquals(1, view.find(extra).length);
+    Assert.assertEquals(0, view.find(properties("elsewhere")).length);
+  }
+
+  @Test
+  public void facetCacheTest() throws Exception {
+    assist = createAssistant(entity);
+    ServiceOfferView view = assist.subscribeServices(properties("facet"));
+    assist.registerService(buildFacetedComponent("facet"), properties("facet"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (view.offers().length != 1 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    ServiceOfferDesc desc = view.offers()[0];
+    IComponent first = assist.getFacet(desc, IComponent.class);
+    Assert.assertNotNull(first);
+    Assert.assertEquals("facet", first.getComponentId().name);
+    // a segunda obteno no faz chamadas remotas
+    Assert.assertSame(first, assist.getFacet(desc, IComponent.class));
+    Assert.assertEquals(1, assist.metrics().getFacetCacheHits());
+    Assert.assertEquals(1, assist.metrics().getFacetCacheMisses());
+    // faceta no oferecida pelo componente
+    Assert.assertNull(assist.getFacet(desc, OfferRegistry.class));
+    assist.invalidateFacets(desc);
+    Assert.assertNotSame(first, assist.getFacet(desc, IComponent.class));
+    Assert.assertEquals(3, assist.metrics().getFacetCacheMisses());
+
+    // a remoo da oferta observada pela viso descarta as facetas
+    bus.removeOffers();
+    deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (view.offers().length != 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assist.getFacet(desc, IComponent.class);
+    Assert.assertEquals(4, assist.metrics().getFacetCacheMisses());
+    Assert.assertEquals(1, assist.metrics().getFacetCacheHits());
+  }
+
+  @Test
+  public void facetCacheFindTest() throws Exception {
+    assist = createAssistant(entity);
+    OfferRegistration registration =
+      assist.registerService(buildFacetedComponent("found"),
+        properties("found"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    ServiceOfferDesc desc = assist.findServices(properties("found"), 0)[0];
+    IComponent first = assist.getFacet(desc, IComponent.class);
+    Assert.assertSame(first, assist.getFacet(desc, IComponent.class));
+    Assert.assertEquals(1, assist.metrics().getFacetCacheHits());
+    // a oferta continua sendo encontrada
+    assist.findServices(properties("found"), 0);
+    Assert.assertSame(first, assist.getFacet(desc, IComponent.class));
+    Assert.assertEquals(2, assist.metrics().getFacetCacheHits());
+    // a oferta deixa de ser encontrada pela mesma busca
+    assist.unregisterService(registration);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (bus.offerCount() != 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(0, assist.findServices(properties("found"), 0).length);
+    assist.getFacet(desc, IComponent.class);
+    Assert.assertEquals(2, assist.metrics().getFacetCacheMisses());
+    Assert.assertEquals(2, assist.metrics().getFacetCacheHits());
+  }
+
+  @Test
+  public void facetCacheConcurrentInvalidationTest() throws Exception {
+    assist = createAssistant(entity);
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    assist.registerService(buildFacetedComponent("blocked", entered, release),
+      properties("blocked"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    final ServiceOfferDesc desc =
+      assist.findServices(properties("blocked"), 0)[0];
+    ExecutorService caller = Executors.newSingleThreadExecutor();
+    try {
+      Future<IComponent> pending = caller.submit(new Callable<IComponent>() {
+        @Override
+        public IComponent call() throws Exception {
+          return assist.getFacet(desc, IComponent.class);
+        }
+      });
+      Assert.assertTrue(entered.await(timeout, TimeUnit.SECONDS));
+      // o descarte ocorre enquanto a faceta  obtida
+      assist.invalidateFacets(desc);
+      release.countDown();
+      IComponent stale = pending.get(timeout, TimeUnit.SECONDS);
+      Assert.assertNotNull(stale);
+      // a faceta obtida antes do descarte no foi armazenada
+      Assert.assertNotSame(stale, assist.getFacet(desc, IComponent.class));
+      Assert.assertEquals(0, assist.metrics().getFacetCacheHits());
+      Assert.assertEquals(2, assist.metrics().getFacetCacheMisses());
+      // uma obteno sem descarte concorrente  armazenada normalmente
+      IComponent cached = assist.getFacet(desc, IComponent.class);
+      Assert.assertSame(cached, assist.getFacet(desc, IComponent.class));
+    }
+    finally {
+      caller.shutdownNow();
+    }
+  }
+
+  @Test
+  public void deniedEntityTest() throws Exception {
+    bus.denyEntity(entity);
+    assist = createAssistant(entity);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (callback.loginFailures.get() == 0
+      && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(callback.lastLoginFailure instanceof AccessDenied);
+    Assert.assertEquals(0, assist.findServices(properties("denied"), 0).length);
+  }
+
+  @Test
+  public void metricsTest() throws Exception {
+    params.cacheTTL = 60.0f;
+    params.metricsName = "tecgraf.openbus.assistant:type=Assistant,name=test";
+    bus.failNext("registerService", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), 1);
+    assist = createAssistant(entity);
+    AssistantMetrics metrics = assist.metrics();
+    assist.registerService(buildComponent("metrics"), properties("metrics"));
+    Assert.assertTrue(bus.awaitOffers(1, timeout, TimeUnit.SECONDS));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (metrics.getRegisteredOffers() != 1
+      && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, metrics.getRegisteredOffers());
+    Assert.assertEquals(0, metrics.getPendingOffers());
+    Assert.assertEquals(2, metrics.getRegistrationAttempts());
+    Assert.assertEquals(1, metrics.getRegistrationFailures());
+    Assert.assertEquals(1, metrics.getTimeToRegister().getCount());
+    OfferStatus[] offers = metrics.getOffers();
+    Assert.assertEquals(1, offers.length);
+    Assert.assertTrue(offers[0].isRegistered());
+    Assert.assertNotNull(offers[0].getOfferId());
+    Assert.assertEquals(1, offers[0].getRegistrations());
+    Assert.assertEquals(1, metrics.getLoginAttempts());
+    Assert.assertEquals(1, metrics.getLoginLatency().getCount());
+
+    assist.findServices(properties("metrics"), 0);
+    assist.findServices(properties("metrics"), 0);
+    Assert.assertEquals(1, metrics.getFindCalls());
+    Assert.assertEquals(1, metrics.getFindLatency().getCount());
+    Assert.assertEquals(1, metrics.getCacheHits());
+    Assert.assertEquals(1, metrics.getCacheMisses());
+    Assert.assertEquals(0.5, metrics.getCacheHitRatio(), 0.001);
+
+    bus.expireLogins();
+    assist.findServices(properties("metrics"), -1, false);
+    Assert.assertEquals(1, metrics.getInvalidLogins());
+    Assert.assertEquals(2, metrics.getLoginAttempts());
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(params.metricsName);
+    Assert.assertEquals(2L, server.getAttribute(name, "LoginAttempts"));
+    CompositeData latency =
+      (CompositeData) server.getAttribute(name, "FindLatency");
+    Assert.assertEquals(2L, latency.get("count"));
+    assist.shutdown();
+    assist = null;
+    Assert.assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void rejectedParamsDoNotExportMetricsTest() throws Exception {
+    params.metricsName = "tecgraf.openbus.assistant:type=Assistant,name=bad";
+    params.registerConcurrency = 0;
+    try {
+      createAssistant(entity);
+      Assert.fail();
+    }
+    catch (IllegalArgumentException e) {
+      // esperado
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(params.metricsName);
+    Assert.assertFalse(server.isRegistered(name));
+    params.registerConcurrency = null;
+    assist = createAssistant(entity);
+    Assert.assertTrue(server.isRegistered(name));
+    assist.shutdown();
+    assist = null;
+    Assert.assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void externalExecutorsTest() throws Exception {
+    final AtomicInteger threads = new AtomicInteger(0);
+    ExecutorService executor =
+      Executors.newFixedThreadPool(2, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+          threads.incrementAndGet();
+          Thread thread = new Thread(task);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    params.executor = executor;
+    params.scheduler = scheduler;
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("external"), properties("external"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, assist.getAllServicesAsync(0).get(timeout,
+      TimeUnit.SECONDS).length);
+    Assert.assertTrue(threads.get() > 0);
+    assist.shutdown();
+    assist = null;
+    // executores da aplicao no so finalizados pelo assistente
+    Assert.assertFalse(executor.isShutdown());
+    Assert.assertFalse(scheduler.isShutdown());
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void namedThreadsTest() throws Exception {
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("named"), properties("named"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    boolean async = false;
+    boolean register = false;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().matches("openbus-assistant-\\d+-async-\\d+")) {
+        async = true;
+        Assert.assertTrue(thread.isDaemon());
+      }
+      if (thread.getName().matches("openbus-assistant-\\d+-register-\\d+")) {
+        register = true;
+        Assert.assertTrue(thread.isDaemon());
+      }
+    }
+    Assert.assertTrue(async);
+    Assert.assertTrue(register);
+  }
+
+  @Test
+  public void boundedAsyncPoolTest() throws Exception {
+    params.asyncThreads = 1;
+    params.asyncQueueSize = 0;
+    assist = createAssistant(entity);
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    bus.setLatency(200, TimeUnit.MILLISECONDS);
+    // aguarda a nica thread ser liberada pela tarefa de login
+    Future<ServiceOfferDesc[]> busy = null;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (busy == null && System.nanoTime() < deadline) {
+      try {
+        busy = assist.getAllServicesAsync(0);
+      }
+      catch (RejectedExecutionException e) {
+        Thread.sleep(10);
+      }
+    }
+    Assert.assertNotNull(busy);
+    try {
+      assist.getAllServicesAsync(0);
+      Assert.fail();
+    }
+    catch (RejectedExecutionException e) {
+      // esperado
+    }
+    Assert.assertEquals(0, busy.get(timeout, TimeUnit.SECONDS).length);
+  }
+
+  @Test
+  public void discardPolicyKeepsLoginTest() throws Exception {
+    Future<ServiceOfferDesc[]> rejected =
+      loseLoginWithBusyPool(new ThreadPoolExecutor.DiscardPolicy());
+    // a chamada assncrona recusada  descartada pela poltica
+    Assert.assertFalse(rejected.isDone());
+  }
+
+  @Test
+  public void callerRunsPolicyKeepsLoginTest() throws Exception {
+    Future<ServiceOfferDesc[]> rejected =
+      loseLoginWithBusyPool(new ThreadPoolExecutor.CallerRunsPolicy());
+    // a chamada assncrona recusada  executada pela thread que a solicitou
+    Assert.assertTrue(rejected.isDone());
+  }
+
+  @Test
+  public void virtualThreadsTest() throws Exception {
+    boolean available;
+    try {
+      Thread.class.getMethod("ofVirtual");
+      available = true;
+    }
+    catch (NoSuchMethodException e) {
+      available = false;
+    }
+    params.virtualThreads = true;
+    if (!available) {
+      try {
+        createAssistant(entity);
+        Assert.fail();
+      }
+      catch (IllegalArgumentException e) {
+        // esperado
+      }
+      return;
+    }
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("virtual"), properties("virtual"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, assist.getAllServicesAsync(0).get(timeout,
+      TimeUnit.SECONDS).length);
+  }
+
+  @Test
+  public void replicaDownAtStartupTest() throws Exception {
+    useReplicas();
+    bus.setReplicaDown("localhost", 2089, true);
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("replica"), properties("replica"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    // o login  feito na segunda rplica sem esperar o intervalo de tentativas
+    Assert.assertEquals(0, bus.loginCount("localhost", 2089));
+    Assert.assertEquals(1, bus.loginCount("localhost", 2090));
+    Assert.assertEquals(1, assist.metrics().getFailovers());
+    Assert.assertEquals(1, assist.findServices(properties("replica"), 0)
+      .length);
+  }
+
+  @Test
+  public void replicaFailoverTest() throws Exception {
+    useReplicas();
+    params.loginCheckInterval = 0.05f;
+    params.failoverThreshold = 2;
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("failover"), properties("failover"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, bus.loginCount("localhost", 2089));
+    // a rplica em uso se torna inacessvel
+    bus.setReplicaDown("localhost", 2089, true);
+    Assert.assertTrue(waitLogin(2));
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, bus.loginCount("localhost", 2090));
+    Assert.assertEquals(1, assist.metrics().getFailovers());
+    // a oferta do login anterior s  removida quando esse login expirar
+    Assert.assertEquals(2, assist.findServices(properties("failover"), 0)
+      .length);
+  }
+
+  @Test
+  public void raceLoginTest() throws Exception {
+    useReplicas();
+    params.raceLogin = true;
+    bus.setReplicaLatency("localhost", 2089, 300, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    assist = createAssistant(entity);
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    // o login  mantido na rplica que respondeu primeiro
+    Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS
+      .toNanos(300));
+    assist.registerService(buildComponent("race"), properties("race"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, bus.loginCount("localhost", 2090));
+    // o login obtido na rplica mais lenta  descartado
+    Assert.assertTrue(waitLogin(2));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (bus.activeLogins() > 1 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, bus.activeLogins());
+    Assert.assertEquals(1, assist.findServices(properties("race"), 0).length);
+    Assert.assertEquals(0, callback.loginFailures.get());
+  }
+
+  @Test
+  public void raceLoginAllDownTest() throws Exception {
+    useReplicas();
+    params.raceLogin = true;
+    bus.setReplicaDown("localhost", 2089, true);
+    bus.setReplicaDown("localhost", 2090, true);
+    assist = createAssistant(entity);
+    Assert.assertFalse(assist.awaitLogin(200, TimeUnit.MILLISECONDS));
+    Assert.assertTrue(callback.loginFailures.get() > 0);
+    Assert.assertTrue(callback.lastLoginFailure instanceof TRANSIENT);
+    bus.setReplicaDown("localhost", 2090, false);
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, bus.loginCount("localhost", 2090));
+    Assert.assertEquals(1, bus.activeLogins());
+  }
+
+  @Test
+  public void standbyPromotionTest() throws Exception {
+    params.standbyLogin = true;
+    assist = createAssistant(entity);
+    assist.registerService(buildComponent("standby"), properties("standby"));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertTrue(waitActiveLogins(2));
+    // a recuperao no depende de um novo login por senha
+    bus.failNext("loginByPassword", new TRANSIENT(0,
+      CompletionStatus.COMPLETED_NO), 1000);
+    bus.expireLogin(bus.context().getDefaultConnection().login().id);
+    try {
+      assist.findServices(properties("standby"), 0);
+    }
+    catch (Exception e) {
+      // a chamada que detecta a perda do login pode falhar
+    }
+    Assert.assertTrue(assist.awaitLogin(0, TimeUnit.MILLISECONDS));
+    Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, assist.findServices(properties("standby"), 0)
+      .length);
+    Assert.assertEquals(1, assist.metrics().getStandbyPromotions());
+    Assert.assertEquals(1, assist.metrics().getInvalidLogins());
+    Assert.assertEquals(0, callback.loginFailures.get());
+    // uma nova conexo reserva  criada em segundo plano
+    Assert.assertTrue(waitActiveLogins(2));
+    Assert.assertEquals(3, bus.loginCount());
+  }
+
+  @Test
+  public void lostStandbyIsRebuiltTest() throws Exception {
+    params.standbyLogin = true;
+    assist = createAssistant(entity);
+    Assert.assertTrue(waitActiveLogins(2));
+    // todos os logins se perdem, inclusive o da conexo reserva
+    bus.expireLogins();
+    for (int i = 0; i < 2; i++) {
+      // a perda do login da conexo reserva promovida  detectada no uso
+      try {
+        assist.findServices(properties("standby"), 0);
+      }
+      catch (Exception e) {
+        // a chamada que detecta a perda do login pode falhar
+      }
+    }
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    Assert.assertEquals(1, assist.metrics().getStandbyPromotions());
+    Assert.assertEquals(2, assist.metrics().getInvalidLogins());
+    Assert.assertTrue(waitActiveLogins(2));
+    Assert.assertEquals(4, bus.loginCount());
+  }
+
+  @Test
+  public void sharedORBTest() throws Exception {
+    params.sharedORB = true;
+    assist = createAssistant("fake-a");
+    Assistant other = createAssistant("fake-b");
+    try {
+      // as conexes so selecionadas por thread, e no pela conexo padro
+      Assert.assertNull(bus.context().getDefaultConnection());
+      Assert.assertNotSame(assist.connection(), other.connection());
+      assist.registerService(buildComponent("shared-a"), properties("shared"));
+      other.registerService(buildComponent("shared-b"), properties("shared"));
+      Assert.assertTrue(assist.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+      Assert.assertTrue(other.awaitAllRegistered(timeout, TimeUnit.SECONDS));
+      List<String> entities = new ArrayList<String>();
+      for (ServiceOfferDesc desc : other.findServices(properties("shared"), 0)) {
+        for (ServiceProperty prop : desc.properties) {
+          if (prop.name.equals(ServiceProperties.ENTITY)) {
+            entities.add(prop.value);
+          }
+        }
+      }
+      Assert.assertTrue(entities.contains("fake-a"));
+      Assert.assertTrue(entities.contains("fake-b"));
+      Assert.assertEquals(2, bus.activeLogins());
+      Assert.assertTrue(bus.context().onCallDispatch() instanceof SharedDispatch);
+    }
+    finally {
+      other.shutdown();
+    }
+    // o outro assistente continua utilizando a sua conexo
+    Assert.assertTrue(waitOffers(1));
+    Assert.assertEquals(1, assist.findServices(properties("shared"), 0).length);
+    Assert.assertNull(bus.context().getCurrentConnection());
+  }
+
+  @Test
+  public void sharedORBDispatchTest() throws Exception {
+    params.sharedORB = true;
+    assist = createAssistant("fake-a");
+    Assistant other = createAssistant("fake-b");
+    try {
+      POA poa =
+        POAHelper.narrow(bus.orb().resolve_initial_references("RootPOA"));
+      IComponent facetA = buildComponent("facet-a");
+      IComponent facetB = buildComponent("facet-b");
+      IComponent componentA = buildMetaComponent("dispatch-a", facetA);
+      OfferRegistration registration =
+        assist.registerService(componentA, properties("dispatch"));
+      other.registerService(buildMetaComponent("dispatch-b", facetB),
+        properties("dispatch"));
+      SharedDispatch dispatch = (SharedDispatch) bus.context().onCallDispatch();
+      // as chamadas s facetas so atendidas pela conexo de quem as ofertou
+      Assert.assertSame(assist.connection(), dispatch.dispatch(bus.context(),
+        "bus", "caller", poa.reference_to_id(facetA), "op"));
+      Assert.assertSame(assist.connection(), dispatch.dispatch(bus.context(),
+        "bus", "caller", poa.reference_to_id(componentA), "op"));
+      Assert.assertSame(other.connection(), dispatch.dispatch(bus.context(),
+        "bus", "caller", poa.reference_to_id(facetB), "op"));
+      assist.unregisterService(registration);
+      Assert.assertNotSame(assist.connection(), dispatch.dispatch(bus
+        .context(), "bus", "caller", poa.reference_to_id(facetA), "op"));
+    }
+    finally {
+      other.shutdown();
+    }
+  }
+
+  @Test
+  public void unsharedORBInUseTest() throws Exception {
+    assist = createAssistant(entity);
+    try {
+      createAssistant(entity);
+      Assert.fail();
+    }
+    catch (IllegalArgumentException e) {
+      // esperado
+    }
+    params.sharedORB = true;
+    Assistant other = createAssistant(entity);
+    other.shutdown();
+  }
+
+  @Test
+  public void replicaListTest() throws Exception {
+    try {
+      new AssistantParams(new ArrayList<BusEndpoint>());
+      Assert.fail();
+    }
+    catch (IllegalArgumentException e) {
+      // esperado
+    }
+    List<BusEndpoint> endpoints = new ArrayList<BusEndpoint>();
+    endpoints.add(null);
+    try {
+      new AssistantParams(endpoints);
+      Assert.fail();
+    }
+    catch (IllegalArgumentException e) {
+      // esperado
+    }
+    useReplicas();
+    params.failoverThreshold = 0;
+    try {
+      createAssistant(entity);
+      Assert.fail();
+    }
+    catch (IllegalArgumentException e) {
+      // esperado
+    }
+  }
+
+  /**
+   * Perde o login enquanto a nica thread do pool est ocupada, verificando
+   * que o login  refeito apesar da poltica de recusa definida.
+   * 
+   * @param policy a poltica de recusa das chamadas assncronas.
+   * @return o resultado de uma chamada assncrona recusada pelo pool.
+   */
+  private Future<ServiceOfferDesc[]> loseLoginWithBusyPool(
+    RejectedExecutionHandler policy) throws Exception {
+    params.interval = 1.0f;
+    params.asyncThreads = 1;
+    params.asyncQueueSize = 0;
+    params.rejectionPolicy = policy;
+    assist = createAssistant(entity);
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    // aguarda a nica thread ser liberada pela tarefa de login
+    Thread.sleep(200);
+    bus.setLatency(1000, TimeUnit.MILLISECONDS);
+    Future<ServiceOfferDesc[]> busy = assist.getAllServicesAsync(0);
+    // aguarda a chamada ocupar a thread antes de perder o login
+    Thread.sleep(200);
+    Assert.assertFalse(busy.isDone());
+    // a recuperao do login  recusada pelo pool ocupado
+    bus.invalidateLogins();
+    Future<ServiceOfferDesc[]> rejected = assist.getAllServicesAsync(0);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (bus.loginCount() < 2 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(2, bus.loginCount());
+    Assert.assertTrue(assist.awaitLogin(timeout, TimeUnit.SECONDS));
+    return rejected;
+  }
+
+  private Assistant createAssistant(String name) {
+    return Assistant.createWithPassword(params, name, name.getBytes(), name);
+  }
+
+  private void useReplicas() {
+    List<BusEndpoint> endpoints = new ArrayList<BusEndpoint>();
+    endpoints.add(new BusEndpoint("localhost", 2089));
+    endpoints.add(new BusEndpoint("localhost", 2090));
+    params = new AssistantParams(endpoints);
+    params.orb = bus.orb();
+    params.retryPolicy = RetryPolicy.fixed(10);
+    params.callback = callback;
+  }
+
+  private IComponent buildComponent(String name) throws Exception {
+    POA poa =
+      POAHelper.narrow(bus.orb().resolve_initial_references("RootPOA"));
+    ComponentId id =
+      new ComponentId(name, (byte) 1, (byte) 0, (byte) 0, "java");
+    return new ComponentContext(bus.orb(), poa, id).getIComponent();
+  }
+
+  private IComponent buildFacetedComponent(String name) throws Exception {
+    return buildFacetedComponent(name, null, null);
+  }
+
+  private IComponent buildFacetedComponent(String name,
+    final CountDownLatch entered, final CountDownLatch release)
+    throws Exception {
+    POA poa =
+      POAHelper.narrow(bus.orb().resolve_initial_references("RootPOA"));
+    poa.the_POAManager().activate();
+    final ComponentId id =
+      new ComponentId(name, (byte) 1, (byte) 0, (byte) 0, "java");
+    IComponentPOA servant = new IComponentPOA() {
+      @Override
+      public org.omg.CORBA.Object getFacet(String facet_interface) {
+        if (entered != null) {
+          // bloqueia a obteno at a liberao pelo teste
+          entered.countDown();
+          try {
+            release.await();
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return facet_interface.equals(IComponentHelper.id()) ? _this_object()
+          : null;
+      }
+
+      @Override
+      public org.omg.CORBA.Object getFacetByName(String facet) {
+        return null;
+      }
+
+      @Override
+      public void startup() {
+      }
+
+      @Override
+      public void shutdown() {
+      }
+
+      @Override
+      public ComponentId getComponentId() {
+        return id;
+      }
+    };
+    return IComponentHelper.narrow(poa.servant_to_reference(servant));
+  }
+
+  private IComponent buildMetaComponent(String name,
+    final org.omg.CORBA.Object facet) throws Exception {
+    POA poa =
+      POAHelper.narrow(bus.orb().resolve_initial_references("RootPOA"));
+    poa.the_POAManager().activate();
+    final ComponentId id =
+      new ComponentId(name, (byte) 1, (byte) 0, (byte) 0, "java");
+    final org.omg.CORBA.Object meta =
+      poa.servant_to_reference(new IMetaInterfacePOA() {
+        @Override
+        public FacetDescription[] getFacets() {
+          return new FacetDescription[] { new FacetDescription("Facet",
+            IComponentHelper.id(), facet) };
+        }
+      });
+    IComponentPOA component = new IComponentPOA() {
+      @Override
+      public org.omg.CORBA.Object getFacet(String facet_interface) {
+        return null;
+      }
+
+      @Override
+      public org.omg.CORBA.Object getFacetByName(String name) {
+        return name.equals("IMetaInterface") ? meta : null;
+      }
+
+      @Override
+      public void startup() {
+      }
+
+      @Override
+      public void shutdown() {
+      }
+
+      @Override
+      public ComponentId getComponentId() {
+        return id;
+      }
+    };
+    return IComponentHelper.narrow(poa.servant_to_reference(component));
+  }
+
+  private ServiceProperty[] properties(String domain) {
+    return new ServiceProperty[] { new ServiceProperty("offer.domain", domain) };
+  }
+
+  private String offerId(ServiceOfferDesc desc) {
+    for (ServiceProperty prop : desc.properties) {
+      if (prop.name.equals(ServiceProperties.ID)) {
+        return prop.value;
+      }
+    }
+    return null;
+  }
+
+  private boolean waitOffers(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (bus.offerCount() != count) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  private boolean waitActiveLogins(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (bus.activeLogins() != count) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  private boolean waitLogin(long count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+    while (bus.loginCount() < count) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  private static class CountingCallback implements OnFailureCallback {
+
+    final AtomicInteger loginFailures = new AtomicInteger(0);
+    final AtomicInteger registerFailures = new AtomicInteger(0);
+    final AtomicInteger findFailures = new AtomicInteger(0);
+    volatile Exception lastLoginFailure;
+
+    @Override
+    public void onLoginFailure(Assistant assistant, Exception except) {
+      lastLoginFailure = except;
+      loginFailures.incrementAndGet();
+    }
+
+    @Override
+    public void onRegisterFailure(Assistant assistant, IComponent component,
+      ServiceProperty[] properties, Exception except) {
+      registerFailures.incrementAndGet();
+    }
+
+    @Override
+    public void onFindFailure(Assistant assistant, Exception except) {
+      findFailures.incrementAndGet();
+    }
+
+    @Override
+    public void onStartSharedAuthFailure(Assistant assistant, Exception except) {
+      // do nothing
+    }
+  }
+}
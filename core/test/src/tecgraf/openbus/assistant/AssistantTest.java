@@ -3,7 +3,10 @@ package tecgraf.openbus.assistant;
 import java.security.interfaces.RSAPrivateKey;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Assert;
@@ -314,6 +317,71 @@ public class AssistantTest {
     }
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void cacheTTLIsLowerTest() throws IllegalArgumentException {
+    AssistantParams params = new AssistantParams(host, port);
+    params.cacheTTL = 0.0f;
+    Assistant assist =
+      Assistant.createWithPassword(params, entity, password, domain);
+    assist.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cacheMaxSizeIsLowerTest() throws IllegalArgumentException {
+    AssistantParams params = new AssistantParams(host, port);
+    params.cacheTTL = 1.0f;
+    params.cacheMaxSize = 0;
+    Assistant assist =
+      Assistant.createWithPassword(params, entity, password, domain);
+    assist.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void registerConcurrencyIsLowerTest() throws IllegalArgumentException {
+    AssistantParams params = new AssistantParams(host, port);
+    params.registerConcurrency = 0;
+    Assistant assist =
+      Assistant.createWithPassword(params, entity, password, domain);
+    assist.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void registerRateIsNaNTest() throws IllegalArgumentException {
+    AssistantParams params = new AssistantParams(host, port);
+    params.registerRate = Float.NaN;
+    Assistant assist =
+      Assistant.createWithPassword(params, entity, password, domain);
+    assist.shutdown();
+  }
+
+  @Test
+  public void registerAndFindWithCacheTest() throws Throwable {
+    AssistantParams params = new AssistantParams(host, port);
+    params.interval = 1.0f;
+    params.cacheTTL = 60.0f;
+    Assistant assist =
+      Assistant.createWithPrivateKey(params, system, systemKey);
+    ServiceProperty[] search =
+      new ServiceProperty[] {
+          new ServiceProperty("offer.domain", "Assistant Test"),
+          new ServiceProperty("loop.index", "0") };
+    ServiceOfferDesc[] found = assist.findServices(search, 3);
+    Assert.assertEquals(0, found.length);
+    ComponentContext context = buildComponent(assist.orb());
+    assist.registerService(context.getIComponent(), search);
+    Assert.assertTrue(assist.awaitAllRegistered(10, TimeUnit.SECONDS));
+    // resultado anterior ainda est no cache, independente da ordem
+    ServiceProperty[] reversed = new ServiceProperty[] { search[1], search[0] };
+    found = assist.findServices(reversed, 3);
+    Assert.assertEquals(0, found.length);
+    found = assist.findServices(reversed, 3, false);
+    Assert.assertEquals(1, found.length);
+    // busca sem cache atualiza o cache
+    found = assist.findServices(search, 3);
+    Assert.assertEquals(1, found.length);
+    assist.shutdown();
+  }
+
   @Test
   public void registerAndFindTest() throws Throwable {
     AssistantParams params = new AssistantParams(host, port);
@@ -330,7 +398,7 @@ public class AssistantTest {
             new ServiceProperty("loop.index", Integer.toString(index)) };
       assist.registerService(context.getIComponent(), props);
     }
-    Thread.sleep((int) (params.interval * 5 * 1000));
+    Assert.assertTrue(assist.awaitAllRegistered(10, TimeUnit.SECONDS));
     ServiceProperty[] search =
       new ServiceProperty[] { new ServiceProperty("offer.domain",
         "Assistant Test") };
@@ -343,6 +411,97 @@ public class AssistantTest {
     assist.shutdown();
   }
 
+  @Test
+  public void registerAndSubscribeTest() throws Throwable {
+    AssistantParams params = new AssistantParams(host, port);
+    params.interval = 1.0f;
+    Assistant assist =
+      Assistant.createWithPrivateKey(params, system, systemKey);
+    ORB orb = assist.orb();
+    ServiceProperty[] search =
+      new ServiceProperty[] { new ServiceProperty("offer.domain",
+        "Assistant Subscription Test") };
+    ServiceOfferView view = assist.subscribeServices(search);
+    Thread.sleep((int) (params.interval * 3 * 1000));
+    Assert.assertEquals(0, view.offers().length);
+    int index;
+    for (index = 0; index < 3; index++) {
+      ComponentContext context = buildComponent(orb);
+      ServiceProperty[] props =
+        new ServiceProperty[] {
+            new ServiceProperty("offer.domain", "Assistant Subscription Test"),
+            new ServiceProperty("loop.index", Integer.toString(index)) };
+      assist.registerService(context.getIComponent(), props);
+    }
+    Thread.sleep((int) (params.interval * 5 * 1000));
+    Assert.assertEquals(index, view.offers().length);
+    view.cancel();
+    Assert.assertTrue(view.isCanceled());
+    assist.shutdown();
+  }
+
+  @Test
+  public void registerAndFindAsyncTest() throws Throwable {
+    AssistantParams params = new AssistantParams(host, port);
+    params.interval = 1.0f;
+    Assistant assist =
+      Assistant.createWithPrivateKey(params, system, systemKey);
+    ComponentContext context = buildComponent(assist.orb());
+    ServiceProperty[] props =
+      new ServiceProperty[] {
+          new ServiceProperty("offer.domain", "Assistant Async Test"),
+          new ServiceProperty("loop.index", "0") };
+    assist.registerService(context.getIComponent(), props);
+    Assert.assertTrue(assist.awaitAllRegistered(10, TimeUnit.SECONDS));
+    Future<ServiceOfferDesc[]> found = assist.findServicesAsync(props, 3);
+    Assert.assertEquals(1, found.get(10, TimeUnit.SECONDS).length);
+    Future<ServiceOfferDesc[]> all = assist.getAllServicesAsync(3);
+    Assert.assertTrue(all.get(10, TimeUnit.SECONDS).length >= 1);
+    assist.shutdown();
+  }
+
+  @Test
+  public void findAsyncTimeoutAndCancelTest() throws Throwable {
+    AssistantParams params = new AssistantParams(host, port);
+    params.interval = 1.0f;
+    Assistant assist =
+      Assistant.createWithPassword(params, "invalid-1", new byte[] {}, domain);
+    ServiceProperty[] search =
+      new ServiceProperty[] { new ServiceProperty("offer.domain",
+        "Assistant Async Test") };
+    // sem login a busca com tentativas ilimitadas nunca termina
+    Future<ServiceOfferDesc[]> found = assist.findServicesAsync(search, -1);
+    try {
+      found.get(2, TimeUnit.SECONDS);
+      Assert.fail("A busca no deveria terminar sem login.");
+    }
+    catch (TimeoutException e) {
+      // do nothing
+    }
+    Assert.assertTrue(found.cancel(true));
+    Assert.assertTrue(found.isCancelled());
+    assist.shutdown();
+  }
+
+  @Test
+  public void findWithTimeoutTest() throws Throwable {
+    AssistantParams params = new AssistantParams(host, port);
+    params.interval = 1.0f;
+    Assistant assist =
+      Assistant.createWithPassword(params, "invalid-1", new byte[] {}, domain);
+    ServiceProperty[] search =
+      new ServiceProperty[] { new ServiceProperty("offer.domain",
+        "Assistant Timeout Test") };
+    // sem login as tentativas se repetem at o tempo mximo
+    long start = System.nanoTime();
+    ServiceOfferDesc[] found = assist.findServices(search, 2, TimeUnit.SECONDS);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assert.assertEquals(0, found.length);
+    Assert.assertTrue(elapsed >= 2000);
+    Assert.assertTrue(elapsed < 3000);
+    assist.shutdown();
+  }
+
   @Test
   public void registerAndGetAllTest() throws Throwable {
     AssistantParams params = new AssistantParams(host, port);
@@ -359,7 +518,7 @@ public class AssistantTest {
             new ServiceProperty("loop.index", Integer.toString(index)) };
       assist.registerService(context.getIComponent(), props);
     }
-    Thread.sleep((int) (params.interval * 5 * 1000));
+    Assert.assertTrue(assist.awaitAllRegistered(10, TimeUnit.SECONDS));
     ServiceOfferDesc[] found = assist.getAllServices(3);
     Assert.assertTrue(found.length >= index);
     assist.shutdown();
@@ -0,0 +1,62 @@
+package tecgraf.openbus.assistant;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void emptyTest() {
+    LatencySnapshot snapshot = new LatencyHistogram().snapshot();
+    Assert.assertEquals(0, snapshot.getCount());
+    Assert.assertEquals(0, snapshot.getMax());
+    Assert.assertEquals(0, snapshot.getP99());
+  }
+
+  @Test
+  public void exactSmallValuesTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    LatencySnapshot snapshot = histogram.snapshot();
+    Assert.assertEquals(10, snapshot.getCount());
+    Assert.assertEquals(5.5, snapshot.getMean(), 0.001);
+    Assert.assertEquals(5, snapshot.getP50());
+    Assert.assertEquals(9, snapshot.getP90());
+    Assert.assertEquals(10, snapshot.getMax());
+  }
+
+  @Test
+  public void relativeErrorTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100000; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    LatencySnapshot snapshot = histogram.snapshot();
+    Assert.assertEquals(100000, snapshot.getCount());
+    Assert.assertEquals(100000, snapshot.getMax());
+    assertClose(50000, snapshot.getP50());
+    assertClose(90000, snapshot.getP90());
+    assertClose(99000, snapshot.getP99());
+    assertClose(99900, snapshot.getP999());
+  }
+
+  @Test
+  public void largeValuesTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(TimeUnit.DAYS.toNanos(1000));
+    histogram.record(-1);
+    LatencySnapshot snapshot = histogram.snapshot();
+    Assert.assertEquals(2, snapshot.getCount());
+    Assert.assertEquals(0, snapshot.getP50());
+    Assert.assertTrue(snapshot.getMax() > TimeUnit.DAYS.toMicros(20));
+  }
+
+  private static void assertClose(long expected, long actual) {
+    Assert.assertTrue(actual + " != " + expected,
+      Math.abs(actual - expected) <= expected / 16);
+  }
+}
@@ -0,0 +1,80 @@
+package tecgraf.openbus.assistant;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+public class OfferCacheTest {
+
+  private static ServiceProperty[] props(String... pairs) {
+    ServiceProperty[] props = new ServiceProperty[pairs.length / 2];
+    for (int i = 0; i < props.length; i++) {
+      props[i] = new ServiceProperty(pairs[2 * i], pairs[2 * i + 1]);
+    }
+    return props;
+  }
+
+  private static ServiceOfferDesc[] offers(int count) {
+    ServiceOfferDesc[] offers = new ServiceOfferDesc[count];
+    for (int i = 0; i < count; i++) {
+      offers[i] =
+        new ServiceOfferDesc(null, props("loop.index", Integer.toString(i)),
+          null);
+    }
+    return offers;
+  }
+
+  @Test
+  public void orderInsensitiveKeyTest() {
+    OfferCache cache = new OfferCache(60000, 10);
+    ServiceOfferDesc[] found = offers(2);
+    cache.put(props("a", "1", "b", "2"), found, cache.generation());
+    ServiceOfferDesc[] cached = cache.get(props("b", "2", "a", "1"));
+    Assert.assertNotNull(cached);
+    Assert.assertEquals(2, cached.length);
+    Assert.assertNotSame(found, cached);
+    Assert.assertSame(found[0], cached[0]);
+    Assert.assertNull(cache.get(props("a", "1")));
+    Assert.assertNull(cache.get(props("a", "2", "b", "1")));
+  }
+
+  @Test
+  public void expirationTest() throws InterruptedException {
+    OfferCache cache = new OfferCache(50, 10);
+    cache.put(props("a", "1"), offers(1), cache.generation());
+    Assert.assertNotNull(cache.get(props("a", "1")));
+    Thread.sleep(100);
+    Assert.assertNull(cache.get(props("a", "1")));
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void maxSizeTest() {
+    OfferCache cache = new OfferCache(60000, 2);
+    cache.put(props("a", "1"), offers(1), cache.generation());
+    cache.put(props("a", "2"), offers(1), cache.generation());
+    // torna a primeira entrada a mais recentemente utilizada
+    Assert.assertNotNull(cache.get(props("a", "1")));
+    cache.put(props("a", "3"), offers(1), cache.generation());
+    Assert.assertEquals(2, cache.size());
+    Assert.assertNotNull(cache.get(props("a", "1")));
+    Assert.assertNull(cache.get(props("a", "2")));
+    Assert.assertNotNull(cache.get(props("a", "3")));
+  }
+
+  @Test
+  public void clearTest() {
+    OfferCache cache = new OfferCache(60000, 10);
+    long generation = cache.generation();
+    cache.put(props("a", "1"), offers(1), generation);
+    cache.clear();
+    Assert.assertNull(cache.get(props("a", "1")));
+    // resultados obtidos antes da invalidao so descartados
+    cache.put(props("a", "1"), offers(1), generation);
+    Assert.assertNull(cache.get(props("a", "1")));
+    cache.put(props("a", "1"), offers(1), cache.generation());
+    Assert.assertNotNull(cache.get(props("a", "1")));
+  }
+}
@@ -0,0 +1,113 @@
+package tecgraf.openbus.assistant;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+public class OfferIndexTest {
+
+  private static final String[] languages = { "English", "Spanish",
+      "Portuguese" };
+  private static final String[] periods = { "Morning", "Afternoon", "Night" };
+
+  private static ServiceProperty[] props(String... pairs) {
+    ServiceProperty[] props = new ServiceProperty[pairs.length / 2];
+    for (int i = 0; i < props.length; i++) {
+      props[i] = new ServiceProperty(pairs[2 * i], pairs[2 * i + 1]);
+    }
+    return props;
+  }
+
+  private static ServiceOfferDesc[] offers() {
+    ServiceOfferDesc[] offers =
+      new ServiceOfferDesc[languages.length * periods.length];
+    int i = 0;
+    for (String language : languages) {
+      for (String period : periods) {
+        offers[i] =
+          new ServiceOfferDesc(null, props("offer.domain", "Demo Greetings",
+            "greetings.language", language, "greetings.period", period,
+            "loop.index", Integer.toString(i)), null);
+        i++;
+      }
+    }
+    return offers;
+  }
+
+  private static boolean matches(ServiceOfferDesc desc,
+    ServiceProperty[] properties) {
+    for (ServiceProperty wanted : properties) {
+      boolean found = false;
+      for (ServiceProperty prop : desc.properties) {
+        if (prop.name.equals(wanted.name) && prop.value.equals(wanted.value)) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  public void conjunctiveFindTest() {
+    ServiceOfferDesc[] offers = offers();
+    OfferIndex index = new OfferIndex(offers);
+    Assert.assertEquals(offers.length, index.size());
+    for (String language : languages) {
+      for (String period : periods) {
+        ServiceProperty[] search =
+          props("greetings.period", period, "offer.domain", "Demo Greetings",
+            "greetings.language", language);
+        ServiceOfferDesc[] found = index.find(search);
+        Assert.assertEquals(1, found.length);
+        Assert.assertTrue(matches(found[0], search));
+      }
+      ServiceOfferDesc[] found =
+        index.find(props("greetings.language", language));
+      Assert.assertEquals(periods.length, found.length);
+    }
+  }
+
+  @Test
+  public void findKeepsOrderTest() {
+    ServiceOfferDesc[] offers = offers();
+    OfferIndex index = new OfferIndex(offers);
+    ServiceOfferDesc[] found =
+      index.find(props("offer.domain", "Demo Greetings", "greetings.period",
+        "Night"));
+    Assert.assertEquals(languages.length, found.length);
+    for (int i = 0; i < found.length; i++) {
+      Assert.assertSame(offers[i * periods.length + 2], found[i]);
+    }
+    Assert.assertArrayEquals(offers, index.find(new ServiceProperty[0]));
+  }
+
+  @Test
+  public void noMatchTest() {
+    OfferIndex index = new OfferIndex(offers());
+    Assert.assertEquals(0,
+      index.find(props("greetings.language", "German")).length);
+    Assert.assertEquals(0, index.find(props("unknown", "x")).length);
+    Assert.assertEquals(0, index.find(
+      props("greetings.language", "English", "greetings.language", "Spanish"))
+      .length);
+    Assert.assertEquals(0, new OfferIndex(new ServiceOfferDesc[0]).find(
+      props("offer.domain", "Demo Greetings")).length);
+  }
+
+  @Test
+  public void repeatedPropertyTest() {
+    ServiceOfferDesc[] offers =
+      new ServiceOfferDesc[] { new ServiceOfferDesc(null, props("a", "1", "a",
+        "1", "b", "2"), null) };
+    OfferIndex index = new OfferIndex(offers);
+    Assert.assertEquals(1, index.find(props("a", "1")).length);
+    Assert.assertEquals(1,
+      index.find(props("a", "1", "a", "1", "b", "2")).length);
+  }
+}
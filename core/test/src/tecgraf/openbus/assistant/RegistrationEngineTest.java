@@ -0,0 +1,300 @@
+package tecgraf.openbus.assistant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegistrationEngineTest {
+
+  private static class CountingTask extends RegistrationEngine.Task {
+    final AtomicInteger running;
+    final AtomicInteger maxRunning;
+    final CountDownLatch done;
+    final AtomicInteger failures;
+
+    CountingTask(AtomicInteger running, AtomicInteger maxRunning,
+      CountDownLatch done, int failures) {
+      this.running = running;
+      this.maxRunning = maxRunning;
+      this.done = done;
+      this.failures = new AtomicInteger(failures);
+    }
+
+    @Override
+    boolean process() {
+      int now = running.incrementAndGet();
+      int max;
+      do {
+        max = maxRunning.get();
+      } while (now > max && !maxRunning.compareAndSet(max, now));
+      try {
+        Thread.sleep(1);
+      }
+      catch (InterruptedException e) {
+        // do nothing
+      }
+      running.decrementAndGet();
+      if (failures.getAndDecrement() > 0) {
+        return true;
+      }
+      done.countDown();
+      return false;
+    }
+  }
+
+  @Test
+  public void boundedWorkersTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 2, RetryPolicy.fixed(10));
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(200);
+    for (int i = 0; i < 200; i++) {
+      engine.schedule(new CountingTask(running, maxRunning, done, 0));
+    }
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(maxRunning.get() <= 2);
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void retryTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 1, RetryPolicy.fixed(10));
+    CountDownLatch done = new CountDownLatch(1);
+    CountingTask task =
+      new CountingTask(new AtomicInteger(), new AtomicInteger(), done, 3);
+    engine.schedule(task);
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(-1, task.failures.get());
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void canceledTaskTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 1, RetryPolicy.fixed(10));
+    CountDownLatch done = new CountDownLatch(1);
+    CountingTask task =
+      new CountingTask(new AtomicInteger(), new AtomicInteger(), done, 0);
+    task.canceled = true;
+    engine.schedule(task);
+    Assert.assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void priorityTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 1, RetryPolicy.fixed(10));
+    final List<Integer> order =
+      Collections.synchronizedList(new ArrayList<Integer>());
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(6);
+    // ocupa o nico trabalhador enquanto as demais tarefas so enfileiradas
+    engine.schedule(new RegistrationEngine.Task() {
+      @Override
+      boolean process() {
+        started.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          // do nothing
+        }
+        return false;
+      }
+    });
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+    int[] priorities = new int[] { 0, 5, 1, 5, -1, 0 };
+    for (int i = 0; i < priorities.length; i++) {
+      final int id = i;
+      RegistrationEngine.Task task = new RegistrationEngine.Task() {
+        @Override
+        boolean process() {
+          order.add(id);
+          done.countDown();
+          return false;
+        }
+      };
+      task.priority = priorities[i];
+      engine.schedule(task);
+    }
+    release.countDown();
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(Arrays.asList(1, 3, 2, 0, 5, 4), order);
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void rescheduleWhileRunningTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 2, RetryPolicy.fixed(10));
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final AtomicInteger runs = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(2);
+    RegistrationEngine.Task task = new RegistrationEngine.Task() {
+      @Override
+      boolean process() {
+        int now = concurrent.incrementAndGet();
+        if (now > maxRunning.get()) {
+          maxRunning.set(now);
+        }
+        if (runs.incrementAndGet() == 1) {
+          started.countDown();
+          try {
+            release.await();
+          }
+          catch (InterruptedException e) {
+            // do nothing
+          }
+        }
+        concurrent.decrementAndGet();
+        done.countDown();
+        return false;
+      }
+    };
+    engine.schedule(task);
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+    // marcada novamente durante a execuo, com um trabalhador livre
+    engine.schedule(task);
+    engine.schedule(task);
+    Thread.sleep(100);
+    Assert.assertEquals(1, runs.get());
+    release.countDown();
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    Assert.assertEquals(2, runs.get());
+    Assert.assertEquals(1, maxRunning.get());
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void staleRetryTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 1, RetryPolicy.fixed(200));
+    final AtomicInteger runs = new AtomicInteger();
+    final CountDownLatch failed = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    RegistrationEngine.Task task = new RegistrationEngine.Task() {
+      @Override
+      boolean process() {
+        if (runs.incrementAndGet() == 1) {
+          failed.countDown();
+          return true;
+        }
+        done.countDown();
+        return false;
+      }
+    };
+    engine.schedule(task);
+    Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+    // marcada novamente antes da nova tentativa, e registrada com sucesso
+    Thread.sleep(50);
+    engine.schedule(task);
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    // a tentativa agendada pela falha  descartada
+    Thread.sleep(400);
+    Assert.assertEquals(2, runs.get());
+    Assert.assertNull(task.backoff);
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void rateTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 4, RetryPolicy.fixed(10), 50.0f);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(20);
+    long start = System.nanoTime();
+    for (int i = 0; i < 20; i++) {
+      engine.schedule(new CountingTask(running, maxRunning, done, 0));
+    }
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    long elapsed =
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    // 20 registros a 50 por segundo levam pelo menos 19 * 20ms
+    Assert.assertTrue(elapsed >= 380);
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void scheduleAllTest() throws InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 2, RetryPolicy.fixed(10));
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(100);
+    List<CountingTask> tasks = new ArrayList<CountingTask>();
+    for (int i = 0; i < 100; i++) {
+      tasks.add(new CountingTask(running, maxRunning, done, i % 10 == 0 ? 1
+        : 0));
+    }
+    engine.scheduleAll(tasks);
+    // tarefas j pendentes so ignoradas
+    engine.scheduleAll(tasks);
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(maxRunning.get() <= 2);
+    scheduler.shutdownNow();
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void scheduleAfterShutdownTest() {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 1, RetryPolicy.fixed(10));
+    scheduler.shutdownNow();
+    engine.schedule(new CountingTask(new AtomicInteger(),
+      new AtomicInteger(), new CountDownLatch(1), 0));
+  }
+
+  @Test
+  public void engineShutdownKeepsSchedulerTest() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    RegistrationEngine engine =
+      new RegistrationEngine(scheduler, 1, RetryPolicy.fixed(10));
+    CountingTask task =
+      new CountingTask(new AtomicInteger(), new AtomicInteger(),
+        new CountDownLatch(1), Integer.MAX_VALUE);
+    engine.schedule(task);
+    Thread.sleep(50);
+    engine.shutdown();
+    Thread.sleep(50);
+    int attempts = task.failures.get();
+    Thread.sleep(100);
+    // as novas tentativas so descartadas, mas o escalonador continua ativo
+    Assert.assertEquals(attempts, task.failures.get());
+    Assert.assertFalse(scheduler.isShutdown());
+    try {
+      engine.schedule(task);
+      Assert.fail();
+    }
+    catch (RejectedExecutionException e) {
+      // esperado
+    }
+    scheduler.shutdownNow();
+  }
+}
@@ -0,0 +1,79 @@
+package tecgraf.openbus.assistant;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void fixedTest() {
+    RetryPolicy.Backoff backoff = RetryPolicy.fixed(100).start();
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(100, backoff.next());
+    }
+  }
+
+  @Test
+  public void exponentialTest() {
+    RetryPolicy.Backoff backoff =
+      RetryPolicy.exponential(100, 1000, 2.0).start();
+    Assert.assertEquals(100, backoff.next());
+    Assert.assertEquals(200, backoff.next());
+    Assert.assertEquals(400, backoff.next());
+    Assert.assertEquals(800, backoff.next());
+    Assert.assertEquals(1000, backoff.next());
+    Assert.assertEquals(1000, backoff.next());
+  }
+
+  @Test
+  public void decorrelatedJitterTest() {
+    RetryPolicy.Backoff backoff =
+      RetryPolicy.decorrelatedJitter(100, 2000).start();
+    long previous = 100;
+    for (int i = 0; i < 100; i++) {
+      long delay = backoff.next();
+      Assert.assertTrue(delay >= 100);
+      Assert.assertTrue(delay <= 2000);
+      Assert.assertTrue(delay <= previous * 3);
+      previous = delay;
+    }
+  }
+
+  @Test
+  public void maxElapsedTest() {
+    RetryPolicy policy = RetryPolicy.fixed(100).withMaxElapsed(250);
+    Assert.assertEquals(100, policy.nextDelay(1, 0, 0));
+    Assert.assertEquals(100, policy.nextDelay(2, 100, 150));
+    Assert.assertTrue(policy.nextDelay(3, 100, 200) < 0);
+    Assert.assertEquals(100, policy.unbounded().nextDelay(3, 100, 200));
+  }
+
+  @Test
+  public void persistentTest() {
+    RetryPolicy policy =
+      new RetryPolicy() {
+        @Override
+        public long nextDelay(int attempt, long previous, long elapsed) {
+          return -1;
+        }
+      }.persistent(500);
+    Assert.assertEquals(500, policy.start().next());
+    policy = RetryPolicy.fixed(100).withMaxElapsed(250).persistent(500);
+    Assert.assertEquals(100, policy.nextDelay(3, 100, 200));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fixedIsNotPositiveTest() {
+    RetryPolicy.fixed(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void exponentialMultiplierIsLowerTest() {
+    RetryPolicy.exponential(100, 1000, 0.5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decorrelatedJitterMaxIsLowerTest() {
+    RetryPolicy.decorrelatedJitter(100, 10);
+  }
+}
@@ -0,0 +1,138 @@
+package tecgraf.openbus.assistant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private static class BlockingCall implements Callable<Integer> {
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Exception failure;
+
+    BlockingCall(Exception failure) {
+      this.failure = failure;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+      int count = calls.incrementAndGet();
+      started.countDown();
+      release.await();
+      if (failure != null) {
+        throw failure;
+      }
+      return count;
+    }
+  }
+
+  private static List<Future<Integer>> submit(ExecutorService pool,
+    final SingleFlight<String, Integer> flight, final String key,
+    final BlockingCall call, int count) {
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < count; i++) {
+      results.add(pool.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          return flight.execute(key, call, -1);
+        }
+      }));
+    }
+    return results;
+  }
+
+  private static void awaitShared(SingleFlight<?, ?> flight, long count)
+    throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (flight.shared() < count && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void concurrentCallsShareResultTest() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>();
+    BlockingCall call = new BlockingCall(null);
+    List<Future<Integer>> results = submit(pool, flight, "a", call, 1);
+    Assert.assertTrue(call.started.await(5, TimeUnit.SECONDS));
+    results.addAll(submit(pool, flight, "a", call, 7));
+    awaitShared(flight, 7);
+    call.release.countDown();
+    for (Future<Integer> result : results) {
+      Assert.assertEquals(Integer.valueOf(1), result.get(5, TimeUnit.SECONDS));
+    }
+    Assert.assertEquals(1, call.calls.get());
+    Assert.assertEquals(7, flight.shared());
+    Assert.assertEquals(0, flight.inFlight());
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void sequentialCallsAreNotSharedTest() throws Exception {
+    SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>();
+    BlockingCall call = new BlockingCall(null);
+    call.release.countDown();
+    Assert.assertEquals(Integer.valueOf(1), flight.execute("a", call, -1));
+    Assert.assertEquals(Integer.valueOf(2), flight.execute("a", call, -1));
+    Assert.assertEquals(Integer.valueOf(3), flight.execute("b", call, -1));
+    Assert.assertEquals(0, flight.shared());
+  }
+
+  @Test
+  public void failureIsSharedTest() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>();
+    IllegalStateException failure = new IllegalStateException("falha");
+    BlockingCall call = new BlockingCall(failure);
+    List<Future<Integer>> results = submit(pool, flight, "a", call, 1);
+    Assert.assertTrue(call.started.await(5, TimeUnit.SECONDS));
+    results.addAll(submit(pool, flight, "a", call, 3));
+    awaitShared(flight, 3);
+    call.release.countDown();
+    for (Future<Integer> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        Assert.fail();
+      }
+      catch (ExecutionException e) {
+        Assert.assertSame(failure, e.getCause());
+      }
+    }
+    Assert.assertEquals(1, call.calls.get());
+    Assert.assertEquals(0, flight.inFlight());
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void waitTimeoutTest() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(1);
+    SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>();
+    BlockingCall call = new BlockingCall(null);
+    Future<Integer> first = submit(pool, flight, "a", call, 1).get(0);
+    Assert.assertTrue(call.started.await(5, TimeUnit.SECONDS));
+    try {
+      flight.execute("a", call, TimeUnit.MILLISECONDS.toNanos(50));
+      Assert.fail();
+    }
+    catch (TimeoutException e) {
+      // esperado
+    }
+    call.release.countDown();
+    Assert.assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS));
+    pool.shutdownNow();
+  }
+}
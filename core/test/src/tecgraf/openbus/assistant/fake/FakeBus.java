@@ -0,0 +1,1014 @@
+package tecgraf.openbus.assistant.fake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.omg.CORBA.CompletionStatus;
+import org.omg.CORBA.LocalObject;
+import org.omg.CORBA.NO_IMPLEMENT;
+import org.omg.CORBA.NO_PERMISSION;
+import org.omg.CORBA.ORB;
+import org.omg.CORBA.SystemException;
+import org.omg.CORBA.TRANSIENT;
+import org.omg.PortableInterceptor.ORBInitInfo;
+import org.omg.PortableInterceptor.ORBInitializer;
+import org.omg.PortableInterceptor.ORBInitInfoPackage.InvalidName;
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.POAHelper;
+
+import tecgraf.openbus.CallDispatchCallback;
+import tecgraf.openbus.Connection;
+import tecgraf.openbus.InvalidLoginCallback;
+import tecgraf.openbus.OpenBusContext;
+import tecgraf.openbus.SharedAuthSecret;
+import tecgraf.openbus.assistant.AssistantParams;
+import tecgraf.openbus.core.v2_1.services.access_control.AccessDenied;
+import tecgraf.openbus.core.v2_1.services.access_control.LoginInfo;
+import tecgraf.openbus.core.v2_1.services.access_control.LoginRegistry;
+import tecgraf.openbus.core.v2_1.services.access_control.NoLoginCode;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistry;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryHelper;
+import tecgraf.openbus.exception.AlreadyLoggedIn;
+
+/**
+ * Barramento falso executado no prprio processo, utilizado em testes e
+ * medidas de desempenho do assistente sem um barramento OpenBus real.
+ * <p>
+ * O barramento falso cria um ORB JacORB sem os interceptadores do SDK e
+ * registra nele, como a referncia inicial 'OpenBusContext', um contexto que
+ * cria conexes simuladas, da mesma forma que o 'ORBInitializer' do SDK. O
+ * registro de ofertas  um servant CORBA ativado no RootPOA do mesmo ORB, de
+ * forma que as chamadas feitas pelo assistente percorrem os stubs gerados a
+ * partir da IDL do barramento.
+ * <p>
+ * O login  simulado pelas conexes: qualquer entidade  autenticada, exceto
+ * aquelas recusadas atravs do mtodo {@link #denyEntity(String)}. As
+ * chamadas ao registro de ofertas so feitas com o login da conexo corrente
+ * da thread ou, na sua ausncia, da conexo padro, como no SDK.
+ * <p>
+ * Para testar o comportamento do assistente diante de falhas, o barramento
+ * falso permite:
+ * <ul>
+ * <li>Acrescentar uma latncia a todas as chamadas (veja
+ * {@link #setLatency(long, TimeUnit)}).
+ * <li>Fazer com que as prximas chamadas falhem com uma exceo de sistema,
+ * como TRANSIENT, COMM_FAILURE ou NO_PERMISSION (veja
+ * {@link #failNext(String, SystemException, int)}).
+ * <li>Fazer com que os logins expirem aps um tempo ou imediatamente (veja
+ * {@link #setLoginLease(long, TimeUnit)} e {@link #expireLogins()}). Assim
+ * como no SDK, a perda do login  detectada na prxima chamada feita com o
+ * login expirado, que chama a callback de login invlido da conexo na prpria
+ * thread da chamada e prossegue com o novo login, caso a callback o tenha
+ * refeito.
+ * <li>Tornar inacessvel uma rplica do barramento, de forma que as chamadas
+ * feitas por conexes com essa rplica falhem com TRANSIENT (veja
+ * {@link #setReplicaDown(String, int, boolean)}). Todas as rplicas
+ * compartilham o mesmo registro de ofertas. Tambm  possvel acrescentar
+ * latncia s chamadas de uma rplica (veja
+ * {@link #setReplicaLatency(String, int, long, TimeUnit)}).
+ * </ul>
+ * <p>
+ * O registro de logins simulado responde apenas  consulta da validade dos
+ * logins, que  feita com o login da conexo corrente como as demais
+ * chamadas.
+ * 
+ * @author Tecgraf
+ */
+public class FakeBus {
+
+  /** Identificador do barramento falso */
+  public static final String BUSID = "fake-bus";
+  /** Barramento falso cujo ORB est sendo inicializado pela thread */
+  private static final ThreadLocal<FakeBus> initializing =
+    new ThreadLocal<FakeBus>();
+
+  /** ORB do barramento falso */
+  private final ORB orb;
+  /** POA onde os servants do barramento falso so ativados */
+  private final POA poa;
+  /** Contexto registrado no ORB */
+  private final OpenBusContext context;
+  /** Registro de ofertas */
+  private final FakeOfferRegistry registry;
+  /** Referncia para o registro de ofertas */
+  private final OfferRegistry registryRef;
+  /** Registro de logins */
+  private final LoginRegistry loginRegistry;
+  /** Conexes criadas pelo contexto */
+  private final List<FakeConnection> connections =
+    new ArrayList<FakeConnection>();
+  /** Entidades cujo login  recusado */
+  private final List<String> denied = new ArrayList<String>();
+  /** Gerador de identificadores de login */
+  private final AtomicLong loginSeq = new AtomicLong(0);
+  /** Nmero de logins j estabelecidos */
+  private final AtomicLong logins = new AtomicLong(0);
+  /** Nmero de logins estabelecidos em cada rplica */
+  private final Map<String, AtomicLong> replicaLogins =
+    new HashMap<String, AtomicLong>();
+  /** Rplicas inacessveis */
+  private final Set<String> down = new HashSet<String>();
+  /** Latncia acrescentada s chamadas de cada rplica em nanosegundos */
+  private final Map<String, Long> replicaLatency = new HashMap<String, Long>();
+  /** Executor das notificaes feitas pelo barramento falso */
+  private final ExecutorService notifier = Executors
+    .newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "FakeBus-notifier");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  /** Conexo padro do contexto */
+  private volatile Connection defaultConnection;
+  /** Callback de seleo da conexo das chamadas recebidas */
+  private volatile CallDispatchCallback dispatchCallback;
+  /** Conexo corrente de cada thread */
+  private final ThreadLocal<Connection> currentConnection =
+    new ThreadLocal<Connection>();
+  /** Latncia acrescentada s chamadas em nanosegundos */
+  private volatile long latency = 0;
+  /** Tempo de vida dos logins em nanosegundos, ou 0 caso no expirem */
+  private volatile long lease = 0;
+  /** Falhas a serem lanadas nas prximas chamadas, por operao */
+  private final Map<String, Failure> failures = new HashMap<String, Failure>();
+
+  /**
+   * Cria um barramento falso com um novo ORB.
+   */
+  public FakeBus() {
+    this(new Properties());
+  }
+
+  /**
+   * Cria um barramento falso com um novo ORB.
+   * 
+   * @param props propriedades adicionais do ORB.
+   */
+  public FakeBus(Properties props) {
+    Properties orbProps = new Properties();
+    orbProps.setProperty("org.omg.CORBA.ORBClass", "org.jacorb.orb.ORB");
+    orbProps.setProperty("org.omg.CORBA.ORBSingletonClass",
+      "org.jacorb.orb.ORBSingleton");
+    orbProps.setProperty("org.omg.PortableInterceptor.ORBInitializerClass."
+      + Initializer.class.getName(), "");
+    orbProps.putAll(props);
+    this.context =
+      (OpenBusContext) Proxy.newProxyInstance(FakeBus.class.getClassLoader(),
+        new Class<?>[] { OpenBusContext.class, org.omg.CORBA.Object.class },
+        new ContextHandler());
+    this.loginRegistry =
+      (LoginRegistry) Proxy.newProxyInstance(FakeBus.class.getClassLoader(),
+        new Class<?>[] { LoginRegistry.class }, new LoginRegistryHandler());
+    initializing.set(this);
+    try {
+      this.orb = ORB.init(new String[0], orbProps);
+    }
+    finally {
+      initializing.remove();
+    }
+    try {
+      this.poa = POAHelper.narrow(orb.resolve_initial_references("RootPOA"));
+      poa.the_POAManager().activate();
+      this.registry = new FakeOfferRegistry(this);
+      this.registryRef =
+        OfferRegistryHelper.narrow(poa.servant_to_reference(registry));
+    }
+    catch (Exception e) {
+      throw new IllegalStateException(
+        "No foi possvel iniciar o barramento falso.", e);
+    }
+  }
+
+  /**
+   * Recupera o ORB do barramento falso, que deve ser fornecido ao assistente.
+   * 
+   * @return o ORB.
+   */
+  public ORB orb() {
+    return orb;
+  }
+
+  /**
+   * Recupera o contexto registrado no ORB.
+   * 
+   * @return o contexto.
+   */
+  public OpenBusContext context() {
+    return context;
+  }
+
+  /**
+   * Cria parmetros de assistente que utilizam o barramento falso.
+   * 
+   * @return os parmetros.
+   */
+  public AssistantParams params() {
+    AssistantParams params = new AssistantParams("localhost", 2089);
+    params.orb = orb;
+    return params;
+  }
+
+  /**
+   * Faz com que os logins de uma entidade sejam recusados.
+   * 
+   * @param entity a entidade.
+   */
+  public void denyEntity(String entity) {
+    synchronized (denied) {
+      denied.add(entity);
+    }
+  }
+
+  /**
+   * Define a latncia acrescentada a todas as chamadas ao barramento falso,
+   * inclusive as de login.
+   * 
+   * @param delay a latncia, ou 0 para remov-la.
+   * @param unit unidade da latncia.
+   */
+  public void setLatency(long delay, TimeUnit unit) {
+    this.latency = unit.toNanos(delay);
+  }
+
+  /**
+   * Faz com que as prximas chamadas de uma operao falhem.
+   * 
+   * @param operation nome da operao, como 'registerService', 'findServices'
+   *        ou 'loginByPassword', ou <code>null</code> para qualquer operao.
+   * @param failure a exceo lanada, como {@link org.omg.CORBA.TRANSIENT},
+   *        {@link org.omg.CORBA.COMM_FAILURE} ou {@link NO_PERMISSION}.
+   * @param count nmero de chamadas que devem falhar.
+   */
+  public void failNext(String operation, SystemException failure, int count) {
+    synchronized (failures) {
+      failures.put(operation, new Failure(failure, count));
+    }
+  }
+
+  /**
+   * Define o tempo de vida dos logins feitos a partir de ento.
+   * 
+   * @param time o tempo de vida, ou 0 caso os logins no expirem.
+   * @param unit unidade do tempo de vida.
+   */
+  public void setLoginLease(long time, TimeUnit unit) {
+    this.lease = unit.toNanos(time);
+  }
+
+  /**
+   * Expira imediatamente o login de todas as conexes. A perda do login 
+   * detectada na prxima chamada feita por cada conexo.
+   */
+  public void expireLogins() {
+    synchronized (connections) {
+      for (FakeConnection conn : connections) {
+        conn.expired = true;
+      }
+    }
+  }
+
+  /**
+   * Faz com que um login expire no barramento, da mesma forma que
+   * {@link #expireLogins()}, preservando os demais logins.
+   * 
+   * @param loginId identificador do login.
+   */
+  public void expireLogin(String loginId) {
+    synchronized (connections) {
+      for (FakeConnection conn : connections) {
+        LoginInfo login = conn.login;
+        if (login != null && login.id.equals(loginId)) {
+          conn.expired = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Consulta o nmero de logins feitos no barramento falso.
+   * 
+   * @return o nmero de logins.
+   */
+  public long loginCount() {
+    return logins.get();
+  }
+
+  /**
+   * Consulta o nmero de logins vlidos no momento, considerando todas as
+   * conexes criadas.
+   * 
+   * @return o nmero de logins vlidos.
+   */
+  public int activeLogins() {
+    int count = 0;
+    synchronized (connections) {
+      for (FakeConnection conn : connections) {
+        if (conn.login != null) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Consulta o nmero de logins feitos em uma rplica do barramento falso.
+   * 
+   * @param host host da rplica.
+   * @param port porta da rplica.
+   * @return o nmero de logins.
+   */
+  public long loginCount(String host, int port) {
+    synchronized (replicaLogins) {
+      AtomicLong count = replicaLogins.get(host + ":" + port);
+      return count != null ? count.get() : 0;
+    }
+  }
+
+  /**
+   * Torna uma rplica do barramento inacessvel ou novamente acessvel. As
+   * chamadas feitas por conexes com uma rplica inacessvel, inclusive as de
+   * login, falham com TRANSIENT.
+   * 
+   * @param host host da rplica.
+   * @param port porta da rplica.
+   * @param unreachable <code>true</code> para tornar a rplica inacessvel, e
+   *        <code>false</code> caso contrrio.
+   */
+  public void setReplicaDown(String host, int port, boolean unreachable) {
+    synchronized (down) {
+      if (unreachable) {
+        down.add(host + ":" + port);
+      }
+      else {
+        down.remove(host + ":" + port);
+      }
+    }
+  }
+
+  /**
+   * Define a latncia acrescentada s chamadas feitas por conexes com uma
+   * rplica do barramento falso, inclusive as de login, alm da latncia
+   * definida por {@link #setLatency(long, TimeUnit)}.
+   * 
+   * @param host host da rplica.
+   * @param port porta da rplica.
+   * @param delay a latncia.
+   * @param unit unidade da latncia.
+   */
+  public void setReplicaLatency(String host, int port, long delay,
+    TimeUnit unit) {
+    synchronized (replicaLatency) {
+      replicaLatency.put(host + ":" + port, unit.toNanos(delay));
+    }
+  }
+
+  /**
+   * Consulta o nmero de ofertas registradas.
+   * 
+   * @return o nmero de ofertas.
+   */
+  public int offerCount() {
+    return registry.count();
+  }
+
+  /**
+   * Aguarda at que um nmero mnimo de ofertas esteja registrado.
+   * 
+   * @param count nmero mnimo de ofertas.
+   * @param timeout tempo mximo de espera.
+   * @param unit unidade do tempo mximo.
+   * @return <code>true</code> caso as ofertas tenham sido registradas, e
+   *         <code>false</code> caso o tempo tenha se esgotado.
+   * @throws InterruptedException
+   */
+  public boolean awaitOffers(int count, long timeout, TimeUnit unit)
+    throws InterruptedException {
+    return registry.await(count, unit.toNanos(timeout));
+  }
+
+  /**
+   * Remove todas as ofertas registradas sem invalidar os logins, simulando a
+   * remoo das ofertas pelo administrador do barramento.
+   */
+  public void removeOffers() {
+    registry.clear();
+  }
+
+  /**
+   * Invalida o login de todas as conexes, removendo as ofertas e observadores
+   * registrados por elas. Em seguida a perda do login  notificada atravs da
+   * callback de login invlido de cada conexo, simulando a deteco da perda
+   * do login pelo SDK.
+   */
+  public void invalidateLogins() {
+    List<FakeConnection> conns;
+    synchronized (connections) {
+      conns = new ArrayList<FakeConnection>(connections);
+    }
+    for (FakeConnection conn : conns) {
+      invalidate(conn);
+    }
+  }
+
+  /**
+   * Invalida um login, da mesma forma que {@link #invalidateLogins()},
+   * preservando os demais logins.
+   * 
+   * @param loginId identificador do login.
+   */
+  public void invalidateLogin(String loginId) {
+    List<FakeConnection> conns;
+    synchronized (connections) {
+      conns = new ArrayList<FakeConnection>(connections);
+    }
+    for (FakeConnection conn : conns) {
+      LoginInfo login = conn.login;
+      if (login != null && login.id.equals(loginId)) {
+        invalidate(conn);
+      }
+    }
+  }
+
+  /**
+   * Invalida o login de uma conexo e notifica a perda do login atravs da
+   * sua callback de login invlido.
+   * 
+   * @param conn a conexo.
+   */
+  private void invalidate(final FakeConnection conn) {
+    final LoginInfo lost = conn.invalidate();
+    if (lost != null) {
+      final InvalidLoginCallback callback = conn.callback;
+      if (callback != null) {
+        notify(new Runnable() {
+          @Override
+          public void run() {
+            callback.invalidLogin(conn.proxy, lost);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Finaliza o barramento falso.
+   */
+  public void shutdown() {
+    notifier.shutdownNow();
+    orb.shutdown(false);
+  }
+
+  /**
+   * Recupera o POA onde os servants do barramento falso so ativados.
+   * 
+   * @return o POA.
+   */
+  POA poa() {
+    return poa;
+  }
+
+  /**
+   * Executa uma notificao de forma assncrona, como o barramento faz ao
+   * notificar observadores.
+   * 
+   * @param task a notificao.
+   */
+  void notify(Runnable task) {
+    if (!notifier.isShutdown()) {
+      notifier.execute(task);
+    }
+  }
+
+  /**
+   * Simula a chamada de uma operao do barramento, aplicando a latncia e as
+   * falhas definidas.
+   * 
+   * @param operation nome da operao.
+   */
+  void intercept(String operation) {
+    long delay = latency;
+    if (delay > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(delay);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    SystemException failure = null;
+    synchronized (failures) {
+      Failure next = failures.get(operation);
+      if (next == null) {
+        next = failures.get(null);
+      }
+      if (next != null) {
+        failure = next.exception;
+        if (--next.remaining <= 0) {
+          failures.values().remove(next);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Simula a chamada de uma operao do barramento e recupera o login
+   * utilizado na chamada.
+   * 
+   * @param operation nome da operao.
+   * @return o login da conexo corrente da thread ou da conexo padro.
+   * @throws NO_PERMISSION caso no haja login.
+   */
+  LoginInfo call(String operation) {
+    intercept(operation);
+    Connection conn = currentConnection.get();
+    if (conn == null) {
+      conn = defaultConnection;
+    }
+    LoginInfo login = null;
+    if (conn != null) {
+      FakeConnection fake = (FakeConnection) Proxy.getInvocationHandler(conn);
+      fake.reach();
+      login = fake.validLogin();
+    }
+    if (login == null) {
+      throw new NO_PERMISSION(NoLoginCode.value, CompletionStatus.COMPLETED_NO);
+    }
+    return login;
+  }
+
+  /**
+   * Inicializador do ORB que registra o contexto do barramento falso.
+   * 
+   * @author Tecgraf
+   */
+  public static class Initializer extends LocalObject implements
+    ORBInitializer {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pre_init(ORBInitInfo info) {
+      FakeBus bus = initializing.get();
+      if (bus == null) {
+        return;
+      }
+      try {
+        info.register_initial_reference("OpenBusContext",
+          (org.omg.CORBA.Object) bus.context);
+      }
+      catch (InvalidName e) {
+        throw new IllegalStateException(
+          "No foi possvel registrar o contexto do barramento falso.", e);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void post_init(ORBInitInfo info) {
+      // do nothing
+    }
+  }
+
+  /**
+   * Implementao do contexto registrado no ORB.
+   * 
+   * @author Tecgraf
+   */
+  private class ContextHandler implements InvocationHandler {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      String name = method.getName();
+      if (name.equals("orb")) {
+        return orb;
+      }
+      if (name.equals("connectByAddress") || name.equals("connectByReference")
+        || name.equals("createConnection")) {
+        String address =
+          name.equals("connectByAddress") ? args[0] + ":" + args[1] : name;
+        FakeConnection conn = new FakeConnection(address);
+        synchronized (connections) {
+          connections.add(conn);
+        }
+        return conn.proxy;
+      }
+      if (name.equals("getDefaultConnection")) {
+        return defaultConnection;
+      }
+      if (name.equals("setDefaultConnection")) {
+        Connection previous = defaultConnection;
+        defaultConnection = (Connection) args[0];
+        return previous;
+      }
+      if (name.equals("getCurrentConnection")) {
+        Connection conn = currentConnection.get();
+        return conn != null ? conn : defaultConnection;
+      }
+      if (name.equals("setCurrentConnection")) {
+        Connection previous = currentConnection.get();
+        currentConnection.set((Connection) args[0]);
+        return previous;
+      }
+      if (name.equals("onCallDispatch")) {
+        if (args == null || args.length == 0) {
+          return dispatchCallback;
+        }
+        dispatchCallback = (CallDispatchCallback) args[0];
+        return null;
+      }
+      if (name.equals("getOfferRegistry")) {
+        return registryRef;
+      }
+      if (name.equals("getLoginRegistry")) {
+        return loginRegistry;
+      }
+      return FakeBus.invokeObject(proxy, method, args);
+    }
+  }
+
+  /**
+   * Implementao do registro de logins.
+   * 
+   * @author Tecgraf
+   */
+  private class LoginRegistryHandler implements InvocationHandler {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      String name = method.getName();
+      if (name.equals("getLoginValidity")) {
+        call(name);
+        synchronized (connections) {
+          for (FakeConnection conn : connections) {
+            int validity = conn.validity((String) args[0]);
+            if (validity > 0) {
+              return validity;
+            }
+          }
+        }
+        return 0;
+      }
+      return FakeBus.invokeObject(proxy, method, args);
+    }
+  }
+
+  /**
+   * Conexo simulada com o barramento falso.
+   * 
+   * @author Tecgraf
+   */
+  private class FakeConnection implements InvocationHandler {
+
+    /** Conexo fornecida  aplicao */
+    final Connection proxy;
+    /** Endereo da rplica  qual a conexo se conecta */
+    final String address;
+    /** Login atual */
+    private volatile LoginInfo login;
+    /** Instante de expirao do login em nanosegundos, caso expire */
+    private volatile long expiration;
+    /** Indica se o login atual expira aps o tempo de vida */
+    private volatile boolean expires;
+    /** Indica se o login atual foi expirado */
+    volatile boolean expired;
+    /** Callback de login invlido */
+    volatile InvalidLoginCallback callback;
+
+    /**
+     * Construtor.
+     * 
+     * @param address endereo da rplica  qual a conexo se conecta.
+     */
+    FakeConnection(String address) {
+      this.address = address;
+      this.proxy =
+        (Connection) Proxy.newProxyInstance(FakeBus.class.getClassLoader(),
+          new Class<?>[] { Connection.class }, this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Exception {
+      String name = method.getName();
+      if (name.equals("orb")) {
+        return orb;
+      }
+      if (name.equals("busid")) {
+        return BUSID;
+      }
+      if (name.equals("login")) {
+        return login;
+      }
+      if (name.equals("loginByPassword") || name.equals("loginByCertificate")) {
+        intercept(name);
+        reach();
+        login((String) args[0]);
+        return null;
+      }
+      if (name.equals("startSharedAuth")) {
+        intercept(name);
+        LoginInfo current = validLogin();
+        if (current == null) {
+          throw new NO_PERMISSION(NoLoginCode.value,
+            CompletionStatus.COMPLETED_NO);
+        }
+        return new FakeSecret(current.entity).proxy;
+      }
+      if (name.equals("loginBySharedAuth")) {
+        intercept(name);
+        reach();
+        Object secret =
+          args[0] != null && Proxy.isProxyClass(args[0].getClass()) ? Proxy
+            .getInvocationHandler(args[0]) : null;
+        synchronized (this) {
+          if (login != null) {
+            throw new AlreadyLoggedIn();
+          }
+          if (!(secret instanceof FakeSecret)
+            || !((FakeSecret) secret).consume()) {
+            throw new AccessDenied();
+          }
+        }
+        login(((FakeSecret) secret).entity);
+        return null;
+      }
+      if (name.equals("logout")) {
+        intercept(name);
+        reach();
+        return invalidate() != null;
+      }
+      if (name.equals("onInvalidLoginCallback")) {
+        if (args == null || args.length == 0) {
+          return callback;
+        }
+        callback = (InvalidLoginCallback) args[0];
+        return null;
+      }
+      return FakeBus.invokeObject(proxy, method, args);
+    }
+
+    /**
+     * Realiza o login de uma entidade.
+     * 
+     * @param entity a entidade.
+     * @throws AlreadyLoggedIn caso a conexo j possua login.
+     * @throws AccessDenied caso a entidade tenha sido recusada.
+     */
+    private synchronized void login(String entity) throws AlreadyLoggedIn,
+      AccessDenied {
+      if (login != null) {
+        throw new AlreadyLoggedIn();
+      }
+      synchronized (denied) {
+        if (denied.contains(entity)) {
+          throw new AccessDenied();
+        }
+      }
+      long time = lease;
+      expires = time > 0;
+      expiration = System.nanoTime() + time;
+      expired = false;
+      login =
+        new LoginInfo("fake-login-" + loginSeq.incrementAndGet(), entity);
+      logins.incrementAndGet();
+      synchronized (replicaLogins) {
+        AtomicLong count = replicaLogins.get(address);
+        if (count == null) {
+          count = new AtomicLong(0);
+          replicaLogins.put(address, count);
+        }
+        count.incrementAndGet();
+      }
+    }
+
+    /**
+     * Verifica se a rplica da conexo est acessvel, aplicando a latncia
+     * definida para ela.
+     * 
+     * @throws TRANSIENT caso a rplica esteja inacessvel.
+     */
+    void reach() {
+      Long delay;
+      synchronized (replicaLatency) {
+        delay = replicaLatency.get(address);
+      }
+      if (delay != null && delay > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      synchronized (down) {
+        if (down.contains(address)) {
+          throw new TRANSIENT(0, CompletionStatus.COMPLETED_NO);
+        }
+      }
+    }
+
+    /**
+     * Recupera o login atual para uma chamada. Caso o login tenha expirado, ele
+     *  descartado e a callback de login invlido  chamada na prpria thread,
+     * como faz o SDK ao receber a notificao de login invlido do barramento.
+     * 
+     * @return o login atual, ou <code>null</code> caso no haja login.
+     */
+    LoginInfo validLogin() {
+      LoginInfo current = login;
+      if (current != null && hasExpired()) {
+        LoginInfo lost = invalidate();
+        InvalidLoginCallback cb = callback;
+        if (lost != null && cb != null) {
+          cb.invalidLogin(proxy, lost);
+        }
+        current = login;
+      }
+      return current;
+    }
+
+    /**
+     * Consulta a validade de um login da conexo.
+     * 
+     * @param loginId o identificador do login.
+     * @return o tempo restante do login em segundos, ou 0 caso o login no
+     *         seja o login atual vlido da conexo.
+     */
+    synchronized int validity(String loginId) {
+      if (login == null || !login.id.equals(loginId) || hasExpired()) {
+        return 0;
+      }
+      if (!expires) {
+        return Integer.MAX_VALUE;
+      }
+      long remaining = expiration - System.nanoTime();
+      return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining));
+    }
+
+    /**
+     * Verifica se o login atual expirou.
+     * 
+     * @return <code>true</code> caso o login tenha expirado, e
+     *         <code>false</code> caso contrrio.
+     */
+    private boolean hasExpired() {
+      return expired || (expires && System.nanoTime() - expiration >= 0);
+    }
+
+    /**
+     * Descarta o login atual, removendo as ofertas e observadores registrados
+     * com ele.
+     * 
+     * @return o login descartado, ou <code>null</code> caso no houvesse
+     *         login.
+     */
+    LoginInfo invalidate() {
+      LoginInfo lost;
+      synchronized (this) {
+        lost = login;
+        login = null;
+        expires = false;
+        expired = false;
+      }
+      if (lost != null) {
+        registry.removeAll(lost.id);
+      }
+      return lost;
+    }
+  }
+
+  /**
+   * Segredo de autenticao compartilhada simulado.
+   * 
+   * @author Tecgraf
+   */
+  private class FakeSecret implements InvocationHandler {
+
+    /** Segredo fornecido  aplicao */
+    final SharedAuthSecret proxy;
+    /** Entidade autenticada */
+    final String entity;
+    /** Indica se o segredo j foi utilizado ou cancelado */
+    private boolean used = false;
+
+    /**
+     * Construtor.
+     * 
+     * @param entity a entidade autenticada.
+     */
+    FakeSecret(String entity) {
+      this.entity = entity;
+      this.proxy =
+        (SharedAuthSecret) Proxy.newProxyInstance(FakeBus.class
+          .getClassLoader(), new Class<?>[] { SharedAuthSecret.class }, this);
+    }
+
+    /**
+     * Marca o segredo como utilizado.
+     * 
+     * @return <code>true</code> caso o segredo ainda fosse vlido, e
+     *         <code>false</code> caso contrrio.
+     */
+    synchronized boolean consume() {
+      boolean valid = !used;
+      used = true;
+      return valid;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      String name = method.getName();
+      if (name.equals("busid")) {
+        return BUSID;
+      }
+      if (name.equals("cancel")) {
+        consume();
+        return null;
+      }
+      return FakeBus.invokeObject(proxy, method, args);
+    }
+  }
+
+  /**
+   * Falha a ser lanada nas prximas chamadas de uma operao.
+   * 
+   * @author Tecgraf
+   */
+  private static class Failure {
+
+    /** A exceo lanada */
+    final SystemException exception;
+    /** Nmero de chamadas que ainda devem falhar */
+    int remaining;
+
+    /**
+     * Construtor.
+     * 
+     * @param exception a exceo lanada.
+     * @param remaining nmero de chamadas que devem falhar.
+     */
+    Failure(SystemException exception, int remaining) {
+      this.exception = exception;
+      this.remaining = remaining;
+    }
+  }
+
+  /**
+   * Trata as operaes de {@link Object} nos objetos simulados. As demais
+   * operaes no so suportadas pelo barramento falso.
+   * 
+   * @param proxy o objeto simulado.
+   * @param method a operao chamada.
+   * @param args os argumentos da operao.
+   * @return o resultado da operao.
+   */
+  private static Object invokeObject(Object proxy, Method method,
+    Object[] args) {
+    String name = method.getName();
+    if (name.equals("equals")) {
+      return proxy == args[0];
+    }
+    if (name.equals("hashCode")) {
+      return System.identityHashCode(proxy);
+    }
+    if (name.equals("toString")) {
+      return "FakeBus@" + Integer.toHexString(System.identityHashCode(proxy));
+    }
+    throw new NO_IMPLEMENT("Operao no suportada pelo barramento falso: "
+      + name);
+  }
+}
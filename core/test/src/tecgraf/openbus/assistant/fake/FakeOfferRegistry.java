@@ -0,0 +1,644 @@
+package tecgraf.openbus.assistant.fake;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.omg.CORBA.OBJECT_NOT_EXIST;
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.Servant;
+
+import scs.core.ComponentId;
+import scs.core.IComponent;
+import tecgraf.openbus.assistant.ServiceProperties;
+import tecgraf.openbus.core.v2_1.services.ServiceFailure;
+import tecgraf.openbus.core.v2_1.services.access_control.LoginInfo;
+import tecgraf.openbus.core.v2_1.services.offer_registry.InvalidService;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserver;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserverSubscription;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserverSubscriptionHelper;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferObserverSubscriptionPOA;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserver;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserverSubscription;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserverSubscriptionHelper;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryObserverSubscriptionPOA;
+import tecgraf.openbus.core.v2_1.services.offer_registry.OfferRegistryPOA;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOffer;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferDesc;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferHelper;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceOfferPOA;
+import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
+
+/**
+ * Registro de ofertas do barramento falso.
+ * <p>
+ * Mantm as ofertas e os observadores em memria. As propriedades geradas pelo
+ * barramento, como o identificador da oferta e o login de quem a registrou,
+ * so acrescentadas s propriedades fornecidas no registro. As notificaes
+ * aos observadores so feitas de forma assncrona.
+ * 
+ * @author Tecgraf
+ */
+class FakeOfferRegistry extends OfferRegistryPOA {
+
+  /** O barramento falso */
+  private final FakeBus bus;
+  /** Gerador de identificadores de ofertas */
+  private final AtomicLong offerSeq = new AtomicLong(0);
+  /** Ofertas registradas indexadas pelo identificador */
+  private final Map<String, Offer> offers = new LinkedHashMap<String, Offer>();
+  /** Observadores de registro de ofertas */
+  private final List<RegistrySubscription> subscriptions =
+    new ArrayList<RegistrySubscription>();
+
+  /**
+   * Construtor.
+   * 
+   * @param bus o barramento falso.
+   */
+  FakeOfferRegistry(FakeBus bus) {
+    this.bus = bus;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ServiceOffer registerService(IComponent service_ref,
+    ServiceProperty[] properties) throws InvalidService {
+    LoginInfo login = bus.call("registerService");
+    List<ServiceProperty> props = new ArrayList<ServiceProperty>();
+    for (ServiceProperty prop : properties) {
+      props.add(prop);
+    }
+    String id = "fake-offer-" + offerSeq.incrementAndGet();
+    props.add(new ServiceProperty(ServiceProperties.ID, id));
+    props.add(new ServiceProperty(ServiceProperties.LOGIN, login.id));
+    props.add(new ServiceProperty(ServiceProperties.ENTITY, login.entity));
+    props.add(new ServiceProperty(ServiceProperties.TIMESTAMP, Long
+      .toString(System.currentTimeMillis() / 1000)));
+    if (service_ref != null) {
+      ComponentId component;
+      try {
+        component = service_ref.getComponentId();
+      }
+      catch (RuntimeException e) {
+        throw new InvalidService();
+      }
+      props.add(new ServiceProperty(ServiceProperties.COMPONENT_NAME,
+        component.name));
+      props.add(new ServiceProperty(ServiceProperties.MAJOR_VERSION, Integer
+        .toString(component.major_version)));
+      props.add(new ServiceProperty(ServiceProperties.MINOR_VERSION, Integer
+        .toString(component.minor_version)));
+      props.add(new ServiceProperty(ServiceProperties.PATCH_VERSION, Integer
+        .toString(component.patch_version)));
+    }
+    Offer offer =
+      new Offer(id, login.id, service_ref, props
+        .toArray(new ServiceProperty[props.size()]));
+    offer.ref = ServiceOfferHelper.narrow(activate(offer));
+    ServiceOfferDesc desc = offer.describe();
+    List<RegistrySubscription> targets = new ArrayList<RegistrySubscription>();
+    synchronized (this) {
+      offers.put(id, offer);
+      for (RegistrySubscription sub : subscriptions) {
+        if (matches(desc.properties, sub.properties)) {
+          targets.add(sub);
+        }
+      }
+      notifyAll();
+    }
+    for (RegistrySubscription sub : targets) {
+      sub.offerRegistered(desc);
+    }
+    return offer.ref;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ServiceOfferDesc[] findServices(ServiceProperty[] properties) {
+    bus.call("findServices");
+    List<ServiceOfferDesc> found = new ArrayList<ServiceOfferDesc>();
+    synchronized (this) {
+      for (Offer offer : offers.values()) {
+        ServiceOfferDesc desc = offer.describe();
+        if (matches(desc.properties, properties)) {
+          found.add(desc);
+        }
+      }
+    }
+    return found.toArray(new ServiceOfferDesc[found.size()]);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ServiceOfferDesc[] getAllServices() {
+    bus.call("getAllServices");
+    List<ServiceOfferDesc> found = new ArrayList<ServiceOfferDesc>();
+    synchronized (this) {
+      for (Offer offer : offers.values()) {
+        found.add(offer.describe());
+      }
+    }
+    return found.toArray(new ServiceOfferDesc[found.size()]);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public OfferRegistryObserverSubscription subscribeObserver(
+    OfferRegistryObserver observer, ServiceProperty[] properties)
+    throws ServiceFailure {
+    LoginInfo login = bus.call("subscribeObserver");
+    RegistrySubscription sub =
+      new RegistrySubscription(login.id, observer, properties);
+    sub.ref = OfferRegistryObserverSubscriptionHelper.narrow(activate(sub));
+    synchronized (this) {
+      subscriptions.add(sub);
+    }
+    return sub.ref;
+  }
+
+  /**
+   * Consulta o nmero de ofertas registradas.
+   * 
+   * @return o nmero de ofertas.
+   */
+  synchronized int count() {
+    return offers.size();
+  }
+
+  /**
+   * Aguarda at que um nmero mnimo de ofertas esteja registrado.
+   * 
+   * @param count nmero mnimo de ofertas.
+   * @param timeout tempo mximo de espera em nanosegundos.
+   * @return <code>true</code> caso as ofertas tenham sido registradas, e
+   *         <code>false</code> caso o tempo tenha se esgotado.
+   * @throws InterruptedException
+   */
+  synchronized boolean await(int count, long timeout)
+    throws InterruptedException {
+    long deadline = System.nanoTime() + timeout;
+    while (offers.size() < count) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      wait(Math.max(1, remaining / 1000000L));
+    }
+    return true;
+  }
+
+  /**
+   * Remove as ofertas e observadores registrados por um login.
+   * 
+   * @param loginId o identificador do login.
+   */
+  void removeAll(String loginId) {
+    List<Offer> removed = new ArrayList<Offer>();
+    synchronized (this) {
+      for (Iterator<Offer> it = offers.values().iterator(); it.hasNext();) {
+        Offer offer = it.next();
+        if (offer.owner.equals(loginId)) {
+          it.remove();
+          removed.add(offer);
+        }
+      }
+      for (Iterator<RegistrySubscription> it = subscriptions.iterator(); it
+        .hasNext();) {
+        RegistrySubscription sub = it.next();
+        if (sub.owner.equals(loginId)) {
+          it.remove();
+          deactivate(sub);
+        }
+      }
+      notifyAll();
+    }
+    for (Offer offer : removed) {
+      offer.removed();
+    }
+  }
+
+  /**
+   * Remove todas as ofertas, mantendo os logins que as registraram.
+   */
+  void clear() {
+    List<Offer> removed;
+    synchronized (this) {
+      removed = new ArrayList<Offer>(offers.values());
+      offers.clear();
+      notifyAll();
+    }
+    for (Offer offer : removed) {
+      offer.removed();
+    }
+  }
+
+  /**
+   * Remove uma oferta.
+   * 
+   * @param offer a oferta.
+   */
+  private void remove(Offer offer) {
+    synchronized (this) {
+      if (offers.remove(offer.id) == null) {
+        return;
+      }
+      notifyAll();
+    }
+    offer.removed();
+  }
+
+  /**
+   * Ativa um servant do barramento falso.
+   * 
+   * @param servant o servant.
+   * @return a referncia para o servant.
+   */
+  private org.omg.CORBA.Object activate(Servant servant) {
+    try {
+      return bus.poa().servant_to_reference(servant);
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Erro ao ativar servant.", e);
+    }
+  }
+
+  /**
+   * Desativa um servant do barramento falso. Chamadas posteriores ao servant
+   * falham com {@link OBJECT_NOT_EXIST}.
+   * 
+   * @param servant o servant.
+   */
+  private void deactivate(Servant servant) {
+    try {
+      POA poa = bus.poa();
+      poa.deactivate_object(poa.servant_to_id(servant));
+    }
+    catch (Exception e) {
+      // servant j desativado
+    }
+  }
+
+  /**
+   * Verifica se um conjunto de propriedades contm todas as propriedades
+   * buscadas.
+   * 
+   * @param props as propriedades da oferta.
+   * @param search as propriedades buscadas.
+   * @return <code>true</code> caso todas as propriedades estejam presentes, e
+   *         <code>false</code> caso contrrio.
+   */
+  private static boolean matches(ServiceProperty[] props,
+    ServiceProperty[] search) {
+    for (ServiceProperty wanted : search) {
+      boolean found = false;
+      for (ServiceProperty prop : props) {
+        if (prop.name.equals(wanted.name) && prop.value.equals(wanted.value)) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Oferta de servio registrada no barramento falso.
+   * 
+   * @author Tecgraf
+   */
+  private class Offer extends ServiceOfferPOA {
+
+    /** Identificador da oferta */
+    final String id;
+    /** Login que registrou a oferta */
+    final String owner;
+    /** Servio ofertado */
+    final IComponent service;
+    /** Propriedades da oferta */
+    private ServiceProperty[] properties;
+    /** Referncia para a oferta */
+    ServiceOffer ref;
+    /** Observadores da oferta */
+    private final List<OfferSubscription> observers =
+      new ArrayList<OfferSubscription>();
+    /** Indica se a oferta foi removida */
+    private boolean gone = false;
+
+    /**
+     * Construtor.
+     * 
+     * @param id identificador da oferta.
+     * @param owner login que registrou a oferta.
+     * @param service servio ofertado.
+     * @param properties propriedades da oferta.
+     */
+    Offer(String id, String owner, IComponent service,
+      ServiceProperty[] properties) {
+      this.id = id;
+      this.owner = owner;
+      this.service = service;
+      this.properties = properties;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String id() {
+      return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IComponent service_ref() {
+      return service;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized ServiceProperty[] properties() {
+      return properties;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized ServiceOfferDesc describe() {
+      return new ServiceOfferDesc(service, properties, ref);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProperties(ServiceProperty[] props) {
+      bus.call("setProperties");
+      ServiceOfferDesc desc;
+      List<OfferSubscription> targets;
+      synchronized (this) {
+        List<ServiceProperty> updated = new ArrayList<ServiceProperty>();
+        for (ServiceProperty prop : properties) {
+          if (prop.name.startsWith("openbus.")) {
+            updated.add(prop);
+          }
+        }
+        for (ServiceProperty prop : props) {
+          updated.add(prop);
+        }
+        properties = updated.toArray(new ServiceProperty[updated.size()]);
+        desc = describe();
+        targets = new ArrayList<OfferSubscription>(observers);
+      }
+      for (OfferSubscription sub : targets) {
+        sub.propertiesChanged(desc);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+      bus.call("remove");
+      FakeOfferRegistry.this.remove(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OfferObserverSubscription subscribeObserver(OfferObserver observer) {
+      LoginInfo login = bus.call("subscribeObserver");
+      OfferSubscription sub = new OfferSubscription(this, login.id, observer);
+      sub.ref = OfferObserverSubscriptionHelper.narrow(activate(sub));
+      synchronized (this) {
+        // a remoo pode ocorrer durante o tratamento da chamada
+        if (gone) {
+          deactivate(sub);
+          throw new OBJECT_NOT_EXIST();
+        }
+        observers.add(sub);
+      }
+      return sub.ref;
+    }
+
+    /**
+     * Notifica os observadores da remoo da oferta e desativa a oferta.
+     */
+    void removed() {
+      ServiceOfferDesc desc;
+      List<OfferSubscription> targets;
+      synchronized (this) {
+        gone = true;
+        desc = describe();
+        targets = new ArrayList<OfferSubscription>(observers);
+        observers.clear();
+      }
+      deactivate(this);
+      for (OfferSubscription sub : targets) {
+        sub.removed(desc);
+      }
+    }
+
+    /**
+     * Remove um observador da oferta.
+     * 
+     * @param sub a inscrio do observador.
+     */
+    synchronized void unsubscribe(OfferSubscription sub) {
+      observers.remove(sub);
+    }
+  }
+
+  /**
+   * Inscrio de um observador de oferta.
+   * 
+   * @author Tecgraf
+   */
+  private class OfferSubscription extends OfferObserverSubscriptionPOA {
+
+    /** A oferta observada */
+    private final Offer offer;
+    /** Login que registrou o observador */
+    final String owner;
+    /** O observador */
+    private final OfferObserver observer;
+    /** Referncia para a inscrio */
+    OfferObserverSubscription ref;
+
+    /**
+     * Construtor.
+     * 
+     * @param offer a oferta observada.
+     * @param owner login que registrou o observador.
+     * @param observer o observador.
+     */
+    OfferSubscription(Offer offer, String owner, OfferObserver observer) {
+      this.offer = offer;
+      this.owner = owner;
+      this.observer = observer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OfferObserver observer() {
+      return observer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceOfferDesc offer() {
+      return offer.describe();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+      offer.unsubscribe(this);
+      deactivate(this);
+    }
+
+    /**
+     * Notifica a alterao das propriedades da oferta.
+     * 
+     * @param desc a nova descrio da oferta.
+     */
+    void propertiesChanged(final ServiceOfferDesc desc) {
+      bus.notify(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            observer.propertiesChanged(desc);
+          }
+          catch (RuntimeException e) {
+            // observador inacessvel
+          }
+        }
+      });
+    }
+
+    /**
+     * Notifica a remoo da oferta e desativa a inscrio.
+     * 
+     * @param desc a descrio da oferta removida.
+     */
+    void removed(final ServiceOfferDesc desc) {
+      deactivate(this);
+      bus.notify(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            observer.removed(desc);
+          }
+          catch (RuntimeException e) {
+            // observador inacessvel
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Inscrio de um observador de registro de ofertas.
+   * 
+   * @author Tecgraf
+   */
+  private class RegistrySubscription extends
+    OfferRegistryObserverSubscriptionPOA {
+
+    /** Login que registrou o observador */
+    final String owner;
+    /** O observador */
+    private final OfferRegistryObserver observer;
+    /** Propriedades observadas */
+    final ServiceProperty[] properties;
+    /** Referncia para a inscrio */
+    OfferRegistryObserverSubscription ref;
+
+    /**
+     * Construtor.
+     * 
+     * @param owner login que registrou o observador.
+     * @param observer o observador.
+     * @param properties propriedades observadas.
+     */
+    RegistrySubscription(String owner, OfferRegistryObserver observer,
+      ServiceProperty[] properties) {
+      this.owner = owner;
+      this.observer = observer;
+      this.properties = properties;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OfferRegistryObserver observer() {
+      return observer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceProperty[] properties() {
+      return properties;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+      synchronized (FakeOfferRegistry.this) {
+        subscriptions.remove(this);
+      }
+      deactivate(this);
+    }
+
+    /**
+     * Notifica o registro de uma oferta.
+     * 
+     * @param desc a descrio da oferta registrada.
+     */
+    void offerRegistered(final ServiceOfferDesc desc) {
+      bus.notify(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            observer.offerRegistered(desc);
+          }
+          catch (RuntimeException e) {
+            // observador inacessvel
+          }
+        }
+      });
+    }
+  }
+}
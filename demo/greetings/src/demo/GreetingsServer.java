@@ -1,6 +1,8 @@
 package demo;
 
 import java.security.interfaces.RSAPrivateKey;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.omg.CORBA.ORB;
 import org.omg.CORBA.ORBPackage.InvalidName;
@@ -14,6 +16,7 @@ import scs.core.exception.SCSException;
 import tecgraf.openbus.OpenBusContext;
 import tecgraf.openbus.assistant.Assistant;
 import tecgraf.openbus.assistant.AssistantParams;
+import tecgraf.openbus.assistant.OfferSpec;
 import tecgraf.openbus.core.v2_1.services.ServiceFailure;
 import tecgraf.openbus.core.v2_1.services.offer_registry.ServiceProperty;
 import tecgraf.openbus.demo.util.Usage;
@@ -109,6 +112,7 @@ public final class GreetingsServer {
     POA poa = POAHelper.narrow(orb.resolve_initial_references("RootPOA"));
     poa.the_POAManager().activate();
     // - construindo os componentes
+    List<OfferSpec> offers = new ArrayList<OfferSpec>();
     for (Language language : Language.values()) {
       ComponentId id =
         new ComponentId(language.name() + Greetings.class.getSimpleName(),
@@ -118,14 +122,15 @@ public final class GreetingsServer {
         component.addFacet("Good" + period.name(), GreetingsHelper.id(),
           new GreetingsImpl(context, language, period));
       }
-      // registrando servio no barramento
       ServiceProperty[] serviceProperties = new ServiceProperty[2];
       serviceProperties[0] =
         new ServiceProperty("offer.domain", "Demo Greetings");
       serviceProperties[1] =
         new ServiceProperty("greetings.language", language.name());
-      assist.registerService(component.getIComponent(), serviceProperties);
+      offers.add(new OfferSpec(component.getIComponent(), serviceProperties));
     }
+    // registrando os servios no barramento
+    assist.registerServices(offers);
 
   }
 }
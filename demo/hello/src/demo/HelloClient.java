@@ -114,21 +114,23 @@ public final class HelloClient {
     // analisa as ofertas encontradas
     for (ServiceOfferDesc offerDesc : services) {
       try {
-        org.omg.CORBA.Object helloObj =
-          offerDesc.service_ref.getFacet(HelloHelper.id());
-        if (helloObj == null) {
+        // a faceta convertida  mantida em cache pelo assistente
+        Hello hello = assist.getFacet(offerDesc, Hello.class);
+        if (hello == null) {
           System.out
             .println("o servio encontrado no prov a faceta ofertada");
           continue;
         }
 
-        Hello hello = HelloHelper.narrow(helloObj);
         hello.sayHello();
       }
+      // falhas que indicam que a faceta em cache pode no ser mais vlida
       catch (TRANSIENT e) {
+        assist.invalidateFacets(offerDesc);
         System.err.println("o servio encontrado encontra-se indisponvel");
       }
       catch (COMM_FAILURE e) {
+        assist.invalidateFacets(offerDesc);
         System.err.println("falha de comunicao com o servio encontrado");
       }
       catch (NO_PERMISSION e) {
@@ -138,6 +140,7 @@ public final class HelloClient {
               "no h um login de '%s' vlido no momento", entity));
             break;
           case UnknownBusCode.value:
+            assist.invalidateFacets(offerDesc);
             System.err
               .println("o servio encontrado no est mais logado ao barramento");
             break;
@@ -151,6 +154,11 @@ public final class HelloClient {
             break;
         }
       }
+      // erros inesperados
+      catch (Exception e) {
+        System.err.println("Erro inesperado ao acessar o servio encontrado.");
+        e.printStackTrace();
+      }
     }
 
     // Finaliza o assistente